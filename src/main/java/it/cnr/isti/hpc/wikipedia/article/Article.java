@@ -15,13 +15,15 @@
  */
 package it.cnr.isti.hpc.wikipedia.article;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
 import org.dbpedia.spotlight.ParagraphLink;
 
-import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
 
 /**
  * Article represents an article in the Wikipedia dump.
@@ -37,8 +39,6 @@ public class Article {
 
 	private final static String NOTITLE = "";
 
-	private static transient Gson gson = new Gson();
-
 	/** The possible types of an article (e.g., template, article, category) **/
 	public enum Type {
 		TEMPLATE, ARTICLE, CATEGORY, DISCUSSION, REDIRECT, DISAMBIGUATION, UNKNOWN, MAIN, LIST, PROJECT, FILE
@@ -55,11 +55,11 @@ public class Article {
 	private transient Integer integerNamespace;
 	private transient String timestamp;
 	private Type type = Type.ARTICLE;
-	private String enWikiTitle;
+	protected String enWikiTitle;
 	private transient List<Table> tables;
 	private transient List<Link> images;
 	protected transient List<List<String>> lists;
-	private List<Link> links;
+	protected List<Link> links;
 	private transient List<Link> externalLinks;
 	protected String redirect;
 	private transient List<String> sections;
@@ -547,11 +547,45 @@ public class Article {
 	}
 
 	public String toJson() {
-		return gson.toJson(this);
+		return toJson(ExtractionProfile.SPOTLIGHT);
+	}
+
+	/**
+	 * @param profile
+	 *            - the profile the article was extracted with
+	 * @return the json of the fields of the profile
+	 */
+	public String toJson(ExtractionProfile profile) {
+		if (ArticleCodec.supports(this, profile))
+			return ArticleCodec.toJson(this, profile);
+		return profile.gson.toJson(this);
+	}
+
+	/**
+	 * Streams the json of the article (the same produced by
+	 * {@link #toJson(ExtractionProfile)}) in a writer, without building it in
+	 * a string.
+	 * 
+	 * @param out
+	 *            - the writer
+	 * @param profile
+	 *            - the profile the article was extracted with
+	 */
+	public void writeJson(Writer out, ExtractionProfile profile)
+			throws IOException {
+		if (ArticleCodec.supports(this, profile)) {
+			ArticleCodec.write(this, profile, out);
+			return;
+		}
+		try {
+			profile.gson.toJson(this, getClass(), out);
+		} catch (JsonIOException e) {
+			throw new IOException("writing the json of " + title, e.getCause());
+		}
 	}
 
 	public static Article fromJson(String json) {
-		return gson.fromJson(json, Article.class);
+		return ArticleCodec.fromJson(json);
 
 	}
 
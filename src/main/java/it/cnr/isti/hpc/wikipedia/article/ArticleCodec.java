@@ -0,0 +1,432 @@
+/**
+ *  Copyright 2011 Diego Ceccarelli
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package it.cnr.isti.hpc.wikipedia.article;
+
+import it.cnr.isti.hpc.io.reader.RecordParser;
+import it.cnr.isti.hpc.wikipedia.article.Article.Type;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.dbpedia.spotlight.ParagraphLink;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Reads and writes the json of an {@link Article} (with its {@link Link}s and
+ * {@link ParagraphLink}s) field by field, without the reflection of Gson. The
+ * json written is the same written by Gson: the fields in the order they are
+ * declared, null fields omitted, and the strings escaped as Gson does (also
+ * the html characters). Unknown and transient fields are skipped reading.
+ * <p>
+ * The codec can be given to a
+ * {@link it.cnr.isti.hpc.io.reader.RecordReader} in place of a
+ * {@link it.cnr.isti.hpc.io.reader.JsonRecordParser}:
+ *
+ * <pre>
+ * {@code
+ * RecordReader<Article> reader = new RecordReader<Article>(
+ * 			"wikipedia.json", new ArticleCodec());
+ * }
+ * </pre>
+ *
+ * The {@link ExtractionProfile#FULL} profile (also writing templates, tables
+ * and lists) and the subclasses of {@link Article} are still written by Gson.
+ */
+public class ArticleCodec implements RecordParser<Article> {
+
+	/** the escaped ascii characters, as Gson escapes them (html safe) **/
+	private static final String[] REPLACEMENTS = new String[128];
+
+	static {
+		for (int c = 0; c < 0x20; c++) {
+			REPLACEMENTS[c] = String.format("\\u%04x", c);
+		}
+		REPLACEMENTS['"'] = "\\\"";
+		REPLACEMENTS['\\'] = "\\\\";
+		REPLACEMENTS['\t'] = "\\t";
+		REPLACEMENTS['\b'] = "\\b";
+		REPLACEMENTS['\n'] = "\\n";
+		REPLACEMENTS['\r'] = "\\r";
+		REPLACEMENTS['\f'] = "\\f";
+		REPLACEMENTS['<'] = "\\u003c";
+		REPLACEMENTS['>'] = "\\u003e";
+		REPLACEMENTS['&'] = "\\u0026";
+		REPLACEMENTS['='] = "\\u003d";
+		REPLACEMENTS['\''] = "\\u0027";
+	}
+
+	/**
+	 * @return the article in the json line, null if the line is empty
+	 * @throws JsonSyntaxException
+	 *             if the json is not valid
+	 */
+	public Article decode(String json) {
+		return fromJson(json);
+	}
+
+	/**
+	 * @return the json of the article, with the fields of the
+	 *         {@link ExtractionProfile#SPOTLIGHT} profile
+	 */
+	public String encode(Article article) {
+		return toJson(article, ExtractionProfile.SPOTLIGHT);
+	}
+
+	/**
+	 * @return true if the codec writes the article for the profile, false if
+	 *         it must be written by Gson
+	 */
+	public static boolean supports(Article article, ExtractionProfile profile) {
+		return profile != ExtractionProfile.FULL
+				&& article.getClass() == Article.class;
+	}
+
+	/**
+	 * @return the json of the article, with the fields of the profile
+	 */
+	public static String toJson(Article article, ExtractionProfile profile) {
+		StringWriter out = new StringWriter();
+		try {
+			write(article, profile, out);
+		} catch (IOException e) {
+			// never thrown by a StringWriter
+			throw new IllegalStateException(e);
+		}
+		return out.toString();
+	}
+
+	/**
+	 * Writes the json of an article.
+	 *
+	 * @param article
+	 *            - the article
+	 * @param profile
+	 *            - the profile the article was extracted with
+	 * @param out
+	 *            - the writer
+	 * @throws IllegalArgumentException
+	 *             if the article is not {@link #supports(Article,
+	 *             ExtractionProfile) supported}
+	 */
+	public static void write(Article article, ExtractionProfile profile,
+			Writer out) throws IOException {
+		if (!supports(article, profile))
+			throw new IllegalArgumentException("the codec can not write "
+					+ article.getClass().getSimpleName() + " for the "
+					+ profile + " profile");
+		out.write('{');
+		boolean first = true;
+		first = field(out, "title", article.title, first);
+		first = field(out, "wikiTitle", article.wikiTitle, first);
+		first = name(out, "wid", first);
+		out.write(Integer.toString(article.getWid()));
+		if (profile.hasParagraphs())
+			first = field(out, "wikiText", article.getWikiText(), first);
+		first = field(out, "lang", article.getLang(), first);
+		if (article.getType() != null)
+			first = field(out, "type", article.getType().name(), first);
+		if (profile.hasLanguages())
+			first = field(out, "enWikiTitle", article.enWikiTitle, first);
+		if (profile.hasLinks() && article.links != null) {
+			first = name(out, "links", first);
+			writeLinks(out, article.links);
+		}
+		first = field(out, "redirect", article.redirect, first);
+		if (profile.hasParagraphs() && article.getParagraphsLink() != null) {
+			first = name(out, "paragraphsLink", first);
+			writeParagraphs(out, article.getParagraphsLink());
+		}
+		out.write('}');
+	}
+
+	private static void writeLinks(Writer out, List<Link> links)
+			throws IOException {
+		out.write('[');
+		for (int i = 0; i < links.size(); i++) {
+			if (i > 0)
+				out.write(',');
+			Link l = links.get(i);
+			if (l == null) {
+				out.write("null");
+				continue;
+			}
+			out.write('{');
+			boolean first = field(out, "id", l.getId(), true);
+			first = field(out, "description", l.description, first);
+			first = name(out, "start", first);
+			out.write(Integer.toString(l.getStart()));
+			name(out, "end", first);
+			out.write(Integer.toString(l.getEnd()));
+			out.write('}');
+		}
+		out.write(']');
+	}
+
+	private static void writeParagraphs(Writer out,
+			List<ParagraphLink> paragraphs) throws IOException {
+		out.write('[');
+		for (int i = 0; i < paragraphs.size(); i++) {
+			if (i > 0)
+				out.write(',');
+			ParagraphLink p = paragraphs.get(i);
+			if (p == null) {
+				out.write("null");
+				continue;
+			}
+			out.write('{');
+			boolean first = field(out, "paraText", p.getParaText(), true);
+			if (p.getLinks() != null) {
+				name(out, "links", first);
+				writeLinks(out, p.getLinks());
+			}
+			out.write('}');
+		}
+		out.write(']');
+	}
+
+	/**
+	 * Writes a string field, if it is not null.
+	 *
+	 * @return true if no field was written in the object yet
+	 */
+	private static boolean field(Writer out, String name, String value,
+			boolean first) throws IOException {
+		if (value == null)
+			return first;
+		name(out, name, first);
+		string(out, value);
+		return false;
+	}
+
+	private static boolean name(Writer out, String name, boolean first)
+			throws IOException {
+		if (!first)
+			out.write(',');
+		out.write('"');
+		out.write(name);
+		out.write("\":");
+		return false;
+	}
+
+	private static void string(Writer out, String s) throws IOException {
+		out.write('"');
+		int last = 0;
+		int length = s.length();
+		for (int i = 0; i < length; i++) {
+			char c = s.charAt(i);
+			String replacement;
+			if (c < 128) {
+				replacement = REPLACEMENTS[c];
+				if (replacement == null)
+					continue;
+			} else if (c == '\u2028') {
+				replacement = "\\u2028";
+			} else if (c == '\u2029') {
+				replacement = "\\u2029";
+			} else {
+				continue;
+			}
+			if (last < i)
+				out.write(s, last, i - last);
+			out.write(replacement);
+			last = i + 1;
+		}
+		if (last < length)
+			out.write(s, last, length - last);
+		out.write('"');
+	}
+
+	/**
+	 * @return the article in the json, null if the json is empty
+	 * @throws JsonSyntaxException
+	 *             if the json is not valid
+	 */
+	public static Article fromJson(String json) {
+		if (json == null)
+			return null;
+		JsonReader in = new JsonReader(new StringReader(json));
+		in.setLenient(true);
+		try {
+			in.peek();
+		} catch (EOFException e) {
+			return null;
+		} catch (IOException e) {
+			throw new JsonSyntaxException(e);
+		}
+		try {
+			Article article = read(in);
+			if (in.peek() != JsonToken.END_DOCUMENT)
+				throw new JsonSyntaxException("JSON document was not fully consumed.");
+			return article;
+		} catch (IOException e) {
+			throw new JsonSyntaxException(e);
+		} catch (IllegalStateException e) {
+			throw new JsonSyntaxException(e);
+		} catch (NumberFormatException e) {
+			throw new JsonSyntaxException(e);
+		}
+	}
+
+	/**
+	 * Reads an article (or null) from a json reader.
+	 */
+	public static Article read(JsonReader in) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return null;
+		}
+		Article article = new Article();
+		in.beginObject();
+		while (in.hasNext()) {
+			String name = in.nextName();
+			if (name.equals("title")) {
+				article.title = readString(in);
+			} else if (name.equals("wikiTitle")) {
+				article.wikiTitle = readString(in);
+			} else if (name.equals("wid")) {
+				if (in.peek() == JsonToken.NULL)
+					in.nextNull();
+				else
+					article.setWid(in.nextInt());
+			} else if (name.equals("wikiText")) {
+				article.setWikiText(readString(in));
+			} else if (name.equals("lang")) {
+				article.setLang(readString(in));
+			} else if (name.equals("type")) {
+				article.setType(readType(in));
+			} else if (name.equals("enWikiTitle")) {
+				article.enWikiTitle = readString(in);
+			} else if (name.equals("links")) {
+				article.links = readLinks(in);
+			} else if (name.equals("redirect")) {
+				article.redirect = readString(in);
+			} else if (name.equals("paragraphsLink")) {
+				article.setParagraphsLink(readParagraphs(in));
+			} else {
+				in.skipValue();
+			}
+		}
+		in.endObject();
+		return article;
+	}
+
+	static String readString(JsonReader in) throws IOException {
+		JsonToken token = in.peek();
+		if (token == JsonToken.NULL) {
+			in.nextNull();
+			return null;
+		}
+		if (token == JsonToken.BOOLEAN)
+			return Boolean.toString(in.nextBoolean());
+		return in.nextString();
+	}
+
+	private static Type readType(JsonReader in) throws IOException {
+		return type(readString(in));
+	}
+
+	/**
+	 * @return the type with the given name, null if there is no such type
+	 */
+	static Type type(String name) {
+		if (name == null)
+			return null;
+		for (Type t : Type.values()) {
+			if (t.name().equals(name))
+				return t;
+		}
+		return null;
+	}
+
+	static List<Link> readLinks(JsonReader in) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return null;
+		}
+		List<Link> links = new ArrayList<Link>();
+		in.beginArray();
+		while (in.hasNext()) {
+			links.add(readLink(in));
+		}
+		in.endArray();
+		return links;
+	}
+
+	private static Link readLink(JsonReader in) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return null;
+		}
+		Link link = new Link();
+		in.beginObject();
+		while (in.hasNext()) {
+			String name = in.nextName();
+			if (name.equals("id")) {
+				link.setId(readString(in));
+			} else if (name.equals("description")) {
+				link.description = readString(in);
+			} else if (name.equals("start") && in.peek() != JsonToken.NULL) {
+				link.setStart(in.nextInt());
+			} else if (name.equals("end") && in.peek() != JsonToken.NULL) {
+				link.setEnd(in.nextInt());
+			} else {
+				in.skipValue();
+			}
+		}
+		in.endObject();
+		return link;
+	}
+
+	static List<ParagraphLink> readParagraphs(JsonReader in)
+			throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return null;
+		}
+		List<ParagraphLink> paragraphs = new ArrayList<ParagraphLink>();
+		in.beginArray();
+		while (in.hasNext()) {
+			if (in.peek() == JsonToken.NULL) {
+				in.nextNull();
+				paragraphs.add(null);
+				continue;
+			}
+			ParagraphLink p = new ParagraphLink();
+			in.beginObject();
+			while (in.hasNext()) {
+				String name = in.nextName();
+				if (name.equals("paraText"))
+					p.setParaText(readString(in));
+				else if (name.equals("links"))
+					p.setLinks(readLinks(in));
+				else
+					in.skipValue();
+			}
+			in.endObject();
+			paragraphs.add(p);
+		}
+		in.endArray();
+		return paragraphs;
+	}
+}
@@ -0,0 +1,414 @@
+/**
+ *  Copyright 2011 Diego Ceccarelli
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package it.cnr.isti.hpc.wikipedia.article;
+
+import it.cnr.isti.hpc.io.reader.RecordParser;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Reads only some fields of the json of an {@link Article}, for the tools that
+ * do not need the whole article (e.g., only the titles and the types). The
+ * line is scanned directly: the values of the other fields (usually the
+ * wikitext and the paragraphs, most of the line) are skipped jumping from a
+ * quote to the next one, without decoding or allocating them. The fields that
+ * are not read keep the value they have in a new {@link Article}.
+ * <p>
+ * Besides the fields of the default profile, the projection also reads the
+ * paragraphs and the categories, written by the {@link ExtractionProfile#FULL
+ * full} profile.
+ *
+ * <pre>
+ * {@code
+ * RecordReader<Article> reader = new RecordReader<Article>(
+ * 			"wikipedia.json", new ArticleProjection(Field.TITLE, Field.TYPE));
+ * }
+ * </pre>
+ *
+ * The skipped values are not validated, only their strings and brackets are
+ * matched.
+ */
+public class ArticleProjection implements RecordParser<Article> {
+
+	/** The fields of the json that can be read **/
+	public enum Field {
+		TITLE("title"), WIKI_TITLE("wikiTitle"), WID("wid"), WIKI_TEXT(
+				"wikiText"), LANG("lang"), TYPE("type"), EN_WIKI_TITLE(
+				"enWikiTitle"), LINKS("links"), REDIRECT("redirect"), PARAGRAPHS_LINK(
+				"paragraphsLink"), PARAGRAPHS("paragraphs"), CATEGORIES(
+				"categories");
+
+		private final String name;
+
+		private Field(String name) {
+			this.name = name;
+		}
+
+		/**
+		 * @return the name of the field in the json
+		 */
+		public String getName() {
+			return name;
+		}
+	}
+
+	private final Field[] fields;
+
+	/**
+	 * @param fields
+	 *            - the fields to read, the others are skipped
+	 */
+	public ArticleProjection(Field... fields) {
+		EnumSet<Field> set = EnumSet.noneOf(Field.class);
+		set.addAll(Arrays.asList(fields));
+		this.fields = set.toArray(new Field[set.size()]);
+	}
+
+	/**
+	 * @return the fields read by the projection
+	 */
+	public EnumSet<Field> getFields() {
+		EnumSet<Field> set = EnumSet.noneOf(Field.class);
+		set.addAll(Arrays.asList(fields));
+		return set;
+	}
+
+	/**
+	 * @return the article with the fields of the projection, null if the line
+	 *         is empty
+	 * @throws JsonSyntaxException
+	 *             if the json is not valid
+	 */
+	public Article decode(String json) {
+		if (json == null)
+			return null;
+		int pos = skipSpaces(json, 0);
+		if (pos == json.length() || json.startsWith("null", pos)
+				&& skipSpaces(json, pos + 4) == json.length())
+			return null;
+		Article article = new Article();
+		expect(json, pos, '{');
+		pos = skipSpaces(json, pos + 1);
+		if (pos < json.length() && json.charAt(pos) == '}') {
+			pos++;
+		} else {
+			while (true) {
+				expect(json, pos, '"');
+				int nameEnd = endOfString(json, pos);
+				Field field = field(json, pos, nameEnd);
+				pos = skipSpaces(json, nameEnd + 1);
+				expect(json, pos, ':');
+				int start = skipSpaces(json, pos + 1);
+				int end = skipValue(json, start);
+				if (field != null)
+					set(article, field, json, start, end);
+				pos = skipSpaces(json, end);
+				if (pos < json.length() && json.charAt(pos) == ',') {
+					pos = skipSpaces(json, pos + 1);
+					continue;
+				}
+				expect(json, pos, '}');
+				pos++;
+				break;
+			}
+		}
+		if (skipSpaces(json, pos) != json.length())
+			throw new JsonSyntaxException(
+					"JSON document was not fully consumed.");
+		return article;
+	}
+
+	/**
+	 * @return the json of the article, with the fields of the
+	 *         {@link ExtractionProfile#SPOTLIGHT} profile
+	 */
+	public String encode(Article article) {
+		return article.toJson();
+	}
+
+	/**
+	 * @return the field of the projection named by the json string starting
+	 *         at the quote <tt>start</tt> and ending at the quote
+	 *         <tt>end</tt>, null if the field is not projected
+	 */
+	private Field field(String json, int start, int end) {
+		int length = end - start - 1;
+		if (hasBackslash(json, start + 1, end)) {
+			// escaped name, never written by the codec
+			String name = string(json, start, end + 1);
+			for (Field f : fields) {
+				if (f.name.equals(name))
+					return f;
+			}
+			return null;
+		}
+		for (Field f : fields) {
+			if (f.name.length() == length
+					&& json.regionMatches(start + 1, f.name, 0, length))
+				return f;
+		}
+		return null;
+	}
+
+	private static void set(Article article, Field field, String json,
+			int start, int end) {
+		switch (field) {
+		case TITLE:
+			article.title = string(json, start, end);
+			break;
+		case WIKI_TITLE:
+			article.wikiTitle = string(json, start, end);
+			break;
+		case WID:
+			String wid = string(json, start, end);
+			if (wid != null)
+				article.setWid(parseInt(wid));
+			break;
+		case WIKI_TEXT:
+			article.setWikiText(string(json, start, end));
+			break;
+		case LANG:
+			article.setLang(string(json, start, end));
+			break;
+		case TYPE:
+			article.setType(ArticleCodec.type(string(json, start, end)));
+			break;
+		case EN_WIKI_TITLE:
+			article.enWikiTitle = string(json, start, end);
+			break;
+		case REDIRECT:
+			article.redirect = string(json, start, end);
+			break;
+		default:
+			setList(article, field, reader(json, start, end));
+		}
+	}
+
+	private static void setList(Article article, Field field, JsonReader in) {
+		try {
+			switch (field) {
+			case LINKS:
+				article.links = ArticleCodec.readLinks(in);
+				break;
+			case PARAGRAPHS_LINK:
+				article.setParagraphsLink(ArticleCodec.readParagraphs(in));
+				break;
+			case CATEGORIES:
+				article.setCategories(ArticleCodec.readLinks(in));
+				break;
+			case PARAGRAPHS:
+				article.setParagraphs(readStrings(in));
+				break;
+			default:
+				throw new IllegalArgumentException("not a list " + field);
+			}
+		} catch (IOException e) {
+			throw new JsonSyntaxException(e);
+		} catch (IllegalStateException e) {
+			throw new JsonSyntaxException(e);
+		} catch (NumberFormatException e) {
+			throw new JsonSyntaxException(e);
+		}
+	}
+
+	private static List<String> readStrings(JsonReader in) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return null;
+		}
+		List<String> strings = new ArrayList<String>();
+		in.beginArray();
+		while (in.hasNext()) {
+			strings.add(ArticleCodec.readString(in));
+		}
+		in.endArray();
+		return strings;
+	}
+
+	private static JsonReader reader(String json, int start, int end) {
+		JsonReader in = new JsonReader(new StringReader(json.substring(start,
+				end)));
+		in.setLenient(true);
+		return in;
+	}
+
+	private static int parseInt(String value) {
+		try {
+			return Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			// e.g. 7.0
+			try {
+				double d = Double.parseDouble(value);
+				if (d == (int) d)
+					return (int) d;
+			} catch (NumberFormatException e2) {
+				// not a number
+			}
+			throw new JsonSyntaxException("expected an int but was " + value);
+		}
+	}
+
+	/**
+	 * @return the string value in <tt>[start, end)</tt>, the text of a number
+	 *         or of a boolean, null for <tt>null</tt>
+	 */
+	private static String string(String json, int start, int end) {
+		char c = json.charAt(start);
+		if (c != '"') {
+			if (c == '{' || c == '[')
+				throw new JsonSyntaxException("expected a string at " + start);
+			String literal = json.substring(start, end);
+			return literal.equals("null") ? null : literal;
+		}
+		if (!hasBackslash(json, start + 1, end - 1))
+			return json.substring(start + 1, end - 1);
+		StringBuilder sb = new StringBuilder(end - start);
+		int i = start + 1;
+		while (i < end - 1) {
+			char ch = json.charAt(i++);
+			if (ch != '\\') {
+				sb.append(ch);
+				continue;
+			}
+			ch = json.charAt(i++);
+			switch (ch) {
+			case 'b':
+				sb.append('\b');
+				break;
+			case 'f':
+				sb.append('\f');
+				break;
+			case 'n':
+				sb.append('\n');
+				break;
+			case 'r':
+				sb.append('\r');
+				break;
+			case 't':
+				sb.append('\t');
+				break;
+			case 'u':
+				if (i + 4 > end - 1)
+					throw new JsonSyntaxException("unterminated escape at " + i);
+				try {
+					sb.append((char) Integer.parseInt(
+							json.substring(i, i + 4), 16));
+				} catch (NumberFormatException e) {
+					throw new JsonSyntaxException(e);
+				}
+				i += 4;
+				break;
+			default:
+				// \" \\ \/ and the characters escaped without reason
+				sb.append(ch);
+			}
+		}
+		return sb.toString();
+	}
+
+	private static boolean hasBackslash(String json, int start, int end) {
+		for (int i = start; i < end; i++) {
+			if (json.charAt(i) == '\\')
+				return true;
+		}
+		return false;
+	}
+
+	private static int skipSpaces(String json, int pos) {
+		int length = json.length();
+		while (pos < length) {
+			char c = json.charAt(pos);
+			if (c != ' ' && c != '\t' && c != '\n' && c != '\r')
+				break;
+			pos++;
+		}
+		return pos;
+	}
+
+	private static void expect(String json, int pos, char c) {
+		if (pos >= json.length() || json.charAt(pos) != c)
+			throw new JsonSyntaxException("expected " + c + " at " + pos);
+	}
+
+	/**
+	 * @return the position of the quote closing the string that starts at the
+	 *         quote in <tt>start</tt>
+	 */
+	private static int endOfString(String json, int start) {
+		int from = start + 1;
+		while (true) {
+			int quote = json.indexOf('"', from);
+			if (quote < 0)
+				throw new JsonSyntaxException("unterminated string at "
+						+ start);
+			// the quote is escaped if preceded by an odd number of
+			// backslashes
+			int backslashes = 0;
+			while (json.charAt(quote - 1 - backslashes) == '\\')
+				backslashes++;
+			if ((backslashes & 1) == 0)
+				return quote;
+			from = quote + 1;
+		}
+	}
+
+	/**
+	 * @return the position after the value starting in <tt>start</tt>
+	 */
+	private static int skipValue(String json, int start) {
+		int length = json.length();
+		if (start >= length)
+			throw new JsonSyntaxException("expected a value at " + start);
+		char c = json.charAt(start);
+		if (c == '"')
+			return endOfString(json, start) + 1;
+		if (c == '{' || c == '[') {
+			int depth = 0;
+			for (int i = start; i < length; i++) {
+				c = json.charAt(i);
+				if (c == '"') {
+					i = endOfString(json, i);
+				} else if (c == '{' || c == '[') {
+					depth++;
+				} else if (c == '}' || c == ']') {
+					if (--depth == 0)
+						return i + 1;
+				}
+			}
+			throw new JsonSyntaxException("unterminated value at " + start);
+		}
+		int i = start;
+		while (i < length) {
+			c = json.charAt(i);
+			if (c == ',' || c == '}' || c == ']' || c == ' ' || c == '\t'
+					|| c == '\n' || c == '\r')
+				break;
+			i++;
+		}
+		if (i == start)
+			throw new JsonSyntaxException("expected a value at " + start);
+		return i;
+	}
+}
@@ -0,0 +1,171 @@
+/**
+ *  Copyright 2011 Diego Ceccarelli
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package it.cnr.isti.hpc.wikipedia.article;
+
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.google.gson.ExclusionStrategy;
+import com.google.gson.FieldAttributes;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Selects what is extracted from a page: the parser only computes the fields
+ * of the {@link Article} that the profile serializes, and
+ * {@link Article#toJson(ExtractionProfile)} only writes them.
+ * <ul>
+ * <li><tt>spotlight</tt> (the default): the paragraphs with their links, the
+ * links, the wikitext and the English title, the json written so far;</li>
+ * <li><tt>titles-only</tt>: the title, the id, the type and the redirect;</li>
+ * <li><tt>links-only</tt>: the titles and the internal links;</li>
+ * <li><tt>full</tt>: all the fields of the article, also the templates, the
+ * categories, the highlights, the sections, the tables and the lists.</li>
+ * </ul>
+ * The title, wiki title, id, language, type and redirect are always written.
+ */
+public enum ExtractionProfile {
+
+	SPOTLIGHT("spotlight", true, true, true, false),
+
+	TITLES_ONLY("titles-only", false, false, false, false),
+
+	LINKS_ONLY("links-only", false, true, false, false),
+
+	FULL("full", true, true, true, true);
+
+	private final String name;
+	private final boolean paragraphs;
+	private final boolean links;
+	private final boolean languages;
+	private final boolean structure;
+
+	/** serializes the fields of the profile **/
+	final Gson gson;
+
+	private ExtractionProfile(String name, boolean paragraphs, boolean links,
+			boolean languages, boolean structure) {
+		this.name = name;
+		this.paragraphs = paragraphs;
+		this.links = links;
+		this.languages = languages;
+		this.structure = structure;
+		gson = createGson();
+	}
+
+	/**
+	 * @return the name of the profile (e.g., <tt>titles-only</tt>)
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return true if the wikitext and the paragraphs with their links are
+	 *         extracted
+	 */
+	public boolean hasParagraphs() {
+		return paragraphs;
+	}
+
+	/**
+	 * @return true if the internal links are extracted
+	 */
+	public boolean hasLinks() {
+		return links;
+	}
+
+	/**
+	 * @return true if the title of the English article is extracted
+	 */
+	public boolean hasLanguages() {
+		return languages;
+	}
+
+	/**
+	 * @return true if the templates, the infobox, the categories, the
+	 *         highlights, the sections and the tables are extracted
+	 */
+	public boolean hasStructure() {
+		return structure;
+	}
+
+	/**
+	 * @param name
+	 *            - the name of a profile (e.g., <tt>spotlight</tt>)
+	 * @return the profile with the given name
+	 * @throws IllegalArgumentException
+	 *             if there is no profile with that name
+	 */
+	public static ExtractionProfile forName(String name) {
+		for (ExtractionProfile p : values()) {
+			if (p.name.equals(name))
+				return p;
+		}
+		throw new IllegalArgumentException("unknown extraction profile "
+				+ name + ", expected one of " + Arrays.toString(values()));
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+
+	private Gson createGson() {
+		if (paragraphs && links && languages && !structure) {
+			// the fields that are not transient, same json as before
+			return new Gson();
+		}
+		if (structure) {
+			// also the transient fields of the article
+			return new GsonBuilder()
+					.excludeFieldsWithModifiers(Modifier.STATIC)
+					.setExclusionStrategies(new ExclusionStrategy() {
+						public boolean shouldSkipField(FieldAttributes f) {
+							return f.getDeclaringClass() != Article.class
+									&& f.hasModifier(Modifier.TRANSIENT);
+						}
+
+						public boolean shouldSkipClass(Class<?> c) {
+							return false;
+						}
+					}).create();
+		}
+		// fields written by every profile
+		final Set<String> fields = new HashSet<String>(Arrays.asList("title",
+				"wikiTitle", "wid", "lang", "type", "redirect"));
+		if (paragraphs)
+			fields.addAll(Arrays.asList("wikiText", "paragraphsLink"));
+		if (links)
+			fields.add("links");
+		if (languages)
+			fields.add("enWikiTitle");
+		return new GsonBuilder().setExclusionStrategies(
+				new ExclusionStrategy() {
+					public boolean shouldSkipField(FieldAttributes f) {
+						return f.getDeclaringClass() == Article.class
+								&& !fields.contains(f.getName());
+					}
+
+					public boolean shouldSkipClass(Class<?> c) {
+						return false;
+					}
+				}).create();
+	}
+
+}
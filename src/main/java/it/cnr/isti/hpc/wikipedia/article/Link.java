@@ -30,11 +30,17 @@ public class Link {
 	/** a string representing the name of the page pointed by the link **/
 	private String id;
 	/** the anchor text used in a article for linking to the target id **/
-	private String description;
+	protected String description;
 	
 	private int start;
 	private int end;
 	
+	/**
+	 * An empty link, filled by the {@link ArticleCodec}.
+	 */
+	Link() {
+	}
+
 	public Link(String id, String description, int start, int end) {
 		super();
 		this.id = id;
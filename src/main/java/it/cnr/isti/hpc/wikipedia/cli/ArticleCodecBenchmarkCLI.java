@@ -0,0 +1,146 @@
+/**
+ *  Copyright 2011 Diego Ceccarelli
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package it.cnr.isti.hpc.wikipedia.cli;
+
+import it.cnr.isti.hpc.cli.AbstractCommandLineInterface;
+import it.cnr.isti.hpc.io.reader.JsonRecordParser;
+import it.cnr.isti.hpc.io.reader.RecordParser;
+import it.cnr.isti.hpc.wikipedia.article.Article;
+import it.cnr.isti.hpc.wikipedia.article.ArticleCodec;
+import it.cnr.isti.hpc.wikipedia.article.ArticleProjection;
+import it.cnr.isti.hpc.wikipedia.article.ArticleProjection.Field;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.Gson;
+
+/**
+ * Compares the time spent by Gson (a {@link JsonRecordParser}) and by the
+ * {@link ArticleCodec} to read and to write the articles of a json dump, and
+ * the time spent by an {@link ArticleProjection} to read only their titles and
+ * types. The lines are loaded in memory (at most <tt>-articles N</tt>), then
+ * each round decodes and encodes all of them with both; the json written by
+ * the two is checked to be the same.
+ */
+public class ArticleCodecBenchmarkCLI extends AbstractCommandLineInterface {
+	/**
+	 * Logger for this class
+	 */
+	private static final Logger logger = LoggerFactory
+			.getLogger(ArticleCodecBenchmarkCLI.class);
+
+	private static String[] params = new String[] { INPUT };
+
+	private static final String ARTICLES = "articles";
+	private static final String ROUNDS = "rounds";
+
+	private static String[] optionalParams = new String[] { ARTICLES, ROUNDS };
+
+	private static final String USAGE = "java -cp $jar "
+			+ ArticleCodecBenchmarkCLI.class
+			+ " -input wikipedia-json-dump [-articles N] [-rounds 3]";
+
+	private final OptionalParameters options;
+
+	public ArticleCodecBenchmarkCLI(String[] args) {
+		this(new OptionalParameters(args, optionalParams));
+	}
+
+	private ArticleCodecBenchmarkCLI(OptionalParameters options) {
+		super(options.getRemainingArgs(), params, USAGE);
+		this.options = options;
+	}
+
+	public static void main(String[] args) {
+		ArticleCodecBenchmarkCLI cli = new ArticleCodecBenchmarkCLI(args);
+		int max = cli.options.getIntParam(ARTICLES, Integer.MAX_VALUE);
+		int rounds = cli.options.getIntParam(ROUNDS, 3);
+
+		List<String> lines = new ArrayList<String>();
+		cli.openInput();
+		String line;
+		while (lines.size() < max && (line = cli.readLineFromInput()) != null) {
+			if (!line.isEmpty())
+				lines.add(line);
+		}
+		cli.closeInput();
+		logger.info("loaded {} articles", lines.size());
+
+		RecordParser<Article> gsonParser = new JsonRecordParser<Article>(
+				Article.class);
+		RecordParser<Article> codec = new ArticleCodec();
+		RecordParser<Article> projection = new ArticleProjection(Field.TITLE,
+				Field.TYPE);
+		Gson gson = new Gson();
+
+		for (String json : lines) {
+			String expected = gson.toJson(gsonParser.decode(json));
+			if (!expected.equals(codec.encode(codec.decode(json)))) {
+				logger.error("the codec and Gson differ on {}", json);
+				System.exit(-1);
+			}
+		}
+
+		for (int r = 1; r <= rounds; r++) {
+			List<Article> articles = new ArrayList<Article>(lines.size());
+			long start = System.nanoTime();
+			for (String json : lines) {
+				articles.add(gsonParser.decode(json));
+			}
+			long gsonDecode = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (String json : lines) {
+				codec.decode(json);
+			}
+			long codecDecode = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (String json : lines) {
+				projection.decode(json);
+			}
+			long projectionDecode = System.nanoTime() - start;
+
+			long chars = 0;
+			start = System.nanoTime();
+			for (Article a : articles) {
+				chars += gson.toJson(a).length();
+			}
+			long gsonEncode = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (Article a : articles) {
+				chars -= codec.encode(a).length();
+			}
+			long codecEncode = System.nanoTime() - start;
+			if (chars != 0) {
+				logger.error("the codec and Gson wrote a different json");
+				System.exit(-1);
+			}
+
+			logger.info("round {}: decode gson {} ms, codec {} ms", r,
+					gsonDecode / 1000000, codecDecode / 1000000);
+			logger.info("round {}: decode title and type {} ms", r,
+					projectionDecode / 1000000);
+			logger.info("round {}: encode gson {} ms, codec {} ms", r,
+					gsonEncode / 1000000, codecEncode / 1000000);
+		}
+	}
+}
@@ -0,0 +1,101 @@
+/**
+ *  Copyright 2011 Diego Ceccarelli
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package it.cnr.isti.hpc.wikipedia.cli;
+
+import it.cnr.isti.hpc.cli.AbstractCommandLineInterface;
+import it.cnr.isti.hpc.wikipedia.article.Article;
+import it.cnr.isti.hpc.wikipedia.article.ExtractionProfile;
+import it.cnr.isti.hpc.wikipedia.reader.ArticleExtractor;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Extracts some articles from an uncompressed or multistream dump, seeking
+ * directly to their pages using the page index, and writes their json (one
+ * article per line). Ids are separated by commas, titles by <tt>|</tt>.
+ * 
+ * @see ArticleExtractor
+ */
+public class ExtractArticlesCLI extends AbstractCommandLineInterface {
+	/**
+	 * Logger for this class
+	 */
+	private static final Logger logger = LoggerFactory
+			.getLogger(ExtractArticlesCLI.class);
+
+	private static String[] params = new String[] { INPUT, OUTPUT, "index",
+			"lang" };
+
+	private static final String IDS = "ids";
+	private static final String TITLES = "titles";
+	private static final String PROFILE = "profile";
+
+	private static String[] optionalParams = new String[] { IDS, TITLES,
+			PROFILE };
+
+	private static final String USAGE = "java -cp $jar "
+			+ ExtractArticlesCLI.class
+			+ " -input wikipedia-dump.xml|wikipedia-multistream.xml.bz2 -index page-index"
+			+ " -output articles.json -lang [en|it] [-ids id1,id2] [-titles title1|title2]"
+			+ " [-profile spotlight|titles-only|links-only|full]";
+
+	private final OptionalParameters options;
+
+	public ExtractArticlesCLI(String[] args) {
+		this(new OptionalParameters(args, optionalParams));
+	}
+
+	private ExtractArticlesCLI(OptionalParameters options) {
+		super(options.getRemainingArgs(), params, USAGE);
+		this.options = options;
+	}
+
+	public static void main(String[] args) {
+		ExtractArticlesCLI cli = new ExtractArticlesCLI(args);
+		List<String> ids = split(cli.options.getParam(IDS, null), ",");
+		List<String> titles = split(cli.options.getParam(TITLES, null), "\\|");
+		try {
+			ExtractionProfile profile = ExtractionProfile.forName(cli.options
+					.getParam(PROFILE, ExtractionProfile.SPOTLIGHT.getName()));
+			ArticleExtractor extractor = new ArticleExtractor(new File(
+					cli.getInput()), new File(cli.getParam("index")),
+					cli.getParam("lang"));
+			extractor.setProfile(profile);
+			List<Article> articles = extractor.getArticles(ids, titles);
+			cli.openOutput();
+			for (Article a : articles) {
+				cli.writeLineInOutput(a.toJson(profile));
+			}
+			cli.closeOutput();
+			logger.info("extracted {} articles", articles.size());
+		} catch (Exception e) {
+			logger.error("extracting the articles {}", e.toString());
+			System.exit(-1);
+		}
+	}
+
+	private static List<String> split(String values, String separator) {
+		if (values == null)
+			return Collections.emptyList();
+		return Arrays.asList(values.split(separator));
+	}
+}
@@ -16,11 +16,18 @@
 package it.cnr.isti.hpc.wikipedia.cli;
 
 import it.cnr.isti.hpc.cli.AbstractCommandLineInterface;
-import it.cnr.isti.hpc.io.reader.JsonRecordParser;
 import it.cnr.isti.hpc.io.reader.RecordReader;
 import it.cnr.isti.hpc.log.ProgressLogger;
 import it.cnr.isti.hpc.wikipedia.article.Article;
+import it.cnr.isti.hpc.wikipedia.article.ArticleProjection;
+import it.cnr.isti.hpc.wikipedia.article.ArticleProjection.Field;
 import it.cnr.isti.hpc.wikipedia.article.ArticleSummarizer;
+import it.cnr.isti.hpc.wikipedia.reader.ParallelJsonReader;
+
+import java.io.IOException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Takes the JSON dump and produce a summary file containing, a file where each
@@ -32,50 +39,100 @@ import it.cnr.isti.hpc.wikipedia.article.ArticleSummarizer;
  * <br/>
  * 
  * The last field contains the redirection is type is redirect, otherwise the
- * short summary
+ * short summary. With <tt>-threads N</tt> the dump is read by N threads
+ * ({@link ParallelJsonReader}), and the lines are not in the order of the
+ * dump.
  * 
  * 
  * @author Diego Ceccarelli, diego.ceccarelli@isti.cnr.it created on 21/nov/2011
  */
 public class GetDumpSummaryCLI extends AbstractCommandLineInterface {
+	/**
+	 * Logger for this class
+	 */
+	private static final Logger logger = LoggerFactory
+			.getLogger(GetDumpSummaryCLI.class);
 
 	private static String[] params = new String[] { INPUT, OUTPUT };
 
+	private static final String THREADS = "threads";
+
+	private static String[] optionalParams = new String[] { THREADS };
+
 	private static final String USAGE = "java -cp $jar "
 			+ GetDumpSummaryCLI.class
-			+ " -input wikipedia-json-dump -output titles";
+			+ " -input wikipedia-json-dump -output titles [-threads N]";
 
 	private final static String TAB = "\t";
 
+	/** the fields of the articles summarized **/
+	static final Field[] FIELDS = { Field.TYPE, Field.WID, Field.WIKI_TITLE,
+			Field.REDIRECT, Field.PARAGRAPHS };
+
+	private final OptionalParameters options;
+
 	public GetDumpSummaryCLI(String[] args) {
-		super(args, params, USAGE);
+		this(new OptionalParameters(args, optionalParams));
+	}
+
+	private GetDumpSummaryCLI(OptionalParameters options) {
+		super(options.getRemainingArgs(), params, USAGE);
+		this.options = options;
 	}
 
 	public static void main(String[] args) {
 
-		GetDumpSummaryCLI cli = new GetDumpSummaryCLI(args);
-		ProgressLogger pl = new ProgressLogger("dumped {} titles", 10000);
+		final GetDumpSummaryCLI cli = new GetDumpSummaryCLI(args);
+		final ProgressLogger pl = new ProgressLogger("dumped {} titles", 10000);
+		int threads = cli.options.getIntParam(THREADS, 1);
+		ArticleProjection projection = new ArticleProjection(FIELDS);
+		final ArticleSummarizer summarizer = new ArticleSummarizer();
 		cli.openOutput();
-		RecordReader<Article> reader = new RecordReader<Article>(
-				cli.getInput(), new JsonRecordParser<Article>(Article.class));
-		ArticleSummarizer summarizer = new ArticleSummarizer();
 
-		for (Article a : reader) {
-			pl.up();
-			cli.writeInOutput(a.getTypeName());
-			cli.writeInOutput(TAB);
-			cli.writeInOutput(String.valueOf(a.getWikiId()));
-			cli.writeInOutput(TAB);
-			cli.writeInOutput(a.getWikiTitle());
-			cli.writeInOutput(TAB);
-			if (a.isRedirect()) {
-				cli.writeInOutput("-> " + a.getRedirect());
-			} else {
-				cli.writeInOutput(summarizer.getSummary(a));
+		if (threads > 1) {
+			try {
+				ParallelJsonReader reader = new ParallelJsonReader(
+						cli.getInput(), projection);
+				reader.setThreads(threads);
+				reader.forEach(new ParallelJsonReader.Handler() {
+					public void handle(Article a) {
+						String line = summary(a, summarizer);
+						synchronized (cli) {
+							pl.up();
+							cli.writeInOutput(line);
+						}
+					}
+				});
+			} catch (IOException e) {
+				logger.error("reading the dump {}", e.toString());
+				System.exit(-1);
 			}
-			cli.writeInOutput("\n");
+			cli.closeOutput();
+			return;
+		}
 
+		RecordReader<Article> reader = new RecordReader<Article>(
+				cli.getInput(), projection);
+		for (Article a : reader) {
+			pl.up();
+			cli.writeInOutput(summary(a, summarizer));
 		}
 		cli.closeOutput();
 	}
+
+	/**
+	 * @return the line summarizing the article
+	 */
+	static String summary(Article a, ArticleSummarizer summarizer) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(a.getTypeName()).append(TAB);
+		sb.append(a.getWikiId()).append(TAB);
+		sb.append(a.getWikiTitle()).append(TAB);
+		if (a.isRedirect()) {
+			sb.append("-> ").append(a.getRedirect());
+		} else {
+			sb.append(summarizer.getSummary(a));
+		}
+		return sb.append("\n").toString();
+	}
 }
@@ -16,10 +16,11 @@
 package it.cnr.isti.hpc.wikipedia.cli;
 
 import it.cnr.isti.hpc.cli.AbstractCommandLineInterface;
-import it.cnr.isti.hpc.io.reader.JsonRecordParser;
 import it.cnr.isti.hpc.io.reader.RecordReader;
 import it.cnr.isti.hpc.log.ProgressLogger;
 import it.cnr.isti.hpc.wikipedia.article.Article;
+import it.cnr.isti.hpc.wikipedia.article.ArticleProjection;
+import it.cnr.isti.hpc.wikipedia.article.ArticleProjection.Field;
 import it.cnr.isti.hpc.wikipedia.article.Article.Type;
 
 import org.slf4j.Logger;
@@ -43,6 +44,9 @@ public class GetTitleAndTypeCLI extends AbstractCommandLineInterface {
 			+ GetTitleAndTypeCLI.class
 			+ " -input wikipedia-json-dump -output titleAndType.tsv ";
 
+	/** the fields of the articles written **/
+	static final Field[] FIELDS = { Field.TITLE, Field.TYPE };
+
 	public GetTitleAndTypeCLI(String[] args) {
 		super(args,params, USAGE);
 	}
@@ -52,27 +56,37 @@ public class GetTitleAndTypeCLI extends AbstractCommandLineInterface {
 		cli.openOutput();
 		
 		RecordReader<Article> reader = new RecordReader<Article>(cli.getInput(),
-				new JsonRecordParser<Article>(Article.class));
+				new ArticleProjection(FIELDS));
 
 		ProgressLogger pl = new ProgressLogger("processed {} articles",100000);
 
 		for (Article a : reader) {
 			pl.up();
-			if (a.getTitleInWikistyle() == null) {
-				logger.warn("current title is null, ignoring ",
-						a.getTitleInWikistyle());
-				continue;
-			}
-
-			if (a.getType() == Type.UNKNOWN) {
-//				logger.warn("{} has no type, ignoring ",
-//						a.getTitleInWikistyle());
-				continue;
-			}
-
-			cli.writeLineInOutput(a.getType()+"\t" + a.getTitle());
+			String line = line(a);
+			if (line != null)
+				cli.writeInOutput(line);
 			
 		}
 		cli.closeOutput();
 	}
+
+	/**
+	 * @return the line with the type and the title of the article, null if
+	 *         the article has no title or an unknown type
+	 */
+	static String line(Article a) {
+		if (a.getTitleInWikistyle() == null) {
+			logger.warn("current title is null, ignoring ",
+					a.getTitleInWikistyle());
+			return null;
+		}
+
+		if (a.getType() == Type.UNKNOWN) {
+//			logger.warn("{} has no type, ignoring ",
+//					a.getTitleInWikistyle());
+			return null;
+		}
+
+		return a.getType() + "\t" + a.getTitle() + "\n";
+	}
 }
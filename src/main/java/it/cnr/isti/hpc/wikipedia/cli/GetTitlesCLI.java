@@ -16,10 +16,11 @@
 package it.cnr.isti.hpc.wikipedia.cli;
 
 import it.cnr.isti.hpc.cli.AbstractCommandLineInterface;
-import it.cnr.isti.hpc.io.reader.JsonRecordParser;
 import it.cnr.isti.hpc.io.reader.RecordReader;
 import it.cnr.isti.hpc.log.ProgressLogger;
 import it.cnr.isti.hpc.wikipedia.article.Article;
+import it.cnr.isti.hpc.wikipedia.article.ArticleProjection;
+import it.cnr.isti.hpc.wikipedia.article.ArticleProjection.Field;
 import it.cnr.isti.hpc.wikipedia.reader.filter.RedirectFilter;
 import it.cnr.isti.hpc.wikipedia.reader.filter.ShortTitleFilter;
 import it.cnr.isti.hpc.wikipedia.reader.filter.TypeFilter;
@@ -38,28 +39,42 @@ public class GetTitlesCLI extends AbstractCommandLineInterface {
 	private static final String USAGE = "java -cp $jar " + GetTitlesCLI.class
 			+ " -input wikipedia-json-dump -output titles";
 
+	/** the fields of the articles needed to select the titles **/
+	static final Field[] FIELDS = { Field.TITLE, Field.TYPE };
+
 	public GetTitlesCLI(String[] args) {
 		super(args, params, USAGE);
 	}
 
-	@SuppressWarnings("unchecked")
 	public static void main(String[] args) {
 
 		GetTitlesCLI cli = new GetTitlesCLI(args);
 		ProgressLogger pl = new ProgressLogger("dumped {} titles", 10000);
 		cli.openOutput();
 		RecordReader<Article> reader = new RecordReader<Article>(
-				cli.getInput(), new JsonRecordParser<Article>(Article.class));
-
-		reader.filter(ShortTitleFilter.FEWER_THAN_THREE,
-				TypeFilter.MAIN_CATEGORY_TEMPLATE,
-				RedirectFilter.FILTER_OUT_REDIRECTS);
+				cli.getInput(), new ArticleProjection(FIELDS));
 
 		for (Article a : reader) {
+			String line = line(a);
+			if (line == null)
+				continue;
 			pl.up();
-			cli.writeLineInOutput(a.getTitleInWikistyle());
+			cli.writeInOutput(line);
 
 		}
 		cli.closeOutput();
 	}
+
+	/**
+	 * @return the line with the title of the article, null if the article is
+	 *         not a page, a template or a category, is a redirect or has a
+	 *         title shorter than three characters
+	 */
+	static String line(Article a) {
+		if (ShortTitleFilter.FEWER_THAN_THREE.isFilter(a)
+				|| TypeFilter.MAIN_CATEGORY_TEMPLATE.isFilter(a)
+				|| RedirectFilter.FILTER_OUT_REDIRECTS.isFilter(a))
+			return null;
+		return a.getTitleInWikistyle() + "\n";
+	}
 }
@@ -16,12 +16,16 @@
 package it.cnr.isti.hpc.wikipedia.cli;
 
 import it.cnr.isti.hpc.cli.AbstractCommandLineInterface;
-import it.cnr.isti.hpc.io.reader.JsonRecordParser;
 import it.cnr.isti.hpc.io.reader.RecordReader;
 import it.cnr.isti.hpc.log.ProgressLogger;
 import it.cnr.isti.hpc.wikipedia.article.Article;
+import it.cnr.isti.hpc.wikipedia.article.ArticleProjection;
+import it.cnr.isti.hpc.wikipedia.article.ArticleProjection.Field;
 import it.cnr.isti.hpc.wikipedia.article.Link;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Output wikipedia dump in a particular format given as input string
  * 
@@ -44,49 +48,84 @@ public class JsonToLineCLI extends AbstractCommandLineInterface {
 		String format = cli.getParam("format");
 		ProgressLogger pl = new ProgressLogger("dumped {} articles ", 100000);
 		RecordReader<Article> reader = new RecordReader<Article>(
-				cli.getInput(), new JsonRecordParser<Article>(Article.class));
+				cli.getInput(), new ArticleProjection(fields(format)));
 		cli.openOutput();
 
 		for (Article a : reader) {
 			pl.up();
-			for (int i = 0; i < format.length(); i++) {
-				char c = format.charAt(i);
-				if (c == 'w') {
-					cli.writeInOutput(a.getWikiTitle());
-					continue;
-				}
-				if (c == 'T') {
-					cli.writeInOutput(a.getTitle());
-					continue;
-				}
-				if (c == 't') {
-					cli.writeInOutput(a.getText());
-					continue;
-				}
-				if (c == 'C') {
-					cli.writeInOutput(a.getTypeName());
-					continue;
-				}
+			cli.writeInOutput(line(a, format));
 
-				if (c == 'c') {
-					StringBuilder sb = new StringBuilder();
-					for (Link l : a.getCategories()) {
-						sb.append(l.getCleanId()).append(" ");
-					}
-					if (sb.length() > 0)
-						sb.setLength(sb.length() - 1);
-					cli.writeInOutput(sb.toString());
-					continue;
+		}
+		cli.closeOutput();
 
-				}
+	}
 
-				cli.writeInOutput(String.valueOf(c));
+	/**
+	 * @return the line of the article in the given format
+	 */
+	static String line(Article a, String format) {
+		StringBuilder line = new StringBuilder();
+		for (int i = 0; i < format.length(); i++) {
+			char c = format.charAt(i);
+			if (c == 'w') {
+				line.append(a.getWikiTitle());
+				continue;
+			}
+			if (c == 'T') {
+				line.append(a.getTitle());
+				continue;
+			}
+			if (c == 't') {
+				line.append(a.getText());
+				continue;
+			}
+			if (c == 'C') {
+				line.append(a.getTypeName());
+				continue;
 			}
 
-			cli.writeInOutput("\n");
+			if (c == 'c') {
+				StringBuilder sb = new StringBuilder();
+				for (Link l : a.getCategories()) {
+					sb.append(l.getCleanId()).append(" ");
+				}
+				if (sb.length() > 0)
+					sb.setLength(sb.length() - 1);
+				line.append(sb);
+				continue;
+
+			}
 
+			line.append(c);
 		}
-		cli.closeOutput();
 
+		return line.append("\n").toString();
+	}
+
+	/**
+	 * @return the fields of the article printed by the format
+	 */
+	static Field[] fields(String format) {
+		List<Field> fields = new ArrayList<Field>();
+		for (int i = 0; i < format.length(); i++) {
+			switch (format.charAt(i)) {
+			case 'w':
+				fields.add(Field.WIKI_TITLE);
+				break;
+			case 'T':
+				fields.add(Field.TITLE);
+				break;
+			case 't':
+				fields.add(Field.PARAGRAPHS);
+				break;
+			case 'C':
+				fields.add(Field.TYPE);
+				break;
+			case 'c':
+				fields.add(Field.CATEGORIES);
+				break;
+			}
+		}
+		return fields.toArray(new Field[fields.size()]);
 	}
 }
@@ -0,0 +1,235 @@
+/**
+ *  Copyright 2011 Diego Ceccarelli
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package it.cnr.isti.hpc.wikipedia.cli;
+
+import it.cnr.isti.hpc.cli.AbstractCommandLineInterface;
+import it.cnr.isti.hpc.io.IOUtils;
+import it.cnr.isti.hpc.io.reader.RecordReader;
+import it.cnr.isti.hpc.log.ProgressLogger;
+import it.cnr.isti.hpc.wikipedia.article.Article;
+import it.cnr.isti.hpc.wikipedia.article.ArticleProjection;
+import it.cnr.isti.hpc.wikipedia.article.ArticleProjection.Field;
+import it.cnr.isti.hpc.wikipedia.article.ArticleSummarizer;
+
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes in a single scan of the json dump the outputs of
+ * {@link GetTitlesCLI} (<tt>-titles</tt>), {@link GetTitleAndTypeCLI}
+ * (<tt>-types</tt>), {@link GetDumpSummaryCLI} (<tt>-summary</tt>) and
+ * {@link JsonToLineCLI} (<tt>-lines file=format</tt>, repeated for each
+ * format, e.g. <tt>-lines wiki-titles.txt=w -lines "types.txt=C|T"</tt>; the
+ * file ends at the first <tt>=</tt>). Each article is decoded once,
+ * reading only the fields needed by the outputs, and given to a thread for
+ * each output that formats and writes its lines.
+ */
+public class JsonToOutputsCLI extends AbstractCommandLineInterface {
+	/**
+	 * Logger for this class
+	 */
+	private static final Logger logger = LoggerFactory
+			.getLogger(JsonToOutputsCLI.class);
+
+	private static String[] params = new String[] { INPUT };
+
+	private static final String TITLES = "titles";
+	private static final String TYPES = "types";
+	private static final String SUMMARY = "summary";
+	private static final String LINES = "lines";
+	private static final String QUEUE = "queue";
+
+	private static String[] optionalParams = new String[] { TITLES, TYPES,
+			SUMMARY, LINES, QUEUE };
+
+	private static final String USAGE = "java -cp $jar "
+			+ JsonToOutputsCLI.class
+			+ " -input wikipedia-json-dump [-titles titles.txt]"
+			+ " [-types titleAndType.tsv] [-summary summary.tsv]"
+			+ " [-lines file1=format1 [-lines file2=format2 ...]] [-queue 1000]";
+
+	/** marks the end of the articles in the queues **/
+	private static final Article END = new Article();
+
+	private final OptionalParameters options;
+
+	public JsonToOutputsCLI(String[] args) {
+		this(new OptionalParameters(args, optionalParams));
+	}
+
+	private JsonToOutputsCLI(OptionalParameters options) {
+		super(options.getRemainingArgs(), params, USAGE);
+		this.options = options;
+	}
+
+	public static void main(String[] args) {
+		JsonToOutputsCLI cli = new JsonToOutputsCLI(args);
+		int queue = cli.options.getIntParam(QUEUE, 1000);
+		List<Output> outputs;
+		try {
+			outputs = cli.getOutputs(queue);
+		} catch (IllegalArgumentException e) {
+			logger.error(e.getMessage());
+			logger.error(USAGE);
+			System.exit(-1);
+			return;
+		}
+
+		EnumSet<Field> fields = EnumSet.noneOf(Field.class);
+		for (Output o : outputs) {
+			fields.addAll(Arrays.asList(o.fields));
+			o.start();
+		}
+		RecordReader<Article> reader = new RecordReader<Article>(
+				cli.getInput(), new ArticleProjection(
+						fields.toArray(new Field[fields.size()])));
+		ProgressLogger pl = new ProgressLogger("read {} articles", 100000);
+		try {
+			for (Article a : reader) {
+				pl.up();
+				for (Output o : outputs) {
+					o.queue.put(a);
+				}
+			}
+			for (Output o : outputs) {
+				o.queue.put(END);
+			}
+			for (Output o : outputs) {
+				o.join();
+			}
+		} catch (InterruptedException e) {
+			logger.error("interrupted writing the outputs");
+			System.exit(-1);
+		}
+		boolean failed = false;
+		for (Output o : outputs) {
+			if (o.error != null) {
+				logger.error("writing {}: {}", o.file, o.error.toString());
+				failed = true;
+			}
+		}
+		if (failed)
+			System.exit(-1);
+	}
+
+	private List<Output> getOutputs(int queue) {
+		List<Output> outputs = new ArrayList<Output>();
+		if (options.hasParam(TITLES)) {
+			outputs.add(new Output(options.getParam(TITLES, null), queue,
+					GetTitlesCLI.FIELDS) {
+				@Override
+				String line(Article a) {
+					return GetTitlesCLI.line(a);
+				}
+			});
+		}
+		if (options.hasParam(TYPES)) {
+			outputs.add(new Output(options.getParam(TYPES, null), queue,
+					GetTitleAndTypeCLI.FIELDS) {
+				@Override
+				String line(Article a) {
+					return GetTitleAndTypeCLI.line(a);
+				}
+			});
+		}
+		if (options.hasParam(SUMMARY)) {
+			outputs.add(new Output(options.getParam(SUMMARY, null), queue,
+					GetDumpSummaryCLI.FIELDS) {
+				private final ArticleSummarizer summarizer = new ArticleSummarizer();
+
+				@Override
+				String line(Article a) {
+					return GetDumpSummaryCLI.summary(a, summarizer);
+				}
+			});
+		}
+		// the formats can contain any character, so each one has its own
+		// -lines option
+		for (String spec : options.getParams(LINES)) {
+			int eq = spec.indexOf('=');
+			if (eq <= 0)
+				throw new IllegalArgumentException("the lines output " + spec
+						+ " is not file=format");
+			final String format = spec.substring(eq + 1);
+			outputs.add(new Output(spec.substring(0, eq), queue,
+					JsonToLineCLI.fields(format)) {
+				@Override
+				String line(Article a) {
+					return JsonToLineCLI.line(a, format);
+				}
+			});
+		}
+		if (outputs.isEmpty())
+			throw new IllegalArgumentException("no outputs");
+		return outputs;
+	}
+
+	/**
+	 * An output file, written by its own thread.
+	 */
+	private abstract static class Output extends Thread {
+		final String file;
+		final Field[] fields;
+		final BlockingQueue<Article> queue;
+		Throwable error = null;
+
+		Output(String file, int queue, Field[] fields) {
+			super("output-" + file);
+			if (file == null || file.equals("true"))
+				throw new IllegalArgumentException("missing output file");
+			this.file = file;
+			this.fields = fields;
+			this.queue = new ArrayBlockingQueue<Article>(queue);
+		}
+
+		/**
+		 * @return the line of the article, null to skip the article
+		 */
+		abstract String line(Article a);
+
+		@Override
+		public void run() {
+			Writer writer = null;
+			try {
+				writer = IOUtils.getPlainOrCompressedUTF8Writer(file);
+				Article a;
+				while ((a = queue.take()) != END) {
+					String line = line(a);
+					if (line != null)
+						writer.write(line);
+				}
+				writer.close();
+			} catch (Throwable t) {
+				error = t;
+				// keeps taking the articles, so the reader is not blocked
+				try {
+					while (queue.take() != END)
+						;
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+	}
+}
@@ -17,8 +17,11 @@ package it.cnr.isti.hpc.wikipedia.cli;
 
 import it.cnr.isti.hpc.cli.AbstractCommandLineInterface;
 import it.cnr.isti.hpc.wikipedia.article.Article;
+import it.cnr.isti.hpc.wikipedia.article.ExtractionProfile;
 import it.cnr.isti.hpc.wikipedia.reader.WikipediaArticleReader;
 
+import java.io.File;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -60,7 +63,7 @@ import org.slf4j.LoggerFactory;
  * <pre>
  * {@code
  * RecordReader<Article> reader = new RecordReader<Article>(
- * 			"wikipedia.json",new JsonRecordParser<Article>(Article.class)
+ * 			"wikipedia.json",new ArticleCodec()
  * ).filter(TypeFilter.STD_FILTER);
  * 
  * for (Article a : reader) {
@@ -87,12 +90,44 @@ public class MediawikiToJsonCLI extends AbstractCommandLineInterface {
 
 	private static String[] params = new String[] { INPUT, OUTPUT, "lang" };
 
+	private static final String THREADS = "threads";
+	private static final String QUEUE = "queue";
+	private static final String INDEX = "index";
+	private static final String DECODERS = "decoders";
+	private static final String UNORDERED = "unordered";
+	private static final String PARSER = "parser";
+	private static final String REGIONS = "regions";
+	private static final String PAGE_INDEX = "pageindex";
+	private static final String CHECKPOINT = "checkpoint";
+	private static final String RESUME = "resume";
+	private static final String COMPRESSORS = "compressors";
+	private static final String PROFILE = "profile";
+
+	/** articles written between two checkpoints **/
+	private static final int DEFAULT_CHECKPOINT_INTERVAL = 10000;
+
+	private static String[] optionalParams = new String[] { THREADS, QUEUE,
+			INDEX, DECODERS, UNORDERED, PARSER, REGIONS, PAGE_INDEX,
+			CHECKPOINT, RESUME, COMPRESSORS, PROFILE };
+
 	private static final String USAGE = "java -cp $jar "
 			+ MediawikiToJsonCLI.class
-			+ " -input wikipedia-dump.xml.bz -output wikipedia-dump.json -lang [en|it]";
+			+ " -input wikipedia-dump.xml.bz -output wikipedia-dump.json -lang [en|it]"
+			+ " [-threads parsing-threads] [-queue pages-in-queue]"
+			+ " [-index multistream-index.txt.bz2 [-decoders bzip2-threads] [-unordered]]"
+			+ " [-parser sax|bytes] [-regions xml-regions] [-pageindex page-index]"
+			+ " [-checkpoint articles] [-resume] [-compressors gzip-threads]"
+			+ " [-profile spotlight|titles-only|links-only|full]";
+
+	private final OptionalParameters options;
 
 	public MediawikiToJsonCLI(String[] args) {
-		super(args, params, USAGE);
+		this(new OptionalParameters(args, optionalParams));
+	}
+
+	private MediawikiToJsonCLI(OptionalParameters options) {
+		super(options.getRemainingArgs(), params, USAGE);
+		this.options = options;
 	}
 
 	public static void main(String[] args) {
@@ -102,6 +137,28 @@ public class MediawikiToJsonCLI extends AbstractCommandLineInterface {
 		String lang = cli.getParam("lang");
 		WikipediaArticleReader wap = new WikipediaArticleReader(input, output,
 				lang);
+		wap.setProfile(ExtractionProfile.forName(cli.options.getParam(PROFILE,
+				ExtractionProfile.SPOTLIGHT.getName())));
+		if (cli.options.hasParam(INDEX)) {
+			// multistream dump, decompressed in parallel
+			int decoders = cli.options.getIntParam(DECODERS, Runtime
+					.getRuntime().availableProcessors());
+			boolean ordered = !cli.options.hasParam(UNORDERED);
+			wap.setMultistreamIndex(new File(cli.options.getParam(INDEX, null)),
+					decoders, ordered);
+		}
+		wap.setByteScanner("bytes".equals(cli.options.getParam(PARSER, "sax")));
+		wap.setRegions(cli.options.getIntParam(REGIONS, 1));
+		if (cli.options.hasParam(PAGE_INDEX))
+			wap.setPageIndex(new File(cli.options.getParam(PAGE_INDEX, null)));
+		wap.setThreads(cli.options.getIntParam(THREADS, 1));
+		wap.setQueueSize(cli.options.getIntParam(QUEUE,
+				WikipediaArticleReader.DEFAULT_QUEUE_SIZE));
+		wap.setCheckpointInterval(cli.options.getIntParam(CHECKPOINT,
+				DEFAULT_CHECKPOINT_INTERVAL));
+		wap.setResume(cli.options.hasParam(RESUME));
+		wap.setCompressors(cli.options.getIntParam(COMPRESSORS, Runtime
+				.getRuntime().availableProcessors()));
 		try {
 			wap.start();
 		} catch (Exception e) {
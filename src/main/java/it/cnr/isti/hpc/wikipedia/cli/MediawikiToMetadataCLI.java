@@ -0,0 +1,147 @@
+/**
+ *  Copyright 2011 Diego Ceccarelli
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package it.cnr.isti.hpc.wikipedia.cli;
+
+import it.cnr.isti.hpc.cli.AbstractCommandLineInterface;
+import it.cnr.isti.hpc.io.IOUtils;
+import it.cnr.isti.hpc.log.ProgressLogger;
+import it.cnr.isti.hpc.wikipedia.article.Article;
+import it.cnr.isti.hpc.wikipedia.article.ArticleSummarizer;
+import it.cnr.isti.hpc.wikipedia.reader.ArticleMetadataReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes the metadata of the articles directly from the xml dump, without
+ * converting it in json and without parsing the wikitext of the articles
+ * (see {@link ArticleMetadataReader}). The outputs are:
+ *
+ * <ul>
+ * <li><tt>-metadata</tt>: a line for each article with <code>wid &lt;tab&gt;
+ * title &lt;tab&gt; namespace &lt;tab&gt; type &lt;tab&gt; redirect</code>;</li>
+ * <li><tt>-types</tt>: the file written by {@link GetTitleAndTypeCLI};</li>
+ * <li><tt>-summary</tt>: the file written by {@link GetDumpSummaryCLI},
+ * where only the redirects have the last field (the articles have no
+ * paragraphs to summarize).</li>
+ * </ul>
+ */
+public class MediawikiToMetadataCLI extends AbstractCommandLineInterface {
+	/**
+	 * Logger for this class
+	 */
+	private static final Logger logger = LoggerFactory
+			.getLogger(MediawikiToMetadataCLI.class);
+
+	private static String[] params = new String[] { INPUT, "lang" };
+
+	private static final String METADATA = "metadata";
+	private static final String TYPES = "types";
+	private static final String SUMMARY = "summary";
+	private static final String PARSER = "parser";
+
+	private static String[] optionalParams = new String[] { METADATA, TYPES,
+			SUMMARY, PARSER };
+
+	private static final String USAGE = "java -cp $jar "
+			+ MediawikiToMetadataCLI.class
+			+ " -input wikipedia-dump.xml.bz -lang [en|it]"
+			+ " [-metadata metadata.tsv] [-types titleAndType.tsv]"
+			+ " [-summary summary.tsv] [-parser sax|bytes]";
+
+	private final static String TAB = "\t";
+
+	private final OptionalParameters options;
+
+	public MediawikiToMetadataCLI(String[] args) {
+		this(new OptionalParameters(args, optionalParams));
+	}
+
+	private MediawikiToMetadataCLI(OptionalParameters options) {
+		super(options.getRemainingArgs(), params, USAGE);
+		this.options = options;
+	}
+
+	public static void main(String[] args) {
+		MediawikiToMetadataCLI cli = new MediawikiToMetadataCLI(args);
+		if (!cli.options.hasParam(METADATA) && !cli.options.hasParam(TYPES)
+				&& !cli.options.hasParam(SUMMARY)) {
+			logger.error("no outputs");
+			logger.error(USAGE);
+			System.exit(-1);
+		}
+		ArticleMetadataReader reader = new ArticleMetadataReader(new File(
+				cli.getInput()), cli.getParam("lang"));
+		reader.setByteScanner("bytes".equals(cli.options.getParam(PARSER,
+				"sax")));
+		try {
+			final Writer metadata = cli.open(METADATA);
+			final Writer types = cli.open(TYPES);
+			final Writer summary = cli.open(SUMMARY);
+			final ArticleSummarizer summarizer = new ArticleSummarizer();
+			final ProgressLogger pl = new ProgressLogger("read {} articles",
+					100000);
+			reader.read(new ArticleMetadataReader.Handler() {
+				public void handle(Article a) throws IOException {
+					pl.up();
+					if (metadata != null)
+						metadata.write(line(a));
+					if (types != null) {
+						String line = GetTitleAndTypeCLI.line(a);
+						if (line != null)
+							types.write(line);
+					}
+					if (summary != null)
+						summary.write(GetDumpSummaryCLI.summary(a, summarizer));
+				}
+			});
+			for (Writer w : new Writer[] { metadata, types, summary }) {
+				if (w != null)
+					w.close();
+			}
+		} catch (IOException e) {
+			logger.error("reading the dump {}", e.toString());
+			System.exit(-1);
+		}
+	}
+
+	/**
+	 * @return the writer of the output, null if it is not requested
+	 */
+	private Writer open(String output) throws IOException {
+		if (!options.hasParam(output))
+			return null;
+		return IOUtils.getPlainOrCompressedUTF8Writer(options.getParam(output,
+				null));
+	}
+
+	/**
+	 * @return the line with the metadata of the article
+	 */
+	static String line(Article a) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(a.getWikiId()).append(TAB);
+		sb.append(a.getTitle()).append(TAB);
+		sb.append(a.getIntegerNamespace()).append(TAB);
+		sb.append(a.getType()).append(TAB);
+		sb.append(a.getRedirect());
+		return sb.append("\n").toString();
+	}
+}
@@ -0,0 +1,103 @@
+/**
+ *  Copyright 2013 Diego Ceccarelli
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package it.cnr.isti.hpc.wikipedia.cli;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link it.cnr.isti.hpc.cli.AbstractCommandLineInterface} requires all its
+ * parameters, OptionalParameters extracts the optional ones (e.g.,
+ * <tt>-threads 8</tt>) from the command line before it is given to the
+ * interface. An optional parameter not followed by a value (e.g.,
+ * <tt>-resume</tt>) is a flag and has value <tt>true</tt>. A parameter can be
+ * repeated, {@link #getParam(String, String)} returns its last value and
+ * {@link #getParams(String)} all of them.
+ */
+public class OptionalParameters {
+
+	private static final String TRUE = "true";
+
+	private final Map<String, List<String>> values = new HashMap<String, List<String>>();
+	private final String[] remainingArgs;
+
+	/**
+	 * @param args
+	 *            - the command line
+	 * @param names
+	 *            - the names of the optional parameters
+	 */
+	public OptionalParameters(String[] args, String... names) {
+		List<String> optional = Arrays.asList(names);
+		List<String> remaining = new ArrayList<String>();
+		int i = 0;
+		while (i < args.length) {
+			String arg = args[i++];
+			String name = arg.replaceFirst("^--?", "");
+			if (arg.equals(name) || !optional.contains(name)) {
+				remaining.add(arg);
+				continue;
+			}
+			List<String> v = values.get(name);
+			if (v == null) {
+				v = new ArrayList<String>();
+				values.put(name, v);
+			}
+			if (i < args.length && !args[i].startsWith("-")) {
+				v.add(args[i++]);
+			} else {
+				v.add(TRUE);
+			}
+		}
+		remainingArgs = remaining.toArray(new String[remaining.size()]);
+	}
+
+	/**
+	 * @return the command line without the optional parameters
+	 */
+	public String[] getRemainingArgs() {
+		return remainingArgs;
+	}
+
+	public boolean hasParam(String name) {
+		return values.containsKey(name);
+	}
+
+	public String getParam(String name, String defaultValue) {
+		List<String> v = values.get(name);
+		return (v == null) ? defaultValue : v.get(v.size() - 1);
+	}
+
+	/**
+	 * @return the values of a repeated parameter, in the order of the command
+	 *         line (empty if the parameter is missing)
+	 */
+	public List<String> getParams(String name) {
+		List<String> v = values.get(name);
+		return (v == null) ? Collections.<String> emptyList() : Collections
+				.unmodifiableList(v);
+	}
+
+	public int getIntParam(String name, int defaultValue) {
+		String value = getParam(name, null);
+		return (value == null) ? defaultValue : Integer.parseInt(value);
+	}
+
+}
@@ -0,0 +1,149 @@
+/**
+ *  Copyright 2013 Diego Ceccarelli
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package it.cnr.isti.hpc.wikipedia.parser;
+
+import it.cnr.isti.hpc.wikipedia.article.Article;
+import it.cnr.isti.hpc.wikipedia.article.ExtractionProfile;
+import it.cnr.isti.hpc.wikipedia.article.Language;
+import it.cnr.isti.hpc.wikipedia.article.Link;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.dbpedia.spotlight.ParagraphLink;
+import org.dbpedia.spotlight.mediawiki.DefaultWikitextHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects the paragraphs, the links, the lists and the English title of an
+ * article while its page is parsed, the fields of the article the
+ * {@link ArticleParser} sets with every profile.
+ */
+class ArticleHandler extends DefaultWikitextHandler {
+
+	private static final Logger logger = LoggerFactory
+			.getLogger(ArticleHandler.class);
+
+	private final boolean withText;
+	private final boolean withLinks;
+
+	private final List<String> paragraphs = new ArrayList<String>();
+	private final List<ParagraphLink> paraLinks = new ArrayList<ParagraphLink>();
+	private final StringBuilder wikiText = new StringBuilder();
+	private final List<Link> iLinks = new ArrayList<Link>();
+	/** the links of the last paragraph, null if it has no text **/
+	private List<Link> links;
+	/** the offset of the last paragraph in the text of the article **/
+	private int linkOffset;
+	private int paraLength = 0;
+
+	private final List<List<String>> definitionLists = new ArrayList<List<String>>();
+	private final List<List<String>> nestedLists = new ArrayList<List<String>>();
+
+	private boolean languages = false;
+	private String enWikiTitle;
+
+	ArticleHandler(ExtractionProfile profile) {
+		withText = profile.hasParagraphs();
+		withLinks = profile.hasLinks();
+	}
+
+	@Override
+	public void onParagraph(String text) {
+		text = text.replace("\n", " ");
+		if (withText)
+			wikiText.append(text + " ");
+		if (text.isEmpty()) {
+			links = null;
+			paraLength += 1;
+			return;
+		}
+		// the paragraphs are always needed to find the articles without text
+		paragraphs.add(text);
+		links = new ArrayList<Link>();
+		if (withText) {
+			ParagraphLink paragraphLink = new ParagraphLink();
+			paragraphLink.setParaText(text);
+			paragraphLink.setLinks(links);
+			paraLinks.add(paragraphLink);
+		}
+		// the links of the first paragraph with text are never moved
+		linkOffset = paragraphs.size() == 1 ? 0 : paraLength;
+		paraLength += text.length() + 1;
+	}
+
+	@Override
+	public void onInternalLink(String target, String text, int start, int end) {
+		if (links == null || start == end)
+			return;
+		if (withText)
+			links.add(new Link(target, text, start, end));
+		if (withLinks)
+			iLinks.add(new Link(target, text, start + linkOffset, end
+					+ linkOffset));
+	}
+
+	@Override
+	public void onDefinitionList(String term, List<String> definitions) {
+		definitionLists.add(definitions);
+	}
+
+	@Override
+	public void onNestedList(List<String> items) {
+		nestedLists.add(items);
+	}
+
+	@Override
+	public void onLanguageLink(String target, String text) {
+		languages = true;
+		// the last link to the English page
+		if (text.startsWith("en:"))
+			enWikiTitle = target.substring(3);
+	}
+
+	void setParagraphs(Article article) {
+		article.setParagraphs(paragraphs);
+		if (withText) {
+			article.setParagraphsLink(paraLinks);
+			article.setWikiText(wikiText.toString());
+		}
+		if (withLinks)
+			article.setLinks(iLinks);
+	}
+
+	void setLists(Article article) {
+		List<List<String>> lists = new LinkedList<List<String>>();
+		lists.addAll(definitionLists);
+		lists.addAll(nestedLists);
+		article.setLists(lists);
+	}
+
+	void setEnWikiTitle(Article article) {
+		if (article.isLang(Language.EN)) {
+			article.setEnWikiTitle("");
+			return;
+		}
+		if (!languages) {
+			// FIXME title is always null!
+			logger.warn("no languages for page {} ", article.getTitle());
+			return;
+		}
+		if (enWikiTitle != null)
+			article.setEnWikiTitle(enWikiTitle);
+	}
+}
@@ -17,18 +17,21 @@ package it.cnr.isti.hpc.wikipedia.parser;
 
 import it.cnr.isti.hpc.wikipedia.article.Article;
 import it.cnr.isti.hpc.wikipedia.article.Article.Type;
+import it.cnr.isti.hpc.wikipedia.article.ExtractionProfile;
 import it.cnr.isti.hpc.wikipedia.article.Language;
 import it.cnr.isti.hpc.wikipedia.article.Link;
 import it.cnr.isti.hpc.wikipedia.article.Table;
 import it.cnr.isti.hpc.wikipedia.article.Template;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
 
-import org.apache.commons.lang3.StringUtils;
 import org.dbpedia.spotlight.ParagraphLink;
 import org.dbpedia.spotlight.mediawiki.MediaWikiParser;
+import org.dbpedia.spotlight.mediawiki.WikitextHandler;
+import org.dbpedia.spotlight.mediawiki.WikitextParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -63,33 +66,94 @@ public class ArticleParser {
 	/** the language (used for the locale) default is English **/
 	private String lang = Language.EN;
 
+	/**
+	 * A redirect the MediaWiki parser would turn in an article without text:
+	 * the redirect link (to a page in the main namespace) on the first line,
+	 * followed only by templates without parameters containing markup (e.g.,
+	 * <tt>#REDIRECT [[Target]] {{R from CamelCase}}</tt>).
+	 */
+	private static final Pattern SIMPLE_REDIRECT = Pattern
+			.compile("#[^\\s\\[:]+[ \\t]*\\[\\[[^\\[\\]{}|<>:\\n]+\\]\\]"
+					+ "(?:[ \\t]*\\{\\{[^{}\\[\\]<>\\n]*\\}\\})*[ \\t]*\\n?");
+
 	static int shortDescriptionLength = 500;
 	private List<String> redirects;
+	private IdentifierMatcher redirectMatcher;
+	private IdentifierMatcher disambiguationMatcher;
+	private Set<String> disambiguationTemplates;
 
 	private MediaWikiParser parser;
 	private Locale locale;
+	private ExtractionProfile profile = ExtractionProfile.SPOTLIGHT;
 
 	public ArticleParser(String lang) {
+		this(lang, ExtractionProfile.SPOTLIGHT);
+	}
+
+	/**
+	 * @param lang
+	 *            - the language of the articles
+	 * @param profile
+	 *            - the fields of the articles to extract
+	 */
+	public ArticleParser(String lang, ExtractionProfile profile) {
 		this.lang = lang;
+		this.profile = profile;
 		parser = parserFactory.getParser(lang);
-		locale = new Locale(lang);
-		redirects = locale.getRedirects(lang);
+		locale = LocaleRegistry.getLocale(lang);
+		setIdentifiers();
 
 	}
 
 	public ArticleParser() {
 		parser = parserFactory.getParser(lang);
-		locale = new Locale(lang);
-		redirects = locale.getRedirects(lang);
+		locale = LocaleRegistry.getLocale(lang);
+		setIdentifiers();
+
+	}
+
+	/**
+	 * @return the fields of the articles extracted by the parser
+	 */
+	public ExtractionProfile getProfile() {
+		return profile;
+	}
 
+	private void setIdentifiers() {
+		redirects = locale.getSharedRedirects(lang);
+		redirectMatcher = locale.getRedirectMatcher(lang);
+		disambiguationMatcher = locale.getDisambiguationMatcher(lang);
+		disambiguationTemplates = locale.getDisambiguationTemplates(lang);
 	}
 
 	public void parse(Article article, String mediawiki) {
-		ParsedPage page = parser.parse(mediawiki);
+		if (parseRedirect(article, mediawiki))
+			return;
+		parsePage(article, mediawiki);
+	}
+
+	/**
+	 * Parses the page with the MediaWiki parser, also if it is a redirect.
+	 */
+	void parsePage(Article article, String mediawiki) {
+		ArticleHandler handler = new ArticleHandler(profile);
+		ParsedPage page = null;
+		boolean parsed;
+		if (profile.hasStructure() || !(parser instanceof WikitextParser)) {
+			// the tree of the page is reported as the parser would report it
+			page = parser.parse(mediawiki);
+			parsed = page != null;
+			if (parsed)
+				report(page, handler);
+		} else {
+			// the other profiles need only the paragraphs, the lists and the
+			// languages, collected without building the tree of the page
+			parsed = ((WikitextParser) parser).parse(mediawiki, handler);
+		}
 		setRedirect(article, mediawiki);
 
-		parse(article, page);
-		setDisambiguation(article);
+		parse(article, parsed ? handler : null, page);
+		setDisambiguation(article, parser.getLastTemplate());
 
         //Ignoring Articles with No text
         //Example  - https://nl.wikipedia.org/wiki/MediaWiki:Signupend
@@ -97,23 +161,110 @@ public class ArticleParser {
             article.setType(Type.UNKNOWN);
 	}
 
-	private void parse(Article article, ParsedPage page) {
+	/**
+	 * Redirects are about half of the pages of a dump, and most of them are a
+	 * single line. If the page is a {@link #SIMPLE_REDIRECT} the article is
+	 * produced directly from the text, without running the MediaWiki parser,
+	 * and it is the same article the parser would produce (without lists,
+	 * sections and tables, that are only serialized by the
+	 * {@link ExtractionProfile#FULL} profile, that always runs the parser).
+	 * 
+	 * @return true if the page was a simple redirect, and the article is
+	 *         complete
+	 */
+	boolean parseRedirect(Article article, String mediawiki) {
+		if (profile.hasStructure())
+			return false;
+		if (mediawiki == null || mediawiki.isEmpty() || mediawiki.charAt(0) != '#'
+				|| !redirectMatcher.startsWith(mediawiki))
+			return false;
+		if (!SIMPLE_REDIRECT.matcher(mediawiki).matches())
+			return false;
+		setRedirect(article, mediawiki);
+		article.setLang(lang);
+		setWikiTitle(article);
+		article.setParagraphs(new ArrayList<String>(0));
+		if (profile.hasParagraphs()) {
+			article.setParagraphsLink(new ArrayList<ParagraphLink>(0));
+			article.setWikiText("");
+		}
+		if (profile.hasLinks())
+			article.setLinks(new ArrayList<Link>(0));
+		if (profile.hasLanguages() && article.isLang(Language.EN))
+			article.setEnWikiTitle("");
+		setIsList(article);
+		setDisambiguation(article, getLastTemplate(mediawiki));
+		return true;
+	}
+
+	/**
+	 * Sets the type and the redirect of the article looking only at the text
+	 * of the page, without running the MediaWiki parser: redirects are found
+	 * by their identifier at the beginning of the text, disambiguations by
+	 * the title or by the last template of the text. No paragraphs and links
+	 * are extracted, and pages with a blank text are of type
+	 * {@link Type#UNKNOWN}, as empty articles are for the parser.
+	 * 
+	 * @param article
+	 *            - the article, with the title and the type of its namespace
+	 * @param mediawiki
+	 *            - the text of the page
+	 */
+	public void parseMetadata(Article article, String mediawiki) {
+		if (mediawiki == null)
+			mediawiki = "";
 		article.setLang(lang);
 		setWikiTitle(article);
-		if (page == null) {
+		setRedirect(article, mediawiki);
+		setIsList(article);
+		setDisambiguation(article, getLastTemplate(mediawiki));
+		if (article.getType() == Type.ARTICLE && mediawiki.trim().isEmpty())
+			article.setType(Type.UNKNOWN);
+	}
+
+	/**
+	 * @return the content of the last template in a page without nested
+	 *         templates, as the MediaWiki parser would report it
+	 */
+	private static String getLastTemplate(String mediawiki) {
+		int open = mediawiki.lastIndexOf("{{");
+		if (open < 0)
+			return null;
+		int close = mediawiki.indexOf("}}", open);
+		if (close < 0)
+			return null;
+		return mediawiki.substring(open + 2, close);
+	}
+
+	/**
+	 * @param handler
+	 *            - the handler the page was parsed with, null if there was
+	 *            nothing to parse
+	 * @param page
+	 *            - the parsed page, only with the {@link ExtractionProfile#FULL}
+	 *            profile
+	 */
+	private void parse(Article article, ArticleHandler handler, ParsedPage page) {
+		article.setLang(lang);
+		setWikiTitle(article);
+		if (handler == null) {
 			logger.warn("page is null for article {}", article.getTitle());
 		} else {
-			setParagraphs(article, page);
-			setTemplates(article, page);
+			handler.setParagraphs(article);
 			
 			//Commenting the logic as links are computed in setParagraphs method
 			//setLinks(article, page);
-			setCategories(article, page);
-			setHighlights(article, page);
-			setSections(article, page);
-			setTables(article, page);
-			setEnWikiTitle(article, page);
-			setLists(article, page);
+			if (profile.hasStructure()) {
+				setTemplates(article, page);
+				setCategories(article, page);
+				setHighlights(article, page);
+				setSections(article, page);
+				setTables(article, page);
+			}
+			if (profile.hasLanguages())
+				handler.setEnWikiTitle(article);
+			// the lists are always needed to find the redirects
+			handler.setLists(article);
 		}
 		setRedirect(article);
 		//Commenting here and moving into above parse method
@@ -162,10 +313,8 @@ public class ArticleParser {
 	 * @param article
 	 */
 	private void setIsList(Article article) {
-		for (String list : locale.getListIdentifiers()) {
-			if (StringUtils.startsWithIgnoreCase(article.getTitle(), list)) {
-				article.setType(Type.LIST);
-			}
+		if (locale.getListMatcher().startsWith(article.getTitle())) {
+			article.setType(Type.LIST);
 		}
 
 	}
@@ -183,18 +332,16 @@ public class ArticleParser {
 			// checking only first item in first list
 			String line = lists.get(0).get(0);
 
-			for (String redirect : redirects) {
-				if (StringUtils.startsWithIgnoreCase(line, redirect)) {
-					int pos = line.indexOf(' ');
-					if (pos < 0)
-						return;
-					String red = line.substring(pos).trim();
-					red = Article.getTitleInWikistyle(red);
-					article.setRedirect(red);
-					article.setType(Type.REDIRECT);
+			if (redirectMatcher.startsWith(line)) {
+				int pos = line.indexOf(' ');
+				if (pos < 0)
 					return;
+				String red = line.substring(pos).trim();
+				red = Article.getTitleInWikistyle(red);
+				article.setRedirect(red);
+				article.setType(Type.REDIRECT);
+				return;
 
-				}
 			}
 		}
 	}
@@ -222,11 +369,13 @@ public class ArticleParser {
 	 * @param page
 	 */
 	private void setRedirect(Article article, String mediawiki) {
-		for (String redirect : redirects)
-			if (StringUtils.startsWithIgnoreCase(mediawiki, redirect)) {
+		// the identifiers the text starts with, in a single pass
+		boolean[] prefixes = redirectMatcher.getPrefixes(mediawiki);
+		for (int i = 0; i < redirects.size(); i++)
+			if (prefixes != null && prefixes[i]) {
 				int start = mediawiki.indexOf("[[") + 2;
 				int end = mediawiki.indexOf("]]");
-				if (start < 0 || end < 0) {
+				if (start < 2 || end < start) {
 					logger.warn("cannot find the redirect {}\n mediawiki: {}",
 							article.getTitle(), mediawiki);
 					continue;
@@ -301,29 +450,6 @@ public class ArticleParser {
 
 	}
 
-	protected void setEnWikiTitle(Article article, ParsedPage page) {
-		if (article.isLang(Language.EN)) {
-			article.setEnWikiTitle("");
-			return;
-		}
-		try {
-			if (page.getLanguages() == null) {
-				article.setEnWikiTitle("");
-				return;
-			}
-		} catch (NullPointerException e) {
-			// FIXME title is always null!
-			logger.warn("no languages for page {} ", article.getTitle());
-			return;
-		}
-		for (de.tudarmstadt.ukp.wikipedia.parser.Link l : page.getLanguages())
-			if (l.getText().startsWith("en:")) {
-				article.setEnWikiTitle(l.getTarget().substring(3));
-				break;
-			}
-
-	}
-
 	/**
 	 * @param page
 	 */
@@ -378,7 +504,7 @@ public class ArticleParser {
 				templates.add(new Template(t.getName(), templateParameters));
 			}
 		}
-		//article.setTemplates(templates);
+		article.setTemplates(templates);
 
 	}
 
@@ -401,7 +527,7 @@ public class ArticleParser {
 				continue;
 			}
 		}
-		//article.addTemplatesSchema(schema);
+		article.addTemplatesSchema(schema);
 
 	}
 
@@ -412,7 +538,7 @@ public class ArticleParser {
 
 			categories.add(new Link(c.getTarget(), c.getText(), c.getPos().getStart(), c.getPos().getEnd()));
 		}
-		//article.setCategories(categories);
+		article.setCategories(categories);
 
 	}
 
@@ -428,103 +554,53 @@ public class ArticleParser {
 			}
 
 		}
-		//article.setHighlights(highlights);
+		article.setHighlights(highlights);
 
 	}
 
-	private void setParagraphs(Article article, ParsedPage page) {
-		List<String> paragraphs = new ArrayList<String>(page.nrOfParagraphs());
-		List<ParagraphLink> paraLinks 
-					= new ArrayList<ParagraphLink>();
-		StringBuilder wikiText = new StringBuilder();
-		//ArticleSummarizer articleSummarizer = new ArticleSummarizer();
-		List<Link> iLinks = new ArrayList<Link>();
-		int i=0;
-		String prevPara = null;
-		int paraLength = 0;
+	/**
+	 * Reports to the handler the paragraphs, the lists and the languages of a
+	 * page parsed in a tree, as the parser reports them while it parses the
+	 * page.
+	 */
+	private static void report(ParsedPage page, WikitextHandler handler) {
 		for (Paragraph p : page.getParagraphs()) {
-			String text = p.getText();
-			ParagraphLink paragraphLink = new ParagraphLink();
-			List<Link> links = new ArrayList<Link>();
-			text = text.replace("\n", " ");
-			//wikiText.append(articleSummarizer.cleanWikiText(text));
-			wikiText.append(text.toString() + " ");
-			
-			//Logic to Add the Paragraphs and Links associated with it in a JSON Element.
-			if (!text.isEmpty()){
-				paragraphs.add(text);
-				for(de.tudarmstadt.ukp.wikipedia.parser.Link t: p.getLinks()){
-					if (t.getType() == de.tudarmstadt.ukp.wikipedia.parser.Link.type.INTERNAL){
-						if (t.getPos().getStart() != t.getPos().getEnd()){
-							
-							links.add(new Link(t.getTarget(), t.getText(), t.getPos().getStart(), t.getPos().getEnd()));
-							
-							if (i==0)
-								iLinks.add(new Link(t.getTarget(), t.getText(), t.getPos().getStart(), t.getPos().getEnd()));
-							else
-								iLinks.add(new Link(t.getTarget(), t.getText(), (t.getPos().getStart() + paraLength), (t.getPos().getEnd() + paraLength)));
-						}
-					}
-				}
-				paragraphLink.setParaText(text);
-				paragraphLink.setLinks(links);
-				paraLinks.add(paragraphLink);
-				i++;
-				prevPara = text.toString();
-				paraLength += prevPara.length() + 1;
-			}
-			else
-				paraLength +=1;
+			handler.onParagraph(p.getText());
+			for (de.tudarmstadt.ukp.wikipedia.parser.Link t : p.getLinks())
+				if (t.getType() == de.tudarmstadt.ukp.wikipedia.parser.Link.type.INTERNAL)
+					handler.onInternalLink(t.getTarget(), t.getText(), t
+							.getPos().getStart(), t.getPos().getEnd());
 		}
-		article.setParagraphs(paragraphs);
-		article.setParagraphsLink(paraLinks);
-		article.setWikiText(wikiText.toString());
-		article.setLinks(iLinks);
-	}
-
-	private void setLists(Article article, ParsedPage page) {
-		List<List<String>> lists = new LinkedList<List<String>>();
 		for (DefinitionList dl : page.getDefinitionLists()) {
 			List<String> l = new ArrayList<String>();
-			for (ContentElement c : dl.getDefinitions()) {
+			for (ContentElement c : dl.getDefinitions())
 				l.add(c.getText());
-			}
-			lists.add(l);
+			ContentElement term = dl.getDefinedTerm();
+			handler.onDefinitionList(term == null ? null : term.getText(), l);
 		}
 		for (NestedListContainer dl : page.getNestedLists()) {
 			List<String> l = new ArrayList<String>();
 			for (NestedList nl : dl.getNestedLists())
 				l.add(nl.getText());
-			lists.add(l);
+			handler.onNestedList(l);
+		}
+		if (page.getLanguagesElement() != null) {
+			// the links of the element are from the last one
+			List<de.tudarmstadt.ukp.wikipedia.parser.Link> languages = page
+					.getLanguages();
+			for (int i = languages.size() - 1; i >= 0; i--)
+				handler.onLanguageLink(languages.get(i).getTarget(),
+						languages.get(i).getText());
 		}
-		article.setLists(lists);
-
 	}
 
-	private void setDisambiguation(Article a) {
+	private void setDisambiguation(Article a, String lastTemplate) {
 		
 		//Modified the disambugation logic to fetch from the Disamb Map
-		for (String disambiguation : locale.getDisambigutionIdentifiers(lang)) {
-			if (StringUtils.containsIgnoreCase(a.getTitle(), disambiguation)) {
-				a.setType(Type.DISAMBIGUATION);
-				return;
-			}
-			
-			if (parser.getLastTemplate() !=null){
-				if (parser.getLastTemplate().equals(disambiguation)){
-					a.setType(Type.DISAMBIGUATION);
-					return;
-				}
-					
-			}
-			/*for (Template t : a.getTemplates()) {
-				if (StringUtils.equalsIgnoreCase(t.getName(), disambiguation)) {
-					a.setType(Type.DISAMBIGUATION);
-					return;
-
-				}
-			}*/
-
+		if (disambiguationMatcher.isContainedIn(a.getTitle())
+				|| (lastTemplate != null && disambiguationTemplates
+						.contains(lastTemplate))) {
+			a.setType(Type.DISAMBIGUATION);
 		}
 	}
 
@@ -0,0 +1,73 @@
+/**
+ *  Copyright 2013 Diego Ceccarelli
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package it.cnr.isti.hpc.wikipedia.parser;
+
+import it.cnr.isti.hpc.wikipedia.article.ExtractionProfile;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An {@link ArticleParser} (and its MediaWikiParser) keeps the state of the
+ * page it is parsing, so it can not be shared among threads. The pool gives to
+ * each thread its own parser for a language, created the first time the thread
+ * asks for it and then reused, so concurrent callers never share a parser and
+ * never need to lock it.
+ */
+public class ArticleParserPool {
+
+	private static final ConcurrentMap<String, ThreadLocal<ArticleParser>> parsers = new ConcurrentHashMap<String, ThreadLocal<ArticleParser>>();
+
+	private ArticleParserPool() {
+	}
+
+	/**
+	 * @param lang
+	 *            - the language of the articles
+	 * @return the parser of the current thread for the given language
+	 */
+	public static ArticleParser getParser(String lang) {
+		return getParser(lang, ExtractionProfile.SPOTLIGHT);
+	}
+
+	/**
+	 * @param lang
+	 *            - the language of the articles
+	 * @param profile
+	 *            - the fields of the articles to extract
+	 * @return the parser of the current thread for the given language and
+	 *         profile
+	 */
+	public static ArticleParser getParser(final String lang,
+			final ExtractionProfile profile) {
+		String key = lang + ':' + profile.getName();
+		ThreadLocal<ArticleParser> parser = parsers.get(key);
+		if (parser == null) {
+			parser = new ThreadLocal<ArticleParser>() {
+				@Override
+				protected ArticleParser initialValue() {
+					return new ArticleParser(lang, profile);
+				}
+			};
+			ThreadLocal<ArticleParser> previous = parsers.putIfAbsent(key,
+					parser);
+			if (previous != null)
+				parser = previous;
+		}
+		return parser.get();
+	}
+
+}
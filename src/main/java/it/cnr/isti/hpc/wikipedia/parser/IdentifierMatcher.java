@@ -0,0 +1,222 @@
+/**
+ *  Copyright 2013 Diego Ceccarelli
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package it.cnr.isti.hpc.wikipedia.parser;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Matches a text against a set of identifiers (e.g., the disambiguation
+ * templates of a language) ignoring the case, in a single pass over the text
+ * whatever the number of identifiers. The identifiers are compiled in an
+ * Aho-Corasick automaton on their case-folded characters, two characters are
+ * equal ignoring the case under the same rules of
+ * {@link String#regionMatches(boolean, int, String, int, int)} (used by
+ * <tt>StringUtils.startsWithIgnoreCase</tt> and
+ * <tt>StringUtils.containsIgnoreCase</tt>).
+ */
+public class IdentifierMatcher {
+
+	private static final int ROOT = 0;
+	private static final int NONE = -1;
+
+	private final int size;
+
+	/** sorted labels of the edges leaving each state **/
+	private char[][] labels;
+	/** the state reached following each edge **/
+	private int[][] targets;
+	/** the state reached on a mismatch **/
+	private int[] failure;
+	/** the identifiers ending in the state **/
+	private int[][] identifiers;
+	/** true if the state, or a state on its failure chain, ends an identifier **/
+	private boolean[] output;
+	private int states = 0;
+
+	/**
+	 * @param ids
+	 *            - the identifiers, in order
+	 */
+	public IdentifierMatcher(List<String> ids) {
+		size = ids.size();
+		int capacity = 1;
+		for (String id : ids)
+			capacity += id.length();
+		labels = new char[capacity][];
+		targets = new int[capacity][];
+		failure = new int[capacity];
+		identifiers = new int[capacity][];
+		output = new boolean[capacity];
+		newState();
+		for (int i = 0; i < size; i++) {
+			int state = ROOT;
+			String id = ids.get(i);
+			for (int j = 0; j < id.length(); j++) {
+				char c = fold(id.charAt(j));
+				int next = next(state, c);
+				if (next == NONE) {
+					next = newState();
+					addEdge(state, c, next);
+				}
+				state = next;
+			}
+			// identifiers equal ignoring the case end in the same state
+			int[] ending = Arrays.copyOf(identifiers[state],
+					identifiers[state].length + 1);
+			ending[ending.length - 1] = i;
+			identifiers[state] = ending;
+			output[state] = true;
+		}
+		buildFailures();
+	}
+
+	private static char fold(char c) {
+		if (c < 0x80)
+			return (c >= 'A' && c <= 'Z') ? (char) (c + ('a' - 'A')) : c;
+		return Character.toLowerCase(Character.toUpperCase(c));
+	}
+
+	private int newState() {
+		labels[states] = new char[0];
+		targets[states] = new int[0];
+		identifiers[states] = new int[0];
+		return states++;
+	}
+
+	private void addEdge(int state, char c, int target) {
+		char[] l = labels[state];
+		int pos = -Arrays.binarySearch(l, c) - 1;
+		char[] nl = new char[l.length + 1];
+		int[] nt = new int[l.length + 1];
+		System.arraycopy(l, 0, nl, 0, pos);
+		System.arraycopy(targets[state], 0, nt, 0, pos);
+		nl[pos] = c;
+		nt[pos] = target;
+		System.arraycopy(l, pos, nl, pos + 1, l.length - pos);
+		System.arraycopy(targets[state], pos, nt, pos + 1, l.length - pos);
+		labels[state] = nl;
+		targets[state] = nt;
+	}
+
+	private int next(int state, char c) {
+		char[] l = labels[state];
+		if (l.length <= 8) {
+			for (int i = 0; i < l.length; i++)
+				if (l[i] == c)
+					return targets[state][i];
+			return NONE;
+		}
+		int pos = Arrays.binarySearch(l, c);
+		return (pos < 0) ? NONE : targets[state][pos];
+	}
+
+	private void buildFailures() {
+		Deque<Integer> queue = new ArrayDeque<Integer>();
+		for (int child : targets[ROOT]) {
+			failure[child] = ROOT;
+			queue.add(child);
+		}
+		while (!queue.isEmpty()) {
+			int state = queue.poll();
+			for (int i = 0; i < labels[state].length; i++) {
+				char c = labels[state][i];
+				int child = targets[state][i];
+				int f = failure[state];
+				while (f != ROOT && next(f, c) == NONE)
+					f = failure[f];
+				int n = next(f, c);
+				failure[child] = (n == NONE) ? ROOT : n;
+				output[child] |= output[failure[child]];
+				queue.add(child);
+			}
+		}
+	}
+
+	/**
+	 * @return the number of identifiers
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return true if the text starts with one of the identifiers (false if
+	 *         the text is null)
+	 */
+	public boolean startsWith(CharSequence text) {
+		if (text == null)
+			return false;
+		int state = ROOT;
+		for (int i = 0;; i++) {
+			if (identifiers[state].length > 0)
+				return true;
+			if (i == text.length())
+				return false;
+			state = next(state, fold(text.charAt(i)));
+			if (state == NONE)
+				return false;
+		}
+	}
+
+	/**
+	 * @return for each identifier (in the order given to the matcher) true if
+	 *         the text starts with it, null if the text does not start with
+	 *         any identifier (or it is null)
+	 */
+	public boolean[] getPrefixes(CharSequence text) {
+		if (text == null)
+			return null;
+		boolean[] prefixes = null;
+		int state = ROOT;
+		for (int i = 0;; i++) {
+			for (int id : identifiers[state]) {
+				if (prefixes == null)
+					prefixes = new boolean[size];
+				prefixes[id] = true;
+			}
+			if (i == text.length())
+				return prefixes;
+			state = next(state, fold(text.charAt(i)));
+			if (state == NONE)
+				return prefixes;
+		}
+	}
+
+	/**
+	 * @return true if the text contains one of the identifiers (false if the
+	 *         text is null)
+	 */
+	public boolean isContainedIn(CharSequence text) {
+		if (text == null)
+			return false;
+		int state = ROOT;
+		if (output[state])
+			return true;
+		for (int i = 0; i < text.length(); i++) {
+			char c = fold(text.charAt(i));
+			int n;
+			while ((n = next(state, c)) == NONE && state != ROOT)
+				state = failure[state];
+			state = (n == NONE) ? ROOT : n;
+			if (output[state])
+				return true;
+		}
+		return false;
+	}
+}
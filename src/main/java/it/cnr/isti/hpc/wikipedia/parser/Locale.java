@@ -20,17 +20,20 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Scanner;
+import java.util.Set;
 import java.util.regex.Pattern;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Models the locale for a language. 
+ * Models the locale for a language. A locale is immutable, and the locale of
+ * each language is shared by all the parsers (see {@link LocaleRegistry}).
  * 
  * @author Diego Ceccarelli <diego.ceccarelli@isti.cnr.it>
  * 
@@ -38,15 +41,71 @@ import org.slf4j.LoggerFactory;
  */
 public class Locale {
 
-	private Properties properties;
-
 	private static final Logger logger = LoggerFactory.getLogger(Locale.class);
 	private static final String SEPARATOR = ",";
-	private static Map<String, String> redirectsMap = new HashMap<String, String>();
-	private static Map<String, String> disambigMap = new HashMap<String, String>();
 
+	private final List<String> categoryIdentifiers;
+	private final List<String> imageIdentifiers;
+	private final List<String> listIdentifiers;
+	private final List<String> redirectIdentifiers;
+	private final IdentifierMatcher listMatcher;
+
+	/**
+	 * The redirect and disambiguation identifiers of all the languages, and
+	 * their matchers, built the first time they are used.
+	 */
+	private static class Identifiers {
+		static final Map<String, String> REDIRECT_SETTINGS = Collections
+				.unmodifiableMap(redirectSettings());
+		static final Map<String, String> DISAMBIGUATION_SETTINGS = Collections
+				.unmodifiableMap(disambiguationSettings());
+		static final Map<String, List<String>> REDIRECTS = split(REDIRECT_SETTINGS);
+		static final Map<String, List<String>> DISAMBIGUATIONS = split(DISAMBIGUATION_SETTINGS);
+		static final Map<String, IdentifierMatcher> REDIRECT_MATCHERS = compile(REDIRECTS);
+		static final Map<String, IdentifierMatcher> DISAMBIGUATION_MATCHERS = compile(DISAMBIGUATIONS);
+		static final Map<String, Set<String>> DISAMBIGUATION_SETS = toSets(DISAMBIGUATIONS);
+
+		private static Map<String, List<String>> split(Map<String, String> m) {
+			Map<String, List<String>> identifiers = new HashMap<String, List<String>>(
+					m.size() * 2);
+			for (Map.Entry<String, String> e : m.entrySet()) {
+				identifiers.put(e.getKey(), Collections.unmodifiableList(Arrays
+						.asList(e.getValue().split("\\|"))));
+			}
+			return Collections.unmodifiableMap(identifiers);
+		}
+
+		private static Map<String, IdentifierMatcher> compile(
+				Map<String, List<String>> identifiers) {
+			Map<String, IdentifierMatcher> matchers = new HashMap<String, IdentifierMatcher>(
+					identifiers.size() * 2);
+			for (Map.Entry<String, List<String>> e : identifiers.entrySet()) {
+				matchers.put(e.getKey(), new IdentifierMatcher(e.getValue()));
+			}
+			return Collections.unmodifiableMap(matchers);
+		}
+
+		private static Map<String, Set<String>> toSets(
+				Map<String, List<String>> identifiers) {
+			Map<String, Set<String>> sets = new HashMap<String, Set<String>>(
+					identifiers.size() * 2);
+			for (Map.Entry<String, List<String>> e : identifiers.entrySet()) {
+				sets.put(e.getKey(), Collections
+						.unmodifiableSet(new HashSet<String>(e.getValue())));
+			}
+			return Collections.unmodifiableMap(sets);
+		}
+	}
+
+	/**
+	 * Loads the locale of a language, use {@link LocaleRegistry#getLocale(String)}
+	 * to get the shared one.
+	 * 
+	 * @param lang
+	 *            - the language
+	 */
 	public Locale(String lang) {
-		properties = new Properties();
+		Properties properties = new Properties();
 		
 		try {
 			properties.load(Locale.class.getResourceAsStream("/lang/locale-"
@@ -55,11 +114,34 @@ public class Locale {
 			logger.info("Missing Config file. Instead reading from locally");
 		}
 
-		redirectsMap = insertRedirectSettings();
-		disambigMap = insertDisambiguation();
+		categoryIdentifiers = getValues(properties, "category");
+		imageIdentifiers = getValues(properties, "image");
+		listIdentifiers = getValues(properties, "list");
+		redirectIdentifiers = getValues(properties, "redirect");
+		listMatcher = new IdentifierMatcher(listIdentifiers);
 	}
 	
-	public Map<String, String> insertRedirectSettings(){
+	/**
+	 * Returns the redirect identifiers of all the languages, separated by
+	 * <tt>|</tt>.
+	 * 
+	 * @return a copy of the identifiers shared by the locales
+	 */
+	public Map<String, String> insertRedirectSettings() {
+		return new HashMap<String, String>(Identifiers.REDIRECT_SETTINGS);
+	}
+
+	/**
+	 * Returns the disambiguation templates of all the languages, separated by
+	 * <tt>|</tt>.
+	 * 
+	 * @return a copy of the templates shared by the locales
+	 */
+	public Map<String, String> insertDisambiguation() {
+		return new HashMap<String, String>(Identifiers.DISAMBIGUATION_SETTINGS);
+	}
+
+	private static Map<String, String> redirectSettings(){
 		
 		Map<String, String> m = new HashMap<String, String>();
 		
@@ -215,7 +297,7 @@ public class Locale {
 		
 	}
 	
-	public Map<String, String> insertDisambiguation(){
+	private static Map<String, String> disambiguationSettings(){
 		
 		Map<String, String> m = new HashMap<String, String>();
 		
@@ -432,7 +514,7 @@ public class Locale {
 		return m;
 		
 	}
-	private List<String> getValues(String key) {
+	private static List<String> getValues(Properties properties, String key) {
 
 		String val = properties.getProperty(key);
 		if (val == null){
@@ -450,7 +532,7 @@ public class Locale {
 			}
 			scanner.close();
 		}
-		return values;
+		return Collections.unmodifiableList(values);
 
 	}
 	
@@ -461,37 +543,79 @@ public class Locale {
 	
 	*/
 	public List<String> getCategoryIdentifiers() {
-		return getValues("category");
+		return new ArrayList<String>(categoryIdentifiers);
 	}
 
 	public List<String> getImageIdentifiers() {
-		return getValues("image");
+		return new ArrayList<String>(imageIdentifiers);
 	}
 
 	public List<String> getListIdentifiers() {
-		return getValues("list");
+		return new ArrayList<String>(listIdentifiers);
 	}
 
 	public List<String> getRedirectIdentifiers() {
-		return getValues("redirect");
+		return new ArrayList<String>(redirectIdentifiers);
+	}
+
+	/**
+	 * @return the matcher of the list identifiers (case insensitive)
+	 */
+	public IdentifierMatcher getListMatcher() {
+		return listMatcher;
 	}
 	
 	//Logic for Language specific redirects. Instead of fetching from the property files
 	public List<String> getRedirects(String lang){
-		String [] redirects = ((String) redirectsMap.get(lang)).split("\\|");
-		List <String> list = new ArrayList<String>();
-		for (int i=0; i < redirects.length; i++)
-			list.add(redirects[i]);
-		return list;
-			
+		return new ArrayList<String>(getSharedRedirects(lang));
 	}
 	
 	public List<String> getDisambigutionIdentifiers(String lang){
-		String [] disambig = ((String) disambigMap.get(lang)).split("\\|");
-		List <String> list = new ArrayList<String>();
-		for (int i=0; i < disambig.length; i++)
-			list.add(disambig[i]);
-		return list;
+		return new ArrayList<String>(getIdentifiers(
+				Identifiers.DISAMBIGUATIONS, "disambiguation", lang));
+	}
+
+	/**
+	 * @return the redirect identifiers of the language, shared by all the
+	 *         locales and unmodifiable
+	 */
+	List<String> getSharedRedirects(String lang) {
+		return getIdentifiers(Identifiers.REDIRECTS, "redirect", lang);
+	}
+
+	/**
+	 * @return the matcher of the redirect identifiers of the language (case
+	 *         insensitive), in the order of {@link #getRedirects(String)}
+	 */
+	public IdentifierMatcher getRedirectMatcher(String lang) {
+		return getIdentifiers(Identifiers.REDIRECT_MATCHERS, "redirect", lang);
+	}
+
+	/**
+	 * @return the matcher of the disambiguation identifiers of the language
+	 *         (case insensitive)
+	 */
+	public IdentifierMatcher getDisambiguationMatcher(String lang) {
+		return getIdentifiers(Identifiers.DISAMBIGUATION_MATCHERS,
+				"disambiguation", lang);
+	}
+
+	/**
+	 * @return the disambiguation identifiers of the language, to look up a
+	 *         template (case sensitive)
+	 */
+	public Set<String> getDisambiguationTemplates(String lang) {
+		return getIdentifiers(Identifiers.DISAMBIGUATION_SETS,
+				"disambiguation", lang);
+	}
+
+	private static <T> T getIdentifiers(Map<String, T> identifiers,
+			String type, String lang) {
+		T values = identifiers.get(lang);
+		if (values == null)
+			throw new IllegalArgumentException("no " + type
+					+ " identifiers for language " + lang);
+		return values;
 	}
 
 }
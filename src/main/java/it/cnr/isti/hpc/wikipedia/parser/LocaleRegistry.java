@@ -0,0 +1,49 @@
+/**
+ *  Copyright 2013 Diego Ceccarelli
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package it.cnr.isti.hpc.wikipedia.parser;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The {@link Locale} of each language, loaded the first time it is requested
+ * and then shared by all the threads (a locale is immutable). Creating a
+ * parser for a language does not reload its locale.
+ */
+public class LocaleRegistry {
+
+	private static final ConcurrentMap<String, Locale> locales = new ConcurrentHashMap<String, Locale>();
+
+	private LocaleRegistry() {
+	}
+
+	/**
+	 * @param lang
+	 *            - the language
+	 * @return the shared locale of the language
+	 */
+	public static Locale getLocale(String lang) {
+		Locale locale = locales.get(lang);
+		if (locale == null) {
+			locale = new Locale(lang);
+			Locale previous = locales.putIfAbsent(lang, locale);
+			if (previous != null)
+				locale = previous;
+		}
+		return locale;
+	}
+
+}
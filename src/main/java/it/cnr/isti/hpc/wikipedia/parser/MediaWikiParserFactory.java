@@ -34,7 +34,7 @@ public class MediaWikiParserFactory {
 			.getLogger(MediaWikiParserFactory.class);
 
 	public MediaWikiParser getParser(String lang) {
-		Locale locale = new Locale(lang);
+		Locale locale = LocaleRegistry.getLocale(lang);
 		LocalizedMediaWikiParserFactory parserFactory = new LocalizedMediaWikiParserFactory(locale);
 		return parserFactory.createParser();
 	}
@@ -0,0 +1,167 @@
+/**
+ *  Copyright 2011 Diego Ceccarelli
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package it.cnr.isti.hpc.wikipedia.reader;
+
+import info.bliki.wiki.dump.IArticleFilter;
+import info.bliki.wiki.dump.Siteinfo;
+import info.bliki.wiki.dump.WikiArticle;
+import it.cnr.isti.hpc.wikipedia.article.Article;
+import it.cnr.isti.hpc.wikipedia.article.ExtractionProfile;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.dbpedia.spotlight.parser.MappedDumpReader;
+import org.dbpedia.spotlight.parser.MappedInputStream;
+import org.dbpedia.spotlight.parser.PageOffsetIndex;
+import org.dbpedia.spotlight.parser.WikiXMLScanner;
+import org.xml.sax.SAXException;
+
+/**
+ * Extracts and parses single articles of a dump, seeking directly to the
+ * pages using a {@link PageOffsetIndex}. The dump can be an uncompressed xml
+ * dump, with the index written during its conversion (see
+ * {@link WikipediaArticleReader#setPageIndex(File)}), or a multistream dump
+ * with its index: only the bzip2 streams containing the pages are
+ * decompressed.
+ */
+public class ArticleExtractor {
+
+	private final File dump;
+	private final PageOffsetIndex index;
+	private final String lang;
+	private final boolean multistream;
+	private final Siteinfo siteinfo;
+	private ExtractionProfile profile = ExtractionProfile.SPOTLIGHT;
+
+	/**
+	 * @param dump
+	 *            - the uncompressed xml dump, or the multistream dump
+	 *            (<tt>.bz2</tt>)
+	 * @param index
+	 *            - the index of the offsets of the pages
+	 * @param lang
+	 *            - the language of the dump
+	 */
+	public ArticleExtractor(File dump, File index, String lang)
+			throws IOException {
+		this.dump = dump;
+		this.index = new PageOffsetIndex(index);
+		this.lang = lang;
+		multistream = dump.getName().endsWith(".bz2");
+		if (multistream) {
+			// the first stream contains only the header
+			siteinfo = WikiXMLScanner.readSiteinfo(new BZip2CompressorInputStream(
+					new BufferedInputStream(new FileInputStream(dump))));
+		} else if (dump.getName().endsWith(".xml")) {
+			siteinfo = new MappedDumpReader(dump, 1).getSiteinfo();
+		} else {
+			throw new IllegalArgumentException(
+					"pages can be extracted only from uncompressed or multistream dumps");
+		}
+	}
+
+	/**
+	 * @param profile
+	 *            - the fields of the articles to extract (default
+	 *            {@link ExtractionProfile#SPOTLIGHT})
+	 */
+	public void setProfile(ExtractionProfile profile) {
+		this.profile = profile;
+	}
+
+	public Article getArticleById(String id) throws IOException, SAXException {
+		return first(getArticles(Collections.singleton(id),
+				Collections.<String> emptySet()));
+	}
+
+	public Article getArticleByTitle(String title) throws IOException,
+			SAXException {
+		return first(getArticles(Collections.<String> emptySet(),
+				Collections.singleton(title)));
+	}
+
+	private static Article first(List<Article> articles) {
+		return articles.isEmpty() ? null : articles.get(0);
+	}
+
+	/**
+	 * @param ids
+	 *            - the ids of the pages
+	 * @param titles
+	 *            - the titles of the pages
+	 * @return the parsed articles found, in the order of the dump
+	 */
+	public List<Article> getArticles(Collection<String> ids,
+			Collection<String> titles) throws IOException, SAXException {
+		// pages in the same stream are read together
+		Map<Long, Set<String>> pages = new LinkedHashMap<Long, Set<String>>();
+		for (PageOffsetIndex.Entry e : index.lookup(ids, titles)) {
+			Set<String> inStream = pages.get(e.getOffset());
+			if (inStream == null) {
+				inStream = new HashSet<String>();
+				pages.put(e.getOffset(), inStream);
+			}
+			inStream.add(e.getId());
+		}
+		List<Article> articles = new ArrayList<Article>();
+		for (Map.Entry<Long, Set<String>> e : pages.entrySet()) {
+			articles.addAll(extract(e.getKey(), e.getValue()));
+		}
+		return articles;
+	}
+
+	private List<Article> extract(long offset, final Set<String> ids)
+			throws IOException, SAXException {
+		final List<Article> articles = new ArrayList<Article>();
+		IArticleFilter collector = new IArticleFilter() {
+			public void process(WikiArticle page, Siteinfo si) {
+				if (ids.contains(page.getId()))
+					articles.add(WikipediaArticleReader.parseArticle(page,
+							lang, profile));
+			}
+		};
+		WikiXMLScanner scanner;
+		if (multistream) {
+			FileInputStream fis = new FileInputStream(dump);
+			fis.getChannel().position(offset);
+			// reads only the stream at the offset
+			InputStream is = new BZip2CompressorInputStream(
+					new BufferedInputStream(fis));
+			scanner = new WikiXMLScanner(is, collector, siteinfo);
+		} else {
+			scanner = new WikiXMLScanner(new MappedInputStream(dump, offset,
+					dump.length()), collector, siteinfo);
+			scanner.setMaxPages(1);
+		}
+		scanner.setBaseOffset(offset);
+		scanner.parse();
+		return articles;
+	}
+}
@@ -0,0 +1,129 @@
+/**
+ *  Copyright 2011 Diego Ceccarelli
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package it.cnr.isti.hpc.wikipedia.reader;
+
+import info.bliki.wiki.dump.IArticleFilter;
+import info.bliki.wiki.dump.Siteinfo;
+import info.bliki.wiki.dump.WikiArticle;
+import it.cnr.isti.hpc.wikipedia.article.Article;
+import it.cnr.isti.hpc.wikipedia.article.Article.Type;
+import it.cnr.isti.hpc.wikipedia.article.ExtractionProfile;
+import it.cnr.isti.hpc.wikipedia.parser.ArticleParser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.dbpedia.spotlight.parser.IDumpParser;
+import org.dbpedia.spotlight.parser.IPageSelector;
+import org.dbpedia.spotlight.parser.WikiXMLParser;
+import org.dbpedia.spotlight.parser.WikiXMLScanner;
+import org.xml.sax.SAXException;
+
+/**
+ * Reads the metadata of the articles of an xml dump (id, title, namespace,
+ * type and redirect), without parsing their wikitext: the type comes from
+ * the namespace of the page and from a scan of its text for the redirect and
+ * the disambiguation identifiers (see {@link ArticleParser#parseMetadata}).
+ * The articles are the ones converted by {@link WikipediaArticleReader}
+ * (templates, project pages and files are skipped), but they have no
+ * paragraphs and links.
+ */
+public class ArticleMetadataReader {
+
+	private final File dump;
+	private final String lang;
+	private boolean byteScanner = false;
+
+	/**
+	 * Receives the articles read from the dump.
+	 */
+	public interface Handler {
+		void handle(Article article) throws IOException;
+	}
+
+	/**
+	 * @param dump
+	 *            - the xml dump (also compressed)
+	 * @param lang
+	 *            - the language of the dump
+	 */
+	public ArticleMetadataReader(File dump, String lang) {
+		this.dump = dump;
+		this.lang = lang;
+	}
+
+	/**
+	 * Reads the dump with the {@link WikiXMLScanner}, working on the bytes of
+	 * the dump, instead of the SAX parser.
+	 */
+	public void setByteScanner(boolean byteScanner) {
+		this.byteScanner = byteScanner;
+	}
+
+	/**
+	 * Reads the dump, giving the articles to the handler in the order of the
+	 * dump.
+	 */
+	public void read(Handler handler) throws IOException {
+		MetadataFilter filter = new MetadataFilter(handler);
+		InputStream input = WikiXMLParser.getInputStream(dump
+				.getAbsolutePath());
+		try {
+			IDumpParser parser;
+			if (byteScanner)
+				parser = new WikiXMLScanner(input, filter);
+			else
+				parser = new WikiXMLParser(input, filter);
+			parser.parse();
+		} catch (SAXException e) {
+			if (e.getException() instanceof IOException)
+				throw (IOException) e.getException();
+			throw new IOException("reading the dump " + dump, e);
+		} finally {
+			input.close();
+		}
+	}
+
+	private class MetadataFilter implements IArticleFilter, IPageSelector {
+		private final Handler handler;
+		private final ArticleParser parser = new ArticleParser(lang,
+				ExtractionProfile.TITLES_ONLY);
+
+		MetadataFilter(Handler handler) {
+			this.handler = handler;
+		}
+
+		public boolean select(WikiArticle page, Siteinfo siteinfo) {
+			return !(page.isTemplate() || page.isProject() || page.isFile());
+		}
+
+		public void process(WikiArticle page, Siteinfo siteinfo)
+				throws SAXException {
+			Type type = WikipediaArticleReader.getType(page);
+			if (type == Type.TEMPLATE || type == Type.PROJECT
+					|| type == Type.FILE)
+				return;
+			Article article = WikipediaArticleReader.newArticle(page, type);
+			parser.parseMetadata(article, page.getText());
+			try {
+				handler.handle(article);
+			} catch (IOException e) {
+				throw new SAXException(e);
+			}
+		}
+	}
+}
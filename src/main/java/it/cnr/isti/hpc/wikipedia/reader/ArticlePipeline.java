@@ -0,0 +1,251 @@
+/**
+ *  Copyright 2011 Diego Ceccarelli
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package it.cnr.isti.hpc.wikipedia.reader;
+
+import info.bliki.wiki.dump.WikiArticle;
+import it.cnr.isti.hpc.wikipedia.article.Article;
+import it.cnr.isti.hpc.wikipedia.article.Article.Type;
+import it.cnr.isti.hpc.wikipedia.article.ExtractionProfile;
+import it.cnr.isti.hpc.wikipedia.parser.ArticleParser;
+import it.cnr.isti.hpc.wikipedia.parser.ArticleParserPool;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pipelined conversion of the pages produced by the XML parser. The thread
+ * running the XML parser only submits the pages to a bounded queue, a pool of
+ * workers (each one with its own {@link ArticleParser}, taken from the
+ * {@link ArticleParserPool}) parses and serializes them (in UTF-8, in its
+ * own reused {@link Utf8Buffer}), and a dedicated writer thread appends the
+ * json to the output. Articles are written in the same order they appear in
+ * the dump.
+ */
+class ArticlePipeline {
+	/**
+	 * Logger for this class
+	 */
+	private static final Logger logger = LoggerFactory
+			.getLogger(ArticlePipeline.class);
+
+	private static final Job END_OF_INPUT = new Job(-1, null, null, 0);
+	private static final Result END_OF_OUTPUT = new Result(null, null);
+
+	private final BlockingQueue<Job> input;
+	private final BlockingQueue<Result> output;
+	/** bounds the pages that are queued, parsed or waiting to be written **/
+	private final Semaphore inFlight;
+
+	private final List<Thread> workers;
+	private final Thread writer;
+
+	private final ExtractionProfile profile;
+	private final CheckpointOutput checkpoints;
+	private final OutputStream out;
+	private long submitted = 0;
+
+	/**
+	 * @param lang
+	 *            - the language of the dump
+	 * @param profile
+	 *            - the fields of the articles to extract
+	 * @param threads
+	 *            - the number of workers parsing the articles
+	 * @param queueSize
+	 *            - the maximum number of pages waiting to be parsed
+	 * @param json
+	 *            - the json dump
+	 */
+	public ArticlePipeline(String lang, ExtractionProfile profile,
+			int threads, int queueSize, CheckpointOutput json) {
+		this.profile = profile;
+		this.checkpoints = json;
+		this.out = json.getStream();
+		input = new ArrayBlockingQueue<Job>(queueSize);
+		output = new LinkedBlockingQueue<Result>();
+		inFlight = new Semaphore(queueSize + 2 * threads);
+
+		workers = new ArrayList<Thread>(threads);
+		for (int i = 0; i < threads; i++) {
+			Thread t = new Thread(new Worker(lang), "article-parser-" + i);
+			workers.add(t);
+			t.start();
+		}
+		writer = new Thread(new Writer(), "article-writer");
+		writer.start();
+		logger.info("started {} parsing threads (queue size {})", threads,
+				queueSize);
+	}
+
+	/**
+	 * Enqueues a page for the conversion, blocks if the workers are behind.
+	 *
+	 * @param page
+	 *            - the page read from the dump
+	 * @param type
+	 *            - the type of the page
+	 * @param pages
+	 *            - the number of pages read from the dump up to this page
+	 */
+	public void submit(WikiArticle page, Type type, long pages)
+			throws InterruptedException {
+		inFlight.acquire();
+		input.put(new Job(submitted++, page, type, pages));
+	}
+
+	/**
+	 * Waits for all the submitted pages to be written.
+	 */
+	public void close() throws InterruptedException {
+		for (int i = 0; i < workers.size(); i++) {
+			input.put(END_OF_INPUT);
+		}
+		for (Thread t : workers) {
+			t.join();
+		}
+		output.put(END_OF_OUTPUT);
+		writer.join();
+	}
+
+	private static class Job {
+		final long seq;
+		final WikiArticle page;
+		final Type type;
+		final long pages;
+
+		Job(long seq, WikiArticle page, Type type, long pages) {
+			this.seq = seq;
+			this.page = page;
+			this.type = type;
+			this.pages = pages;
+		}
+	}
+
+	private static class Result {
+		final long seq;
+		final String pageId;
+		final long offset;
+		final long pages;
+		/** the json in UTF-8, null if the page could not be converted **/
+		final byte[] json;
+
+		Result(Job job, byte[] json) {
+			this.seq = (job == null) ? -1 : job.seq;
+			this.pageId = (job == null) ? null : job.page.getId();
+			this.offset = (job == null) ? -1 : WikipediaArticleReader
+					.getOffset(job.page);
+			this.pages = (job == null) ? 0 : job.pages;
+			this.json = json;
+		}
+	}
+
+	private class Worker implements Runnable {
+		private final String lang;
+
+		Worker(String lang) {
+			this.lang = lang;
+		}
+
+		public void run() {
+			ArticleParser parser = ArticleParserPool.getParser(lang, profile);
+			Utf8Buffer buffer = new Utf8Buffer();
+			try {
+				Job job;
+				while ((job = input.take()) != END_OF_INPUT) {
+					byte[] json = null;
+					Error error = null;
+					try {
+						Article article = WikipediaArticleReader.newArticle(
+								job.page, job.type);
+						parser.parse(article, job.page.getText());
+						buffer.reset();
+						article.writeJson(buffer, profile);
+						buffer.write('\n');
+						json = buffer.toByteArray();
+					} catch (RuntimeException re) {
+						logger.error("parsing article {}: {}",
+								job.page.getTitle(), re.toString());
+					} catch (IOException e) {
+						logger.error("serializing article {}: {}",
+								job.page.getTitle(), e.toString());
+					} catch (Error e) {
+						error = e;
+					} finally {
+						// the writer waits for the result of every page
+						output.put(new Result(job, json));
+					}
+					if (error != null) {
+						// e.g., a stack overflow on a deeply nested page: the
+						// conversion fails, as it would without the pipeline
+						logger.error("parsing article {}: {}",
+								job.page.getTitle(), error.toString());
+						System.exit(-1);
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private class Writer implements Runnable {
+
+		public void run() {
+			Map<Long, Result> pending = new HashMap<Long, Result>();
+			long next = 0;
+			try {
+				Result r;
+				while ((r = output.take()) != END_OF_OUTPUT) {
+					if (r.seq != next) {
+						pending.put(r.seq, r);
+						continue;
+					}
+					write(r);
+					next++;
+					while (pending.containsKey(next)) {
+						write(pending.remove(next));
+						next++;
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (IOException e) {
+				logger.error("writing the output file {}", e.toString());
+				System.exit(-1);
+			}
+		}
+
+		private void write(Result r) throws IOException {
+			inFlight.release();
+			if (r.json == null)
+				return;
+			out.write(r.json);
+			checkpoints.pageWritten(r.pageId, r.offset, r.pages);
+		}
+	}
+}
@@ -0,0 +1,139 @@
+/**
+ *  Copyright 2011 Diego Ceccarelli
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package it.cnr.isti.hpc.wikipedia.reader;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * The progress of a conversion: the last page written in the output, its
+ * position in the dump, and the length of the output after the page. A
+ * conversion can be resumed from its last checkpoint truncating the output to
+ * that length.
+ */
+class Checkpoint {
+
+	private static final String PAGE_ID = "page.id";
+	private static final String PAGES = "pages";
+	private static final String INPUT_OFFSET = "input.offset";
+	private static final String OUTPUT_LENGTH = "output.length";
+
+	private final String pageId;
+	private final long pages;
+	private final long inputOffset;
+	private final long outputLength;
+
+	/**
+	 * @param pageId
+	 *            - the id of the last page written
+	 * @param pages
+	 *            - the number of pages read from the dump up to that page
+	 * @param inputOffset
+	 *            - the offset of the page in the dump, -1 if unknown
+	 * @param outputLength
+	 *            - the length of the output after the page
+	 */
+	Checkpoint(String pageId, long pages, long inputOffset, long outputLength) {
+		this.pageId = pageId;
+		this.pages = pages;
+		this.inputOffset = inputOffset;
+		this.outputLength = outputLength;
+	}
+
+	/**
+	 * @return the file containing the checkpoints of a conversion
+	 */
+	static File getFile(File outputFile) {
+		return new File(outputFile.getAbsolutePath() + ".checkpoint");
+	}
+
+	String getPageId() {
+		return pageId;
+	}
+
+	long getPages() {
+		return pages;
+	}
+
+	long getInputOffset() {
+		return inputOffset;
+	}
+
+	long getOutputLength() {
+		return outputLength;
+	}
+
+	/**
+	 * @return the checkpoint saved in the file, null if the file does not
+	 *         exist
+	 */
+	static Checkpoint load(File file) throws IOException {
+		if (!file.exists())
+			return null;
+		Properties p = new Properties();
+		InputStream is = new FileInputStream(file);
+		try {
+			p.load(is);
+		} finally {
+			is.close();
+		}
+		try {
+			return new Checkpoint(p.getProperty(PAGE_ID), Long.parseLong(p
+					.getProperty(PAGES)), Long.parseLong(p
+					.getProperty(INPUT_OFFSET)), Long.parseLong(p
+					.getProperty(OUTPUT_LENGTH)));
+		} catch (RuntimeException e) {
+			throw new IOException("invalid checkpoint " + file, e);
+		}
+	}
+
+	/**
+	 * Saves the checkpoint, replacing the previous one only once it is
+	 * completely written.
+	 */
+	void save(File file) throws IOException {
+		Properties p = new Properties();
+		p.setProperty(PAGE_ID, pageId);
+		p.setProperty(PAGES, String.valueOf(pages));
+		p.setProperty(INPUT_OFFSET, String.valueOf(inputOffset));
+		p.setProperty(OUTPUT_LENGTH, String.valueOf(outputLength));
+		File tmp = new File(file.getAbsolutePath() + ".tmp");
+		FileOutputStream os = new FileOutputStream(tmp);
+		try {
+			p.store(os, "json-wikipedia conversion checkpoint");
+			os.getFD().sync();
+		} finally {
+			os.close();
+		}
+		Files.move(tmp.toPath(), file.toPath(),
+				StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	@Override
+	public String toString() {
+		return "page " + pageId + " (" + pages + " pages read, output length "
+				+ outputLength + ")";
+	}
+}
@@ -0,0 +1,118 @@
+/**
+ *  Copyright 2011 Diego Ceccarelli
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package it.cnr.isti.hpc.wikipedia.reader;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The output of a conversion, saving a {@link Checkpoint} every given number
+ * of pages written. At each checkpoint the output is flushed to the disk, and
+ * a compressed output (<tt>.gz</tt>, written by a
+ * {@link ParallelGzipOutputStream}) ends its current gzip member, so that the
+ * output truncated to the length in the checkpoint is still valid (the gzip
+ * members are concatenated). The json is written already encoded in UTF-8
+ * (see {@link Utf8Buffer}).
+ */
+class CheckpointOutput {
+	/**
+	 * Logger for this class
+	 */
+	private static final Logger logger = LoggerFactory
+			.getLogger(CheckpointOutput.class);
+
+	private final FileOutputStream file;
+	private final OutputStream stream;
+
+	private final File checkpointFile;
+	private final int interval;
+	private long written = 0;
+
+	/**
+	 * @param outputFile
+	 *            - the json output
+	 * @param resumeFrom
+	 *            - the checkpoint to resume, the output is truncated to its
+	 *            length (null to create a new output)
+	 * @param interval
+	 *            - the number of pages between two checkpoints, 0 to never
+	 *            save checkpoints
+	 * @param compressors
+	 *            - the number of threads compressing a <tt>.gz</tt> output
+	 */
+	CheckpointOutput(File outputFile, Checkpoint resumeFrom, int interval,
+			int compressors) throws IOException {
+		if (resumeFrom == null) {
+			file = new FileOutputStream(outputFile);
+		} else {
+			if (outputFile.length() < resumeFrom.getOutputLength())
+				throw new IOException("the output " + outputFile
+						+ " is shorter than its checkpoint");
+			file = new FileOutputStream(outputFile, true);
+			file.getChannel().truncate(resumeFrom.getOutputLength());
+		}
+		OutputStream os = new BufferedOutputStream(file, 1 << 16);
+		if (outputFile.getName().endsWith(".gz"))
+			os = new ParallelGzipOutputStream(os, compressors);
+		stream = os;
+		checkpointFile = Checkpoint.getFile(outputFile);
+		this.interval = interval;
+	}
+
+	OutputStream getStream() {
+		return stream;
+	}
+
+	/**
+	 * Notifies that a page was written, saves a checkpoint if needed.
+	 * 
+	 * @param pageId
+	 *            - the id of the page
+	 * @param offset
+	 *            - the offset of the page in the dump, -1 if unknown
+	 * @param pages
+	 *            - the number of pages read from the dump up to the page
+	 */
+	void pageWritten(String pageId, long offset, long pages)
+			throws IOException {
+		if (interval <= 0 || ++written % interval != 0)
+			return;
+		// ends the gzip member
+		stream.flush();
+		file.getChannel().force(false);
+		Checkpoint checkpoint = new Checkpoint(pageId, pages, offset, file
+				.getChannel().position());
+		checkpoint.save(checkpointFile);
+		logger.debug("checkpoint: {}", checkpoint);
+	}
+
+	/**
+	 * Closes the output, the conversion is complete and its checkpoint is
+	 * removed.
+	 */
+	void close() throws IOException {
+		stream.close();
+		if (checkpointFile.exists() && !checkpointFile.delete())
+			logger.warn("cannot delete the checkpoint {}", checkpointFile);
+	}
+}
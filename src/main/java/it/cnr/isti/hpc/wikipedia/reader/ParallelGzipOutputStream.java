@@ -0,0 +1,217 @@
+/**
+ *  Copyright 2011 Diego Ceccarelli
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package it.cnr.isti.hpc.wikipedia.reader;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import org.dbpedia.spotlight.parser.DecoderThreadFactory;
+
+/**
+ * Compresses the output in independent blocks on a pool of threads, writing
+ * each block as a gzip member in the BGZF layout (the one used by samtools and
+ * tabix): every member carries in its header extra field <tt>BC</tt> its own
+ * compressed size, so a reader can move from a block to the next without
+ * inflating it, and start decompressing at any block. The file ends with an
+ * empty block. Any gzip reader supporting concatenated members (e.g.,
+ * <tt>zcat</tt>, {@link java.util.zip.GZIPInputStream}) reads the file.
+ * <p>
+ * {@link #flush()} ends the current block, so the bytes written up to that
+ * moment are a valid gzip file.
+ */
+public class ParallelGzipOutputStream extends OutputStream {
+
+	/** uncompressed bytes in a block, its compressed size fits in 16 bits **/
+	public static final int BLOCK_SIZE = 0xff00;
+
+	/** blocks compressed in advance for each thread **/
+	private static final int BLOCKS_PER_THREAD = 4;
+
+	private static final int HEADER_SIZE = 18;
+	private static final int TRAILER_SIZE = 8;
+
+	private final OutputStream out;
+	private final int level;
+	private final int window;
+	private final ExecutorService compressors;
+	private final Deque<Future<byte[]>> pending = new ArrayDeque<Future<byte[]>>();
+
+	private byte[] block = new byte[BLOCK_SIZE];
+	private int size = 0;
+	private boolean closed = false;
+
+	/**
+	 * @param out
+	 *            - the compressed output
+	 * @param threads
+	 *            - the number of compressing threads
+	 */
+	public ParallelGzipOutputStream(OutputStream out, int threads) {
+		this(out, threads, Deflater.DEFAULT_COMPRESSION);
+	}
+
+	/**
+	 * @param out
+	 *            - the compressed output
+	 * @param threads
+	 *            - the number of compressing threads
+	 * @param level
+	 *            - the compression level (see {@link Deflater})
+	 */
+	public ParallelGzipOutputStream(OutputStream out, int threads, int level) {
+		if (threads < 1)
+			throw new IllegalArgumentException("threads must be positive");
+		this.out = out;
+		this.level = level;
+		window = threads * BLOCKS_PER_THREAD;
+		compressors = Executors.newFixedThreadPool(threads,
+				new DecoderThreadFactory("gzip-compressor"));
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		if (size == BLOCK_SIZE)
+			submit();
+		block[size++] = (byte) b;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			if (size == BLOCK_SIZE)
+				submit();
+			int n = Math.min(len, BLOCK_SIZE - size);
+			System.arraycopy(b, off, block, size, n);
+			size += n;
+			off += n;
+			len -= n;
+		}
+	}
+
+	/**
+	 * Ends the current block and writes all the blocks compressed.
+	 */
+	@Override
+	public void flush() throws IOException {
+		if (size > 0)
+			submit();
+		while (!pending.isEmpty())
+			writeNext();
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed)
+			return;
+		try {
+			flush();
+			// the empty block marks the end of the file
+			out.write(compress(new byte[0], 0, level));
+		} finally {
+			closed = true;
+			compressors.shutdownNow();
+			out.close();
+		}
+	}
+
+	private void submit() throws IOException {
+		if (closed)
+			throw new IOException("stream closed");
+		while (pending.size() >= window)
+			writeNext();
+		pending.add(compressors.submit(new Compressor(block, size, level)));
+		block = new byte[BLOCK_SIZE];
+		size = 0;
+	}
+
+	private void writeNext() throws IOException {
+		try {
+			out.write(pending.poll().get());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted compressing the output", e);
+		} catch (ExecutionException e) {
+			throw new IOException("compressing the output", e.getCause());
+		}
+	}
+
+	private static class Compressor implements Callable<byte[]> {
+		private final byte[] data;
+		private final int size;
+		private final int level;
+
+		Compressor(byte[] data, int size, int level) {
+			this.data = data;
+			this.size = size;
+			this.level = level;
+		}
+
+		public byte[] call() {
+			return compress(data, size, level);
+		}
+	}
+
+	/**
+	 * Compresses a block in a gzip member with the BGZF header.
+	 */
+	static byte[] compress(byte[] data, int size, int level) {
+		Deflater deflater = new Deflater(level, true);
+		// incompressible data grows by a few bytes for each 16k
+		byte[] member = new byte[HEADER_SIZE + size + (size >> 10) + 64
+				+ TRAILER_SIZE];
+		int pos = HEADER_SIZE;
+		try {
+			deflater.setInput(data, 0, size);
+			deflater.finish();
+			while (!deflater.finished()) {
+				if (pos == member.length - TRAILER_SIZE)
+					member = Arrays.copyOf(member, member.length * 2);
+				pos += deflater.deflate(member, pos, member.length
+						- TRAILER_SIZE - pos);
+			}
+		} finally {
+			deflater.end();
+		}
+		CRC32 crc = new CRC32();
+		crc.update(data, 0, size);
+		int length = pos + TRAILER_SIZE;
+		// ID1 ID2 CM FLG (FEXTRA), MTIME, XFL, OS (unknown), XLEN
+		byte[] header = { 0x1f, (byte) 0x8b, 8, 4, 0, 0, 0, 0, 0, (byte) 0xff,
+				6, 0, 'B', 'C', 2, 0 };
+		System.arraycopy(header, 0, member, 0, header.length);
+		writeInt(member, 16, length - 1, 2);
+		writeInt(member, pos, crc.getValue(), 4);
+		writeInt(member, pos + 4, size, 4);
+		return Arrays.copyOf(member, length);
+	}
+
+	private static void writeInt(byte[] b, int off, long value, int bytes) {
+		for (int i = 0; i < bytes; i++)
+			b[off + i] = (byte) (value >>> (8 * i));
+	}
+}
@@ -0,0 +1,663 @@
+/**
+ *  Copyright 2011 Diego Ceccarelli
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package it.cnr.isti.hpc.wikipedia.reader;
+
+import it.cnr.isti.hpc.io.reader.Filter;
+import it.cnr.isti.hpc.io.reader.RecordParser;
+import it.cnr.isti.hpc.wikipedia.article.Article;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+/**
+ * Reads a json dump (one article per line) on several threads. The dump is cut
+ * in byte ranges, and every range decodes the lines it owns: a line belongs to
+ * the range containing the newline that precedes it (the first line to the
+ * first range), so a range starting in the middle of a line skips it and the
+ * range before reads it to its end. The ranges are split recursively on a
+ * {@link ForkJoinPool} until they are smaller than the split size, and idle
+ * threads steal the halves not processed yet.
+ * <p>
+ * A plain <tt>.json</tt> dump is cut at any byte; a <tt>.json.gz</tt> dump in
+ * blocks (written by {@link ParallelGzipOutputStream}) is cut at the
+ * boundaries of its blocks, found from their header. Other gzip files can not
+ * be split and are read by a single thread.
+ * <p>
+ * The articles are given to the handler as soon as they are decoded, by
+ * several threads and not in the order of the dump. The filters of the reader
+ * are applied as in a {@link it.cnr.isti.hpc.io.reader.RecordReader}:
+ *
+ * <pre>
+ * {@code
+ * new ParallelJsonReader("wikipedia.json.gz", new ArticleCodec())
+ * 		.filter(TypeFilter.STD_FILTER).forEach(handler);
+ * }
+ * </pre>
+ */
+public class ParallelJsonReader {
+
+	/** Receives the articles, called concurrently by the threads **/
+	public interface Handler {
+		void handle(Article article);
+	}
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final int MIN_SPLIT_SIZE = 1024 * 1024;
+
+	/** the fixed bytes of the header of a block and their positions **/
+	private static final byte[] BLOCK_MAGIC = { 0x1f, (byte) 0x8b, 8, 4, 6, 0,
+			'B', 'C', 2, 0 };
+	private static final int[] BLOCK_MAGIC_POS = { 0, 1, 2, 3, 10, 11, 12, 13,
+			14, 15 };
+	private static final int BLOCK_HEADER_SIZE = 18;
+	private static final int BLOCK_TRAILER_SIZE = 8;
+
+	private enum Format {
+		PLAIN, BLOCKS, GZIP
+	}
+
+	private final File file;
+	private final RecordParser<Article> parser;
+	private final Format format;
+	private final List<Filter<Article>> filters = new ArrayList<Filter<Article>>();
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private long splitSize = 0;
+
+	/**
+	 * @param path
+	 *            - the json dump, plain or gzip
+	 * @param parser
+	 *            - decodes the articles (e.g., an
+	 *            {@link it.cnr.isti.hpc.wikipedia.article.ArticleCodec})
+	 */
+	public ParallelJsonReader(String path, RecordParser<Article> parser)
+			throws IOException {
+		file = new File(path);
+		this.parser = parser;
+		if (!path.endsWith(".gz"))
+			format = Format.PLAIN;
+		else if (file.length() > 0 && isBlock(file, 0))
+			format = Format.BLOCKS;
+		else
+			format = Format.GZIP;
+	}
+
+	/**
+	 * Skips the articles filtered by one of the filters.
+	 */
+	@SafeVarargs
+	public final ParallelJsonReader filter(Filter<Article>... filters) {
+		for (Filter<Article> filter : filters)
+			this.filters.add(filter);
+		return this;
+	}
+
+	/**
+	 * @param threads
+	 *            - the threads decoding the articles (default one per core)
+	 */
+	public void setThreads(int threads) {
+		if (threads < 1)
+			throw new IllegalArgumentException("threads must be positive");
+		this.threads = threads;
+	}
+
+	/**
+	 * @param bytes
+	 *            - the size of the ranges decoded by a thread at once (by
+	 *            default the dump is cut in four ranges for each thread, of at
+	 *            least 1 MB)
+	 */
+	public void setSplitSize(long bytes) {
+		if (bytes < 1)
+			throw new IllegalArgumentException("split size must be positive");
+		this.splitSize = bytes;
+	}
+
+	/**
+	 * @return true if the dump can be cut in ranges
+	 */
+	public boolean isSplittable() {
+		return format != Format.GZIP;
+	}
+
+	/**
+	 * Cuts the dump in ranges of about the same size, for the jobs that
+	 * distribute them on their own.
+	 *
+	 * @param n
+	 *            - the number of ranges (a single range if the dump can not
+	 *            be split)
+	 * @return the ranges, in the order of the dump
+	 */
+	public List<Split> getSplits(int n) {
+		if (n < 1)
+			throw new IllegalArgumentException("n must be positive");
+		List<Split> splits = new ArrayList<Split>();
+		if (!isSplittable()) {
+			splits.add(new Split(0, Long.MAX_VALUE));
+			return splits;
+		}
+		long length = file.length();
+		for (int i = 0; i < n; i++) {
+			splits.add(new Split(length * i / n, length * (i + 1) / n));
+		}
+		return splits;
+	}
+
+	/**
+	 * Decodes all the articles of the dump on a pool of threads, and gives the
+	 * articles not filtered to the handler. Returns when all the articles are
+	 * handled.
+	 *
+	 * @throws IOException
+	 *             if the dump can not be read
+	 */
+	public void forEach(Handler handler) throws IOException {
+		long size = splitSize;
+		if (size == 0)
+			size = Math.max(MIN_SPLIT_SIZE, file.length() / (4 * threads));
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			long end = isSplittable() ? file.length() : Long.MAX_VALUE;
+			pool.invoke(new SplitTask(new Split(0, end), size, handler));
+		} catch (IllegalStateException e) {
+			// the exception of a task can be wrapped again by the pool
+			for (Throwable t = e; t != null; t = t.getCause()) {
+				if (t instanceof IOException)
+					throw (IOException) t;
+			}
+			throw e;
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private class SplitTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final Split split;
+		private final long size;
+		private final Handler handler;
+
+		SplitTask(Split split, long size, Handler handler) {
+			this.split = split;
+			this.size = size;
+			this.handler = handler;
+		}
+
+		@Override
+		protected void compute() {
+			long middle = -1;
+			if (isSplittable() && split.end - split.start > size)
+				middle = middle(split);
+			if (middle > 0) {
+				invokeAll(new SplitTask(new Split(split.start, middle), size,
+						handler), new SplitTask(new Split(middle, split.end),
+						size, handler));
+				return;
+			}
+			for (Article a : split) {
+				handler.handle(a);
+			}
+		}
+	}
+
+	/**
+	 * @return where to cut the range in two, for a dump in blocks the first
+	 *         block after the middle (-1 if there is none in the range)
+	 */
+	private long middle(Split split) {
+		long middle = split.start + (split.end - split.start) / 2;
+		if (format == Format.PLAIN)
+			return middle;
+		try {
+			long block = findBlock(middle);
+			return block < split.end ? block : -1;
+		} catch (IOException e) {
+			throw new IllegalStateException("reading " + file, e);
+		}
+	}
+
+	/**
+	 * A range of bytes of the dump, iterating over the articles it owns (the
+	 * filters of the reader applied). For a dump in blocks the range is in
+	 * compressed bytes, and a block belongs to the range containing its
+	 * header.
+	 */
+	public class Split implements Iterable<Article> {
+		private final long start;
+		private final long end;
+
+		Split(long start, long end) {
+			this.start = start;
+			this.end = end;
+		}
+
+		/**
+		 * @return the first byte of the range
+		 */
+		public long getStart() {
+			return start;
+		}
+
+		/**
+		 * @return the byte after the range
+		 */
+		public long getEnd() {
+			return end;
+		}
+
+		/**
+		 * @throws IllegalStateException
+		 *             (caused by an IOException) if the dump can not be read
+		 */
+		public Iterator<Article> iterator() {
+			try {
+				return new SplitIterator(this);
+			} catch (IOException e) {
+				throw new IllegalStateException("reading " + file, e);
+			}
+		}
+
+		@Override
+		public String toString() {
+			return file.getName() + "[" + start + ", " + end + ")";
+		}
+	}
+
+	private class SplitIterator implements Iterator<Article> {
+		private final Split split;
+		private Source source;
+		private int pos = 0;
+		private byte[] line = new byte[BUFFER_SIZE];
+		/** true after the last line of the range **/
+		private boolean done = false;
+		private Article next = null;
+
+		SplitIterator(Split split) throws IOException {
+			this.split = split;
+			source = open(split.start);
+			if (source == null || split.start > 0 && !skipLine()) {
+				close();
+			}
+		}
+
+		public boolean hasNext() {
+			try {
+				while (next == null && !done) {
+					String json = nextLine();
+					if (json == null || json.isEmpty())
+						continue;
+					Article a = parser.decode(json);
+					if (a != null && !isFiltered(a))
+						next = a;
+				}
+			} catch (IOException e) {
+				close();
+				throw new IllegalStateException("reading " + split, e);
+			}
+			return next != null;
+		}
+
+		public Article next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			Article a = next;
+			next = null;
+			return a;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		/**
+		 * Skips the bytes up to the first newline of the range.
+		 *
+		 * @return false if the range does not contain a newline
+		 */
+		private boolean skipLine() throws IOException {
+			while (true) {
+				if (pos == source.length) {
+					if (!source.next())
+						return false;
+					pos = 0;
+				}
+				if (source.position(pos) >= split.end)
+					return false;
+				if (source.data[pos++] == '\n')
+					return true;
+			}
+		}
+
+		/**
+		 * @return the next line owned by the range, null at the end
+		 */
+		private String nextLine() throws IOException {
+			int length = 0;
+			while (true) {
+				if (pos == source.length) {
+					if (!source.next()) {
+						close();
+						return length == 0 ? null : decode(length);
+					}
+					pos = 0;
+				}
+				int newline = pos;
+				while (newline < source.length && source.data[newline] != '\n')
+					newline++;
+				int n = newline - pos;
+				if (length + n > line.length)
+					line = Arrays.copyOf(line, Math.max(2 * line.length,
+							length + n));
+				System.arraycopy(source.data, pos, line, length, n);
+				length += n;
+				pos = newline;
+				if (newline < source.length) {
+					// the next line is owned if this newline is in the range
+					if (source.position(pos) >= split.end)
+						close();
+					pos++;
+					return decode(length);
+				}
+			}
+		}
+
+		private String decode(int length) {
+			if (length > 0 && line[length - 1] == '\r')
+				length--;
+			return new String(line, 0, length, UTF8);
+		}
+
+		private void close() {
+			done = true;
+			if (source != null) {
+				source.close();
+				source = null;
+			}
+		}
+	}
+
+	private boolean isFiltered(Article a) {
+		for (Filter<Article> f : filters) {
+			if (f.isFilter(a))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return a source starting in the given position (for a dump in blocks,
+	 *         at the first block after it), null if there is nothing to read
+	 */
+	private Source open(long start) throws IOException {
+		switch (format) {
+		case PLAIN:
+			return new StreamSource(new FileInputStream(file), start);
+		case GZIP:
+			return new StreamSource(new GZIPInputStream(new FileInputStream(
+					file), BUFFER_SIZE), 0);
+		default:
+			long block = findBlock(start);
+			return block < 0 ? null : new BlockSource(block);
+		}
+	}
+
+	/**
+	 * The bytes of the dump, read a chunk at a time.
+	 */
+	private abstract static class Source {
+		byte[] data;
+		int length = 0;
+
+		/**
+		 * Reads the next chunk in data.
+		 *
+		 * @return false at the end of the dump
+		 */
+		abstract boolean next() throws IOException;
+
+		/**
+		 * @return the position in the dump of the i-th byte of the chunk
+		 */
+		abstract long position(int i);
+
+		abstract void close();
+	}
+
+	private static class StreamSource extends Source {
+		private final InputStream in;
+		private long chunk;
+
+		StreamSource(InputStream in, long start) throws IOException {
+			this.in = in;
+			data = new byte[BUFFER_SIZE];
+			chunk = start;
+			if (start > 0)
+				((FileInputStream) in).getChannel().position(start);
+		}
+
+		@Override
+		boolean next() throws IOException {
+			chunk += length;
+			length = 0;
+			int n;
+			while ((n = in.read(data)) == 0)
+				;
+			if (n < 0)
+				return false;
+			length = n;
+			return true;
+		}
+
+		@Override
+		long position(int i) {
+			return chunk + i;
+		}
+
+		@Override
+		void close() {
+			try {
+				in.close();
+			} catch (IOException e) {
+				// nothing to do
+			}
+		}
+	}
+
+	/**
+	 * Inflates the blocks of the dump one at a time; all the bytes of a block
+	 * are in the position of its header.
+	 */
+	private class BlockSource extends Source {
+		private final RandomAccessFile in;
+		private final Inflater inflater = new Inflater(true);
+		private final byte[] header = new byte[BLOCK_HEADER_SIZE];
+		private byte[] compressed = new byte[BUFFER_SIZE];
+		private long block;
+		private long nextBlock;
+
+		BlockSource(long block) throws IOException {
+			in = new RandomAccessFile(file, "r");
+			data = new byte[BUFFER_SIZE];
+			nextBlock = block;
+		}
+
+		@Override
+		boolean next() throws IOException {
+			length = 0;
+			long fileLength = in.length();
+			while (length == 0) {
+				if (nextBlock >= fileLength)
+					return false;
+				block = nextBlock;
+				in.seek(block);
+				in.readFully(header);
+				if (!isBlock(header))
+					throw new IOException("no block at " + block + " of "
+							+ file);
+				int size = blockSize(header);
+				int body = size - BLOCK_HEADER_SIZE;
+				if (compressed.length < body)
+					compressed = new byte[body];
+				in.readFully(compressed, 0, body);
+				nextBlock = block + size;
+				int isize = readInt(compressed, body - 4);
+				if (data.length < isize)
+					data = new byte[isize];
+				inflater.reset();
+				inflater.setInput(compressed, 0, body - BLOCK_TRAILER_SIZE);
+				try {
+					while (length < isize && !inflater.finished()) {
+						int n = inflater.inflate(data, length, isize - length);
+						if (n == 0 && inflater.needsInput())
+							break;
+						length += n;
+					}
+				} catch (DataFormatException e) {
+					throw new IOException("corrupted block at " + block
+							+ " of " + file, e);
+				}
+				if (length != isize)
+					throw new IOException("corrupted block at " + block
+							+ " of " + file);
+			}
+			return true;
+		}
+
+		@Override
+		long position(int i) {
+			return block;
+		}
+
+		@Override
+		void close() {
+			inflater.end();
+			try {
+				in.close();
+			} catch (IOException e) {
+				// nothing to do
+			}
+		}
+	}
+
+	/**
+	 * @return the offset of the first block starting in or after the given
+	 *         position, -1 if there are no more blocks
+	 */
+	private long findBlock(long from) throws IOException {
+		if (from == 0)
+			return 0;
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		try {
+			long length = in.length();
+			byte[] window = new byte[BUFFER_SIZE + BLOCK_HEADER_SIZE];
+			while (from < length) {
+				int size = (int) Math.min(window.length, length - from);
+				in.seek(from);
+				in.readFully(window, 0, size);
+				for (int i = 0; i + BLOCK_HEADER_SIZE <= size; i++) {
+					if (window[i] == 0x1f && isBlock(window, i)
+							&& isBlockChain(in, from + i, blockSize(window, i)))
+						return from + i;
+				}
+				if (size < window.length)
+					break;
+				from += BUFFER_SIZE;
+			}
+			return -1;
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Checks a header found searching its bytes: the block must be followed
+	 * by another block or by the end of the file.
+	 */
+	private static boolean isBlockChain(RandomAccessFile in, long block,
+			int size) throws IOException {
+		long next = block + size;
+		if (next == in.length())
+			return true;
+		if (next + BLOCK_HEADER_SIZE > in.length())
+			return false;
+		byte[] header = new byte[BLOCK_HEADER_SIZE];
+		in.seek(next);
+		in.readFully(header);
+		return isBlock(header);
+	}
+
+	private static boolean isBlock(File file, long offset) throws IOException {
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		try {
+			byte[] header = new byte[BLOCK_HEADER_SIZE];
+			in.seek(offset);
+			in.readFully(header);
+			return isBlock(header);
+		} catch (EOFException e) {
+			return false;
+		} finally {
+			in.close();
+		}
+	}
+
+	private static boolean isBlock(byte[] header) {
+		return isBlock(header, 0);
+	}
+
+	private static boolean isBlock(byte[] b, int off) {
+		for (int i = 0; i < BLOCK_MAGIC.length; i++) {
+			if (b[off + BLOCK_MAGIC_POS[i]] != BLOCK_MAGIC[i])
+				return false;
+		}
+		return blockSize(b, off) > BLOCK_HEADER_SIZE + BLOCK_TRAILER_SIZE;
+	}
+
+	private static int blockSize(byte[] header) {
+		return blockSize(header, 0);
+	}
+
+	/**
+	 * @return the size of the block, header and trailer included
+	 */
+	private static int blockSize(byte[] b, int off) {
+		return ((b[off + 16] & 0xff) | (b[off + 17] & 0xff) << 8) + 1;
+	}
+
+	private static int readInt(byte[] b, int off) {
+		return (b[off] & 0xff) | (b[off + 1] & 0xff) << 8
+				| (b[off + 2] & 0xff) << 16 | (b[off + 3] & 0xff) << 24;
+	}
+}
@@ -0,0 +1,168 @@
+/**
+ *  Copyright 2011 Diego Ceccarelli
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package it.cnr.isti.hpc.wikipedia.reader;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * A writer encoding the characters in UTF-8 in a growing byte array, reused
+ * for all the articles serialized by a thread: the json of an article is
+ * streamed in the buffer and then copied to the output, without building a
+ * string for it. Malformed surrogates are replaced with <tt>?</tt>, as the
+ * UTF-8 {@link java.io.OutputStreamWriter} does.
+ */
+class Utf8Buffer extends Writer {
+
+	private static final byte REPLACEMENT = '?';
+
+	private byte[] buf;
+	private int count = 0;
+	/** a high surrogate waiting for the low one, 0 if none **/
+	private char high = 0;
+
+	Utf8Buffer() {
+		this(64 * 1024);
+	}
+
+	/**
+	 * @param size
+	 *            - the initial size of the buffer in bytes
+	 */
+	Utf8Buffer(int size) {
+		buf = new byte[size];
+	}
+
+	@Override
+	public void write(int c) {
+		ensure(4);
+		encode((char) c);
+	}
+
+	@Override
+	public void write(char[] cbuf, int off, int len) {
+		// at most 3 bytes per char (a surrogate pair takes 4 bytes for 2
+		// chars)
+		ensure(3 * len + 1);
+		for (int i = off; i < off + len; i++) {
+			encode(cbuf[i]);
+		}
+	}
+
+	@Override
+	public void write(String s, int off, int len) {
+		ensure(3 * len + 1);
+		for (int i = off; i < off + len; i++) {
+			encode(s.charAt(i));
+		}
+	}
+
+	@Override
+	public Writer append(char c) {
+		write(c);
+		return this;
+	}
+
+	private void encode(char c) {
+		if (high != 0) {
+			char h = high;
+			high = 0;
+			if (Character.isLowSurrogate(c)) {
+				int cp = Character.toCodePoint(h, c);
+				buf[count++] = (byte) (0xf0 | (cp >> 18));
+				buf[count++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+				buf[count++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+				buf[count++] = (byte) (0x80 | (cp & 0x3f));
+				return;
+			}
+			buf[count++] = REPLACEMENT;
+		}
+		if (c < 0x80) {
+			buf[count++] = (byte) c;
+		} else if (c < 0x800) {
+			buf[count++] = (byte) (0xc0 | (c >> 6));
+			buf[count++] = (byte) (0x80 | (c & 0x3f));
+		} else if (Character.isHighSurrogate(c)) {
+			high = c;
+		} else if (Character.isLowSurrogate(c)) {
+			buf[count++] = REPLACEMENT;
+		} else {
+			buf[count++] = (byte) (0xe0 | (c >> 12));
+			buf[count++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+			buf[count++] = (byte) (0x80 | (c & 0x3f));
+		}
+	}
+
+	private void ensure(int bytes) {
+		if (count + bytes <= buf.length)
+			return;
+		buf = Arrays.copyOf(buf, Math.max(buf.length * 2, count + bytes));
+	}
+
+	/**
+	 * Encodes a pending high surrogate, not followed by its low one.
+	 */
+	private void finish() {
+		if (high != 0) {
+			high = 0;
+			ensure(1);
+			buf[count++] = REPLACEMENT;
+		}
+	}
+
+	/**
+	 * @return the number of bytes in the buffer
+	 */
+	int size() {
+		finish();
+		return count;
+	}
+
+	/**
+	 * Empties the buffer, keeping its memory.
+	 */
+	void reset() {
+		count = 0;
+		high = 0;
+	}
+
+	/**
+	 * @return a copy of the bytes in the buffer
+	 */
+	byte[] toByteArray() {
+		finish();
+		return Arrays.copyOf(buf, count);
+	}
+
+	/**
+	 * Writes the bytes in the buffer to the output.
+	 */
+	void writeTo(OutputStream out) throws IOException {
+		finish();
+		out.write(buf, 0, count);
+	}
+
+	@Override
+	public void flush() {
+	}
+
+	@Override
+	public void close() {
+	}
+
+}
@@ -20,17 +20,32 @@ import info.bliki.wiki.dump.IArticleFilter;
 import info.bliki.wiki.dump.Siteinfo;
 import info.bliki.wiki.dump.WikiArticle;
 import it.cnr.isti.hpc.benchmark.Stopwatch;
-import it.cnr.isti.hpc.io.IOUtils;
 import it.cnr.isti.hpc.log.ProgressLogger;
 import it.cnr.isti.hpc.wikipedia.article.Article;
 import it.cnr.isti.hpc.wikipedia.article.Article.Type;
-import it.cnr.isti.hpc.wikipedia.parser.ArticleParser;
+import it.cnr.isti.hpc.wikipedia.article.ExtractionProfile;
+import it.cnr.isti.hpc.wikipedia.parser.ArticleParserPool;
 
-import java.io.BufferedWriter;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
+import org.dbpedia.spotlight.parser.IDumpParser;
+import org.dbpedia.spotlight.parser.IPageSelector;
+import org.dbpedia.spotlight.parser.MappedDumpReader;
+import org.dbpedia.spotlight.parser.MappedInputStream;
+import org.dbpedia.spotlight.parser.MultistreamInputStream;
+import org.dbpedia.spotlight.parser.PageOffsetIndex;
 import org.dbpedia.spotlight.parser.WikiXMLParser;
+import org.dbpedia.spotlight.parser.WikiPage;
+import org.dbpedia.spotlight.parser.WikiXMLScanner;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xml.sax.SAXException;
@@ -51,17 +66,47 @@ public class WikipediaArticleReader {
 	private static final Logger logger = LoggerFactory
 			.getLogger(WikipediaArticleReader.class);
 
-	private WikiXMLParser wxp;
-	private BufferedWriter out;
-	
+	private IDumpParser wxp;
+	/** the xml dump, the parser is created when the parsing starts **/
+	private InputStream input;
+	private File inputFile;
+	private File outputFile;
+	/** the index of a multistream dump, decompressed in parallel **/
+	private File multistreamIndex;
+	private int decoders = 1;
+	private boolean ordered = true;
+	/** if true the dump is read by the {@link WikiXMLScanner} **/
+	private boolean byteScanner = false;
+	/** number of regions of an uncompressed dump converted in parallel **/
+	private int regions = 1;
+	private File pageIndexFile;
+	private PageOffsetIndex.IndexWriter pageIndex;
+	/** number of pages written between two checkpoints, 0 for none **/
+	private int checkpointInterval = 0;
+	private boolean resume = false;
+	/** number of threads compressing a <tt>.gz</tt> output **/
+	private int compressors = 1;
+	private CheckpointOutput output;
+	private JsonConverter converter;
+
 	private String JsonOutput;
 	private boolean JsonFile = true;
-	private ArticleParser parser;
+	private String lang;
+	private ExtractionProfile profile = ExtractionProfile.SPOTLIGHT;
 	// private JsonRecordParser<Article> encoder;
 
-	private static ProgressLogger pl = new ProgressLogger("parsed {} articles",
+	/** number of threads parsing the articles, 1 means no pipeline **/
+	private int threads = 1;
+	/** maximum number of pages waiting to be parsed **/
+	private int queueSize = DEFAULT_QUEUE_SIZE;
+	private ArticlePipeline pipeline;
+
+	public static final int DEFAULT_QUEUE_SIZE = 1000;
+
+	// not static, readers converting single pages can run concurrently
+	private ProgressLogger pl = new ProgressLogger("parsed {} articles",
 			10000);
-	private static Stopwatch sw = new Stopwatch();
+	private Stopwatch sw = new Stopwatch();
 
 	/**
 	 * Generates a converter from the xml to json dump.
@@ -100,19 +145,32 @@ public class WikipediaArticleReader {
 	 */
 	public WikipediaArticleReader(File inputFile, File outputFile, String lang) {
 		JsonFile = true;
-		JsonConverter handler = new JsonConverter();
 		// encoder = new JsonRecordParser<Article>(Article.class);
-		parser = new ArticleParser(lang);
-		try {
-			wxp = new WikiXMLParser(inputFile.getAbsolutePath(), handler);
-		} catch (Exception e) {
-			logger.error("creating the parser {}", e.toString());
-			System.exit(-1);
-		}
-
-		out = IOUtils.getPlainOrCompressedUTF8Writer(outputFile
-				.getAbsolutePath());
+		this.lang = lang;
+		this.inputFile = inputFile;
+		this.outputFile = outputFile;
+	}
 
+	/**
+	 * Generates a converter from the xml to json dump.
+	 * 
+	 * @param input
+	 *            - the xml dump (e.g., a multistream dump decompressed in
+	 *            parallel)
+	 * @param outputFile
+	 *            - the json output file, containing one article per line (if
+	 *            the filename ends with <tt>.gz </tt> the output will be
+	 *            compressed).
+	 * 
+	 * @param lang
+	 *            - the language of the dump
+	 */
+	public WikipediaArticleReader(InputStream input, File outputFile,
+			String lang) {
+		JsonFile = true;
+		this.lang = lang;
+		this.input = input;
+		this.outputFile = outputFile;
 	}
 	
 	/**
@@ -131,11 +189,11 @@ public class WikipediaArticleReader {
 	
 	public WikipediaArticleReader(String XMLInput, String lang) {
 		JsonFile = false;
-		JsonConverter handler = new JsonConverter();
 
-		parser = new ArticleParser(lang);
+		this.lang = lang;
 		try {
-			wxp = new WikiXMLParser(XMLInput, handler, JsonFile);
+			wxp = new WikiXMLParser(XMLInput, new JsonConverter(null, pl, sw),
+					JsonFile);
 		} catch (Exception e) {
 			logger.error("creating the parser {}", e.toString());
 			System.exit(-1);
@@ -143,17 +201,341 @@ public class WikipediaArticleReader {
 
 	}
 	
+	/**
+	 * Sets the number of threads parsing the articles. With more than one
+	 * thread the XML parser only reads the pages, while the parsing and the
+	 * serialization are performed by a pool of workers and the output is
+	 * written by a dedicated thread (the order of the articles in the output
+	 * is preserved).
+	 * 
+	 * @param threads
+	 *            - the number of parsing threads (default 1)
+	 */
+	public void setThreads(int threads) {
+		if (threads < 1)
+			throw new IllegalArgumentException("threads must be positive");
+		this.threads = threads;
+	}
+
+	/**
+	 * Selects the fields of the articles that are extracted and written in
+	 * the json, the other ones are not computed.
+	 * 
+	 * @param profile
+	 *            - the extraction profile (default
+	 *            {@link ExtractionProfile#SPOTLIGHT})
+	 */
+	public void setProfile(ExtractionProfile profile) {
+		this.profile = profile;
+	}
+
+	/**
+	 * Reads the dump with the {@link WikiXMLScanner}, that splits the pages
+	 * working on the bytes of the dump, instead of the SAX parser.
+	 * 
+	 * @param byteScanner
+	 *            - true to use the scanner (default false)
+	 */
+	public void setByteScanner(boolean byteScanner) {
+		this.byteScanner = byteScanner;
+	}
+
+	/**
+	 * Splits an uncompressed xml dump in regions starting at a page, and
+	 * converts each region in its own thread reading the file through memory
+	 * mapped segments ({@link MappedDumpReader}). The articles of each region
+	 * are written in a temporary part of the output, the parts are then
+	 * appended to the output file in the order of the dump. Compressed dumps
+	 * are always read by a single thread.
+	 * 
+	 * @param regions
+	 *            - the number of regions (default 1)
+	 */
+	public void setRegions(int regions) {
+		if (regions < 1)
+			throw new IllegalArgumentException("regions must be positive");
+		this.regions = regions;
+	}
+
+	/**
+	 * Writes the offsets of the pages in a {@link PageOffsetIndex} while the
+	 * dump is converted, the pages can then be extracted without reading the
+	 * whole dump (see {@link ArticleExtractor}). The offsets are known only
+	 * for uncompressed dumps read by the {@link WikiXMLScanner}, which is
+	 * then always used (multistream dumps come with their index).
+	 * 
+	 * @param pageIndexFile
+	 *            - the index to write
+	 */
+	public void setPageIndex(File pageIndexFile) {
+		this.pageIndexFile = pageIndexFile;
+	}
+
+	/**
+	 * Reads the input file as a multistream dump, decompressing its bzip2
+	 * streams in parallel (see {@link MultistreamInputStream}). Resuming a
+	 * conversion, the streams before the one containing the page of the
+	 * checkpoint are not decompressed.
+	 * 
+	 * @param index
+	 *            - the index of the multistream dump
+	 * @param decoders
+	 *            - the number of decompressing threads
+	 * @param ordered
+	 *            - true if the pages must be converted in the order of the
+	 *            dump (required by the checkpoints)
+	 */
+	public void setMultistreamIndex(File index, int decoders, boolean ordered) {
+		if (decoders < 1)
+			throw new IllegalArgumentException("decoders must be positive");
+		this.multistreamIndex = index;
+		this.decoders = decoders;
+		this.ordered = ordered;
+	}
+
+	/**
+	 * Saves a checkpoint of the conversion every given number of articles
+	 * written, in a file named as the output with the suffix
+	 * <tt>.checkpoint</tt>. At each checkpoint the output is flushed to the
+	 * disk. The checkpoint is removed when the conversion completes.
+	 * 
+	 * @param pages
+	 *            - the number of articles between two checkpoints, 0 to never
+	 *            save checkpoints (default 0)
+	 */
+	public void setCheckpointInterval(int pages) {
+		if (pages < 0)
+			throw new IllegalArgumentException(
+					"checkpoint interval must not be negative");
+		this.checkpointInterval = pages;
+	}
+
+	/**
+	 * Resumes an interrupted conversion from its last checkpoint: the output
+	 * is truncated to its length at the checkpoint, and the articles after the
+	 * one of the checkpoint are appended. Uncompressed dumps read by the
+	 * {@link WikiXMLScanner} are read from the page of the checkpoint,
+	 * multistream dumps from its bzip2 stream, the other dumps are read from
+	 * the beginning skipping the pages already converted. Without a
+	 * checkpoint the whole dump is converted.
+	 * 
+	 * @param resume
+	 *            - true to resume the conversion (default false)
+	 */
+	public void setResume(boolean resume) {
+		this.resume = resume;
+	}
+
+	/**
+	 * Sets the number of threads compressing the output, if its name ends
+	 * with <tt>.gz</tt>. The output is compressed in independent blocks (see
+	 * {@link ParallelGzipOutputStream}).
+	 * 
+	 * @param compressors
+	 *            - the number of compressing threads (default 1)
+	 */
+	public void setCompressors(int compressors) {
+		if (compressors < 1)
+			throw new IllegalArgumentException("compressors must be positive");
+		this.compressors = compressors;
+	}
+
+	/**
+	 * Sets the maximum number of pages read from the dump and waiting to be
+	 * parsed, used only if the number of threads is greater than one.
+	 * 
+	 * @param queueSize
+	 *            - the size of the queue (default {@value #DEFAULT_QUEUE_SIZE})
+	 */
+	public void setQueueSize(int queueSize) {
+		if (queueSize < 1)
+			throw new IllegalArgumentException("queue size must be positive");
+		this.queueSize = queueSize;
+	}
+
 	/**
 	 * Starts the parsing
 	 */
 	public void start() throws IOException, SAXException {
+		if (JsonFile && regions > 1 && isPlainXml()) {
+			if (resume) {
+				logger.warn("resuming the conversion in a single region");
+			} else {
+				if (checkpointInterval > 0)
+					logger.warn("checkpoints are not saved converting regions");
+				openPageIndex();
+				convertRegions();
+				closePageIndex();
+				return;
+			}
+		}
+		if (JsonFile)
+			open();
+		if (JsonFile && threads > 1)
+			pipeline = new ArticlePipeline(lang, profile, threads, queueSize,
+					output);
 
 		wxp.parse();
-		if (JsonFile)
-			out.close();
+		if (pipeline != null) {
+			try {
+				pipeline.close();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("interrupted waiting for the parsers", e);
+			}
+		}
+		if (JsonFile) {
+			if (converter.resumeFrom != null)
+				throw new IOException("page " + converter.resumeFrom.getPageId()
+						+ " of the checkpoint not found in the dump");
+			output.close();
+		}
+		closePageIndex();
 		logger.info(sw.stat("articles"));
 	}
 
+	private boolean isPlainXml() {
+		return inputFile != null && inputFile.getName().endsWith(".xml");
+	}
+
+	/**
+	 * Opens the output (truncated to the checkpoint if the conversion is
+	 * resumed) and creates the parser of the dump.
+	 */
+	private void open() throws IOException, SAXException {
+		Checkpoint checkpoint = null;
+		if (resume) {
+			checkpoint = Checkpoint.load(Checkpoint.getFile(outputFile));
+			if (checkpoint == null)
+				logger.info("no checkpoint for {}, converting the whole dump",
+						outputFile);
+			else
+				logger.info("resuming the conversion after {}", checkpoint);
+		}
+		if (checkpoint != null && !ordered)
+			throw new IOException(
+					"a conversion can be resumed only reading the pages in order");
+		if (checkpoint != null && pageIndexFile != null)
+			logger.warn("the page index is not written resuming a conversion");
+		else
+			openPageIndex();
+		int interval = checkpointInterval;
+		if (interval > 0 && !ordered) {
+			logger.warn("checkpoints require the pages in the order of the dump");
+			interval = 0;
+		}
+		output = new CheckpointOutput(outputFile, checkpoint, interval,
+				compressors);
+		converter = new JsonConverter(output.getStream(), pl, sw);
+		converter.output = output;
+		converter.resumeFrom = checkpoint;
+		wxp = createParser(converter, checkpoint);
+	}
+
+	private IDumpParser createParser(JsonConverter handler,
+			Checkpoint checkpoint) throws IOException, SAXException {
+		if (input == null && multistreamIndex != null) {
+			MultistreamInputStream multistream = new MultistreamInputStream(
+					inputFile, multistreamIndex, decoders, ordered);
+			if (checkpoint != null) {
+				List<PageOffsetIndex.Entry> entries = new PageOffsetIndex(
+						multistreamIndex).lookup(
+						Collections.singleton(checkpoint.getPageId()),
+						Collections.<String> emptySet());
+				if (entries.isEmpty())
+					logger.warn("page {} not in the index, reading the whole dump",
+							checkpoint.getPageId());
+				else
+					multistream.skipTo(entries.get(0).getOffset());
+			}
+			input = multistream;
+		} else if (input == null && checkpoint != null
+				&& checkpoint.getInputOffset() >= 0 && isPlainXml()) {
+			// the scanner starts from the page of the checkpoint
+			long offset = checkpoint.getInputOffset();
+			Siteinfo siteinfo = new MappedDumpReader(inputFile, 1)
+					.getSiteinfo();
+			WikiXMLScanner scanner = new WikiXMLScanner(new MappedInputStream(
+					inputFile, offset, inputFile.length()), handler, siteinfo);
+			scanner.setBaseOffset(offset);
+			return scanner;
+		} else if (input == null) {
+			input = WikiXMLParser.getInputStream(inputFile.getAbsolutePath());
+		}
+		if (byteScanner)
+			return new WikiXMLScanner(input, handler);
+		return new WikiXMLParser(input, handler);
+	}
+
+	private void openPageIndex() throws IOException {
+		if (pageIndexFile == null)
+			return;
+		if (isPlainXml()) {
+			pageIndex = new PageOffsetIndex.IndexWriter(pageIndexFile);
+			byteScanner = true;
+		} else {
+			logger.warn("the page index can be built only for uncompressed xml dumps");
+		}
+	}
+
+	private void closePageIndex() throws IOException {
+		if (pageIndex != null)
+			pageIndex.close();
+	}
+
+	private void convertRegions() throws IOException, SAXException {
+		MappedDumpReader reader = new MappedDumpReader(inputFile, regions);
+		List<JsonConverter> converters = new ArrayList<JsonConverter>();
+		List<File> parts = new ArrayList<File>();
+		for (int i = 0; i < reader.getRegions(); i++) {
+			File part = getPartFile(i);
+			parts.add(part);
+			converters.add(new JsonConverter(openPart(part),
+					new ProgressLogger("region " + i + ": parsed {} articles",
+							10000), new Stopwatch()));
+		}
+		logger.info("converting {} regions of {}", reader.getRegions(),
+				inputFile);
+		reader.parse(converters);
+		for (JsonConverter converter : converters) {
+			converter.out.close();
+			logger.info(converter.sw.stat("articles"));
+		}
+
+		// gzip members can be concatenated, the empty block ending each part
+		// is skipped by the readers of the blocks
+		OutputStream os = new FileOutputStream(outputFile);
+		try {
+			for (File part : parts) {
+				Files.copy(part.toPath(), os);
+				part.delete();
+			}
+		} finally {
+			os.close();
+		}
+	}
+
+	private OutputStream openPart(File part) throws IOException {
+		OutputStream os = new BufferedOutputStream(new FileOutputStream(part),
+				1 << 16);
+		if (part.getName().endsWith(".gz"))
+			// the regions are compressed at the same time
+			os = new ParallelGzipOutputStream(os, Math.max(1, compressors
+					/ regions));
+		return os;
+	}
+
+	private File getPartFile(int region) {
+		String name = outputFile.getName();
+		String suffix = "";
+		if (name.endsWith(".gz")) {
+			name = name.substring(0, name.length() - 3);
+			suffix = ".gz";
+		}
+		return new File(outputFile.getAbsoluteFile().getParentFile(), name
+				+ ".part" + region + suffix);
+	}
+
 	public String getJsonOutput() {
 		return JsonOutput;
 	}
@@ -162,57 +544,164 @@ public class WikipediaArticleReader {
 		JsonOutput = jsonOutput;
 	}
 
-	private class JsonConverter implements IArticleFilter {
-		public void process(WikiArticle page, Siteinfo si) {
+	/**
+	 * Converts a single page of the dump.
+	 * 
+	 * @param page
+	 *            - the page read from the dump
+	 * @param lang
+	 *            - the language of the dump
+	 * @return the parsed article
+	 */
+	public static Article parseArticle(WikiArticle page, String lang) {
+		return parseArticle(page, lang, ExtractionProfile.SPOTLIGHT);
+	}
+
+	/**
+	 * Converts a single page of the dump.
+	 * 
+	 * @param page
+	 *            - the page read from the dump
+	 * @param lang
+	 *            - the language of the dump
+	 * @param profile
+	 *            - the fields of the article to extract
+	 * @return the parsed article
+	 */
+	public static Article parseArticle(WikiArticle page, String lang,
+			ExtractionProfile profile) {
+		Article article = newArticle(page, getType(page));
+		ArticleParserPool.getParser(lang, profile).parse(article,
+				page.getText());
+		return article;
+	}
+
+	/**
+	 * @return the offset of the page in the dump, -1 if unknown
+	 */
+	static long getOffset(WikiArticle page) {
+		if (page instanceof WikiPage)
+			return ((WikiPage) page).getOffset();
+		return -1;
+	}
+
+	static Type getType(WikiArticle page) {
+		Type type = Type.UNKNOWN;
+		if (page.isCategory())
+			type = Type.CATEGORY;
+		if (page.isTemplate())
+			type = Type.TEMPLATE;
+		if (page.isProject())
+			type = Type.PROJECT;
+		if (page.isFile())
+			type = Type.FILE;
+		if (page.isMain())
+			type = Type.ARTICLE;
+		return type;
+	}
+
+	/**
+	 * Creates the article for a page of the dump, the content of the article
+	 * still has to be parsed.
+	 */
+	static Article newArticle(WikiArticle page, Type type) {
+		Article article = new Article();
+		article.setTitle(page.getTitle());
+		article.setWikiId(Integer.parseInt(page.getId()));
+		article.setNamespace(page.getNamespace());
+		article.setIntegerNamespace(page.getIntegerNamespace());
+		//article.setTimestamp(page.getTimeStamp());
+		article.setType(type);
+		return article;
+	}
+
+	private class JsonConverter implements IArticleFilter, IPageSelector {
+		private final OutputStream out;
+		/** the json of the article being written **/
+		private final Utf8Buffer buffer = new Utf8Buffer();
+		private final ProgressLogger pl;
+		private final Stopwatch sw;
+		/** saves the checkpoints, null if the converter has no checkpoints **/
+		private CheckpointOutput output;
+		/** the checkpoint to resume, null once its page is read **/
+		private Checkpoint resumeFrom;
+		private WikiArticle lastSelected;
+		private boolean skipping = false;
+		/** pages read from the dump **/
+		private long pages = 0;
+
+		JsonConverter(OutputStream out, ProgressLogger pl, Stopwatch sw) {
+			this.out = out;
+			this.pl = pl;
+			this.sw = sw;
+		}
+
+		/**
+		 * Templates, project pages and files are discarded before their text
+		 * is read, as the pages already converted resuming a conversion.
+		 */
+		public boolean select(WikiArticle page, Siteinfo si) {
+			if (page != lastSelected) {
+				// called for each revision of the page
+				lastSelected = page;
+				pages++;
+				skipping = resumeFrom != null;
+				if (skipping && page.getId().equals(resumeFrom.getPageId())) {
+					pages = resumeFrom.getPages();
+					resumeFrom = null;
+				}
+				if (pageIndex != null) {
+					try {
+						pageIndex.add((WikiPage) page);
+					} catch (IOException e) {
+						logger.error("writing the page index {}", e.toString());
+						System.exit(-1);
+					}
+				}
+			}
+			if (skipping)
+				return false;
+			return !(page.isTemplate() || page.isProject() || page.isFile());
+		}
+
+		public void process(WikiArticle page, Siteinfo si) throws SAXException {
 			pl.up();
 			sw.start("articles");
-			String title = page.getTitle();
-			String id = page.getId();
-			String namespace = page.getNamespace();
-			Integer integerNamespace = page.getIntegerNamespace();
-			//String timestamp = page.getTimeStamp();
-
-			Type type = Type.UNKNOWN;
-			if (page.isCategory())
-				type = Type.CATEGORY;
-			if (page.isTemplate()) {
-				type = Type.TEMPLATE;
-				// FIXME just to go fast;
-				sw.stop("articles");
-				return;
-			}
 
-			if (page.isProject()) {
-				type = Type.PROJECT;
+			Type type = getType(page);
+			if (type == Type.TEMPLATE || type == Type.PROJECT
+					|| type == Type.FILE) {
 				// FIXME just to go fast;
 				sw.stop("articles");
 				return;
 			}
-			if (page.isFile()) {
-				type = Type.FILE;
-				// FIXME just to go fast;
+
+			if (pipeline != null) {
+				try {
+					pipeline.submit(page, type, pages);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new SAXException("interrupted submitting "
+							+ page.getTitle(), e);
+				}
 				sw.stop("articles");
 				return;
 			}
-			if (page.isMain())
-				type = Type.ARTICLE;
-
-			Article article = new Article();
-			article.setTitle(title);
-			article.setWikiId(Integer.parseInt(id));
-			article.setNamespace(namespace);
-			article.setIntegerNamespace(integerNamespace);
-			//article.setTimestamp(timestamp);
-			article.setType(type);
-			parser.parse(article, page.getText());
+
+			Article article = parseArticle(page, lang, profile);
 
 			try {
 				if (JsonFile){
-					out.write(article.toJson());
-					out.write("\n");
+					buffer.reset();
+					article.writeJson(buffer, profile);
+					buffer.write('\n');
+					buffer.writeTo(out);
+					if (output != null)
+						output.pageWritten(page.getId(), getOffset(page),
+								pages);
 				}
 				else
-					setJsonOutput(article.toJson());
+					setJsonOutput(article.toJson(profile));
 			} catch (IOException e) {
 				logger.error("writing the output file {}", e.toString());
 				System.exit(-1);
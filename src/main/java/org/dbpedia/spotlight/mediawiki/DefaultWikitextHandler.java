@@ -0,0 +1,55 @@
+/**
+ *  Copyright 2015 DBpedia Spotlight
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.dbpedia.spotlight.mediawiki;
+
+import java.util.List;
+
+/**
+ * A {@link WikitextHandler} ignoring all the events, to override only the
+ * ones of interest.
+ */
+public class DefaultWikitextHandler implements WikitextHandler {
+
+	public void onTemplate(String name, List<String> parameters) {
+	}
+
+	public void onCategory(String target, String text) {
+	}
+
+	public void onLanguageLink(String target, String text) {
+	}
+
+	public void onSectionStart(String title, int level) {
+	}
+
+	public void onParagraph(String text) {
+	}
+
+	public void onInternalLink(String target, String text, int start, int end) {
+	}
+
+	public void onDefinitionList(String term, List<String> definitions) {
+	}
+
+	public void onNestedList(List<String> items) {
+	}
+
+	public void onTableStart(String title) {
+	}
+
+	public void onTableCell(int row, int col, String text) {
+	}
+}
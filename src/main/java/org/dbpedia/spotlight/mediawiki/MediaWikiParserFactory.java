@@ -270,20 +270,22 @@ public class MediaWikiParserFactory {
 					calculateSrcSpans,
 					null );
 
-			StringBuilder sb = new StringBuilder();
-			sb.append( lineSeparator + "languageIdentifers: ");
-			for( String s: languageIdentifers ) {
-				sb.append( s + " ");
-			}
-			sb.append( lineSeparator + "categoryIdentifers: ");
-			for( String s: categoryIdentifers ) {
-				sb.append( s + " ");
-			}
-			sb.append( lineSeparator + "imageIdentifers: ");
-			for( String s: imageIdentifers ) {
-				sb.append( s + " ");
+			if( logger.isDebugEnabled() ){
+				StringBuilder sb = new StringBuilder();
+				sb.append( lineSeparator + "languageIdentifers: ");
+				for( String s: languageIdentifers ) {
+					sb.append( s + " ");
+				}
+				sb.append( lineSeparator + "categoryIdentifers: ");
+				for( String s: categoryIdentifers ) {
+					sb.append( s + " ");
+				}
+				sb.append( lineSeparator + "imageIdentifers: ");
+				for( String s: imageIdentifers ) {
+					sb.append( s + " ");
+				}
+				logger.debug( sb.toString() );
 			}
-			logger.debug( sb.toString() );
 
 			MediaWikiTemplateParser mwtp;
 
@@ -12,8 +12,13 @@ package org.dbpedia.spotlight.mediawiki;
 
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 import java.util.Stack;
 
 import org.apache.commons.logging.Log;
@@ -23,9 +28,11 @@ import de.tudarmstadt.ukp.wikipedia.parser.*;
 import de.tudarmstadt.ukp.wikipedia.parser.Content.FormatType;
 import de.tudarmstadt.ukp.wikipedia.parser.mediawiki.MediaWikiTemplateParser;
 import de.tudarmstadt.ukp.wikipedia.parser.mediawiki.ResolvedTemplate;
-import de.tudarmstadt.ukp.wikipedia.parser.mediawiki.SpanManager;
 import de.tudarmstadt.ukp.wikipedia.parser.mediawiki.SrcPosRangeChecker;
 
+import org.dbpedia.spotlight.mediawiki.WikitextLexer.Edits;
+import org.dbpedia.spotlight.mediawiki.WikitextLexer.Token;
+
 
 /**
  * This is a Parser for MediaWiki Source.<br/>
@@ -35,7 +42,7 @@ import de.tudarmstadt.ukp.wikipedia.parser.mediawiki.SrcPosRangeChecker;
  * @author CJacobi
  *
  */
-public class ModularParser implements MediaWikiParser,
+public class ModularParser implements WikitextParser,
 		MediaWikiContentElementParser
 {
 
@@ -46,6 +53,10 @@ public class ModularParser implements MediaWikiParser,
 	private List<String> categoryIdentifers;
 	private List<String> languageIdentifers;
 	private List<String> imageIdentifers;
+	// the identifers looked up for each link
+	private Set<String> categoryIdentiferSet;
+	private Set<String> languageIdentiferSet;
+	private Set<String> imageIdentiferSet;
 	private MediaWikiTemplateParser templateParser;
 	private boolean showImageText = false;
 	private boolean deleteTags = true;
@@ -103,7 +114,7 @@ public class ModularParser implements MediaWikiParser,
 	 */
 	public List<String> getLanguageIdentifers()
 	{
-		return languageIdentifers;
+		return Collections.unmodifiableList(languageIdentifers);
 	}
 
 	/**
@@ -112,6 +123,7 @@ public class ModularParser implements MediaWikiParser,
 	public void setLanguageIdentifers(List<String> languageIdentifers)
 	{
 		this.languageIdentifers = listToLowerCase(languageIdentifers);
+		this.languageIdentiferSet = new HashSet<String>(this.languageIdentifers);
 	}
 
 	/**
@@ -119,7 +131,7 @@ public class ModularParser implements MediaWikiParser,
 	 */
 	public List<String> getCategoryIdentifers()
 	{
-		return categoryIdentifers;
+		return Collections.unmodifiableList(categoryIdentifers);
 	}
 
 	/**
@@ -128,6 +140,7 @@ public class ModularParser implements MediaWikiParser,
 	public void setCategoryIdentifers(List<String> categoryIdentifers)
 	{
 		this.categoryIdentifers = listToLowerCase(categoryIdentifers);
+		this.categoryIdentiferSet = new HashSet<String>(this.categoryIdentifers);
 	}
 
 	/**
@@ -135,7 +148,7 @@ public class ModularParser implements MediaWikiParser,
 	 */
 	public List<String> getImageIdentifers()
 	{
-		return imageIdentifers;
+		return Collections.unmodifiableList(imageIdentifers);
 	}
 
 	/**
@@ -144,6 +157,7 @@ public class ModularParser implements MediaWikiParser,
 	public void setImageIdentifers(List<String> imageIdentifers)
 	{
 		this.imageIdentifers = listToLowerCase(imageIdentifers);
+		this.imageIdentiferSet = new HashSet<String>(this.imageIdentifers);
 	}
 
 	/**
@@ -330,6 +344,29 @@ public class ModularParser implements MediaWikiParser,
 	@Override
 	public ParsedPage parse(String src)
 	{
+		return parsePage(src, null);
+	}
+
+	/**
+	 * Look at the WikitextParser for a description...
+	 */
+	@Override
+	public boolean parse(String src, WikitextHandler handler)
+	{
+		return parsePage(src, handler) != null;
+	}
+
+	/**
+	 * Parses the source, building the sections of the ParsedPage or, if the
+	 * handler is not null, reporting the content to the handler (the
+	 * ParsedPage is then left empty).
+	 */
+	private ParsedPage parsePage(String src, WikitextHandler handler)
+	{
+		// the last template belongs to the page parsed before, the parser
+		// is reused for many pages.
+		lastTemplate = null;
+
 		// check if the configuration is runnable.
 		if (!runConfig())
 		{
@@ -345,12 +382,20 @@ public class ModularParser implements MediaWikiParser,
 
 		// creates a new span manager with the given source, appending a newline
 		// to avoid errors.
-		SpanManager sm = new SpanManager(src.replace('\t', ' ') + lineSeparator);
+		src = src.replace('\t', ' ') + lineSeparator;
+		SpanManager sm = new SpanManager(src);
 		if (calculateSrcSpans)
 		{
 			sm.enableSrcPosCalculation();
 		}
 
+		// the markup searched by the stages before the templates are
+		// replaced, found in a single pass over the source
+		WikitextLexer lexer = new WikitextLexer(src, EnumSet.of(
+				Token.COMMENT_OPEN, Token.COMMENT_CLOSE, Token.TOC,
+				Token.NOTOC, Token.TAG_OPEN, Token.TAG_CLOSE, Token.BRACE_OPEN,
+				Token.BRACE_CLOSE));
+
 		// Creating a new ParsePage, which will be filled with information in
 		// the parseing process.
 		ParsedPage ppResult = new ParsedPage();
@@ -359,16 +404,18 @@ public class ModularParser implements MediaWikiParser,
 		ContentElementParsingParameters cepp = new ContentElementParsingParameters();
 
 		// Deletes comments out of the Source
-		deleteComments(sm);
+		List<Integer> joints = deleteComments(sm, lexer);
 
 		// Deletes any TOC Tags, these are not usesd in this parser.
-		deleteTOCTag(sm);
+		deleteTOCTag(sm, lexer, joints);
 
 		// Removing the Content which should not parsed but integrated later in
 		// the resulting text
 		sm.manageList(cepp.noWikiSpans);
-		parseSpecifiedTag(sm, cepp.noWikiSpans, cepp.noWikiStrings, "PRE", " ");
-		parseSpecifiedTag(sm, cepp.noWikiSpans, cepp.noWikiStrings, "NOWIKI");
+		parseSpecifiedTag(sm, lexer, cepp.noWikiSpans, cepp.noWikiStrings,
+				"PRE", " ");
+		parseSpecifiedTag(sm, lexer, cepp.noWikiSpans, cepp.noWikiStrings,
+				"NOWIKI");
 		if (cepp.noWikiSpans.size() == 0)
 		{
 			sm.removeManagedList(cepp.noWikiSpans);
@@ -376,7 +423,7 @@ public class ModularParser implements MediaWikiParser,
 
 		// Parseing the Math Tags...
 		sm.manageList(cepp.mathSpans);
-		parseSpecifiedTag(sm, cepp.mathSpans, cepp.mathStrings, "MATH");
+		parseSpecifiedTag(sm, lexer, cepp.mathSpans, cepp.mathStrings, "MATH");
 		if (cepp.mathSpans.size() == 0)
 		{
 			sm.removeManagedList(cepp.mathSpans);
@@ -384,7 +431,8 @@ public class ModularParser implements MediaWikiParser,
 
 		// Parseing the Templates (the Span List will be added to the managed
 		// lists by the function)
-		parseTemplates(sm, cepp.templateSpans, cepp.templates, ppResult);
+		parseTemplates(sm, lexer, cepp.templateSpans, cepp.templates,
+				ppResult);
 
 		//Deleting Templates from the Media Text. To get the plain text.
 		
@@ -393,30 +441,75 @@ public class ModularParser implements MediaWikiParser,
 		}
 		
 		sm.removeManagedList(cepp.templateSpans);
+
+		// the templates were resolved from the last one
+		if (handler != null)
+		{
+			for (int i = cepp.templates.size() - 1; i >= 0; i--)
+			{
+				Template t = cepp.templates.get(i).getTemplate();
+				handler.onTemplate(t.getName(), t.getParameters());
+			}
+		}
+
+		// the templates were replaced from right to left, so the markup
+		// searched by the next stages is found with a new pass over the source
+		lexer = new WikitextLexer(sm, EnumSet.of(Token.TAG_OPEN,
+				Token.TAG_CLOSE, Token.BRACKET_OPEN, Token.BRACKET_CLOSE));
+
 		// Parsing all other Tags
-		parseTags(sm, cepp.tagSpans);
+		parseTags(sm, lexer, cepp.tagSpans);
 
 		// Converting &lt;gallery>s to normal Images, this is not beautiful, but
 		// a simple solution..
-		convertGalleriesToImages(sm, cepp.tagSpans);
+		if (convertGalleriesToImages(sm, cepp.tagSpans))
+		{
+			lexer = new WikitextLexer(sm, EnumSet.of(Token.BRACKET_OPEN,
+					Token.BRACKET_CLOSE));
+		}
 		// Parsing Links and Images.
-		parseImagesAndInternalLinks(sm, cepp.linkSpans, cepp.links);
+		parseImagesAndInternalLinks(sm, lexer, cepp.linkSpans, cepp.links);
 		// Creating a list of Line Spans to work with lines in the following
 		// functions
 		LinkedList<Span> lineSpans = new LinkedList<Span>();
 		getLineSpans(sm, lineSpans);
 		// Removing the Category Links from the Links list, and crating an
 		// ContentElement for these links...
-		ppResult.setCategoryElement(getSpecialLinks(sm, cepp.linkSpans,
-				cepp.links, " - ", categoryIdentifers));
+		ContentElement categories = getSpecialLinks(sm, cepp.linkSpans,
+				cepp.links, " - ", categoryIdentiferSet);
 		// Removing the Language Links from the Links list, and crating an
 		// ContentElement for these links...
-		ppResult.setLanguagesElement(getSpecialLinks(sm, cepp.linkSpans,
-				cepp.links, " - ", languageIdentifers));
+		ContentElement languages = getSpecialLinks(sm, cepp.linkSpans,
+				cepp.links, " - ", languageIdentiferSet);
+		if (handler != null)
+		{
+			// the special links are collected from the last one
+			List<Link> links = categories == null ? Collections
+					.<Link> emptyList() : categories.getLinks();
+			for (int i = links.size() - 1; i >= 0; i--)
+			{
+				handler.onCategory(links.get(i).getTarget(), links.get(i)
+						.getText());
+			}
+			links = languages == null ? Collections.<Link> emptyList()
+					: languages.getLinks();
+			for (int i = links.size() - 1; i >= 0; i--)
+			{
+				handler.onLanguageLink(links.get(i).getTarget(), links.get(i)
+						.getText());
+			}
+			// the elements are reported while they are parsed, and the
+			// sections are not built
+			parseSections(sm, cepp, lineSpans, handler);
+			return ppResult;
+		}
+		ppResult.setCategoryElement(categories);
+		ppResult.setLanguagesElement(languages);
 		// Parsing and Setting the Sections... the main work is done in parse
 		// sections!
 		ppResult.setSections(EmptyStructureRemover
-				.eliminateEmptyStructures(parseSections(sm, cepp, lineSpans)));
+				.eliminateEmptyStructures(parseSections(sm, cepp, lineSpans,
+						null)));
 		// Finding and Setting the paragraph which is concidered as the "First"
 		setFirstParagraph(ppResult);
 		// check the calculated source positions, and reset them if necessary.
@@ -433,14 +526,24 @@ public class ModularParser implements MediaWikiParser,
 	/**
 	 * Deleting all comments out of the SpanManager...<br/>
 	 * &lt!-- COMMENT -->
+	 * @return the offsets of the deleted comments in the SpanManager
 	 */
-	private void deleteComments(SpanManager sm)
+	private List<Integer> deleteComments(SpanManager sm, WikitextLexer lexer)
 	{
-		int start = 0;
-		while ((start = sm.indexOf("<!--", start)) != -1)
-		{
-			int end = sm.indexOf("-->", start + 4) + 3;
-			if (end == -1 + 3)
+		// the comments are deleted from left to right: the source after the
+		// last deleted comment is the one tokenized, moved back by the
+		// characters deleted so far
+		Edits deleted = new Edits();
+		List<Integer> joints = new ArrayList<Integer>();
+		int shift = 0;
+		int from = 0;
+		int open;
+		while ((open = lexer.indexOf(Token.COMMENT_OPEN, from)) != -1)
+		{
+			int start = open - shift;
+			int close = lexer.indexOf(Token.COMMENT_CLOSE, open + 4);
+			int end = close - shift + 3;
+			if (close == -1)
 			{
 				end = sm.length();
 			}
@@ -460,54 +563,146 @@ public class ModularParser implements MediaWikiParser,
 			{}
 
 			sm.delete(start, end);
+			from = end + shift;
+			deleted.add(open, from, 0);
+			joints.add(start);
+			shift += end - start;
 		}
+		lexer.remap(deleted);
+		return joints;
 	}
 
 	/**
 	 * Deleteing ALL TOC Tags
 	 */
-	private void deleteTOCTag(SpanManager sm)
+	private void deleteTOCTag(SpanManager sm, WikitextLexer lexer,
+			List<Integer> comments)
 	{
+		// a tag joined by the deletion of a comment (e.g.,
+		// __NO<!-- -->TOC__) is not a token of the lexer, the SpanManager is
+		// searched instead
+		boolean search = joinsToken(sm, comments, Token.TOC)
+				|| joinsToken(sm, comments, Token.NOTOC);
+
 		// delete all __TOC__ from SRC
+		List<Integer> tocs = deleteToken(sm, lexer, Token.TOC, search);
+
+		// delete all __NOTOC__ from SRC, also the ones joined by the deletion
+		// of a __TOC__ (e.g., __NO__TOC__TOC__)
+		deleteToken(sm, lexer, Token.NOTOC, search
+				|| joinsToken(sm, tocs, Token.NOTOC));
+	}
+
+	/**
+	 * Deletes all the tokens of a kind, from left to right.
+	 * @param search
+	 *            - if true the tokens are searched in the SpanManager, not
+	 *            in the lexer
+	 * @return the offsets of the deleted tokens in the SpanManager
+	 */
+	private List<Integer> deleteToken(SpanManager sm, WikitextLexer lexer,
+			Token t, boolean search)
+	{
+		final int length = t.getText().length();
+		Edits deleted = new Edits();
+		List<Integer> joints = new ArrayList<Integer>();
+		int shift = 0;
 		int temp = 0;
-		while ((temp = sm.indexOf("__TOC__", temp)) != -1)
+		while (true)
 		{
-			sm.delete(temp, temp + 2 + 3 + 2);
+			if (search)
+			{
+				temp = sm.indexOf(t.getText(), temp);
+			}
+			else if ((temp = lexer.indexOf(t, temp + shift)) != -1)
+			{
+				temp -= shift;
+			}
+			if (temp == -1)
+			{
+				break;
+			}
+			sm.delete(temp, temp + length);
+			deleted.add(temp + shift, temp + shift + length, 0);
+			joints.add(temp);
+			shift += length;
 		}
+		lexer.remap(deleted);
+		return joints;
+	}
 
-		// delete all __NOTOC__ from SRC
-		temp = 0;
-		while ((temp = sm.indexOf("__NOTOC__", temp)) != -1)
+	/**
+	 * @return true if the SpanManager has a token of the kind across one of
+	 *         the offsets, where its parts were joined by a deletion
+	 */
+	private static boolean joinsToken(SpanManager sm, List<Integer> offsets,
+			Token t)
+	{
+		final int length = t.getText().length();
+		for (int offset : offsets)
 		{
-			sm.delete(temp, temp + 2 + 5 + 2);
+			for (int i = Math.max(0, offset - length + 1); i < offset; i++)
+			{
+				if (WikitextLexer.isAt(sm, i, t))
+				{
+					return true;
+				}
+			}
 		}
+		return false;
 	}
 
 	private ContentElement getSpecialLinks(SpanManager sm,
 			List<Span> linkSpans, List<Link> links, String linkSpacer,
-			List<String> identifers)
+			Set<String> identifers)
 	{
-		ContentElement result = new ContentElement();
-		StringBuilder text = new StringBuilder();
-		List<Link> localLinks = new ArrayList<Link>();
-
-		for (int i = links.size() - 1; i >= 0; i--)
+		// moves the special links out of the lists in a single pass, keeping
+		// the order of the others
+		List<Span> specialSpans = new ArrayList<Span>();
+		List<Link> specialLinks = new ArrayList<Link>();
+		int kept = 0;
+		for (int i = 0; i < links.size(); i++)
 		{
 			String identifer = getLinkNameSpace(links.get(i).getTarget());
 
-			if (identifer != null && identifers.indexOf(identifer) != -1)
+			if (identifer != null && identifers.contains(identifer))
 			{
-				Link l = links.remove(i);
-				Span s = linkSpans.remove(i);
-				String linkText = sm.substring(s);
-				sm.delete(s);
-				l.setHomeElement(result);
-				s.adjust(-s.getStart() + text.length());
-				text.append(linkText + linkSpacer);
-				localLinks.add(l);
-				//TODO add type?
+				specialSpans.add(linkSpans.get(i));
+				specialLinks.add(links.get(i));
 			}
+			else
+			{
+				linkSpans.set(kept, linkSpans.get(i));
+				links.set(kept++, links.get(i));
+			}
+		}
+		if (specialLinks.isEmpty())
+		{
+			return null;
 		}
+		linkSpans.subList(kept, linkSpans.size()).clear();
+		links.subList(kept, links.size()).clear();
+
+		ContentElement result = new ContentElement();
+		StringBuilder text = new StringBuilder();
+		List<Link> localLinks = new ArrayList<Link>();
+
+		// the special links are deleted from the last one, and the ones not
+		// deleted yet are moved by the deletions
+		sm.manageList(specialSpans);
+		for (int i = specialLinks.size() - 1; i >= 0; i--)
+		{
+			Link l = specialLinks.get(i);
+			Span s = specialSpans.remove(i);
+			String linkText = sm.substring(s);
+			sm.delete(s);
+			l.setHomeElement(result);
+			s.adjust(-s.getStart() + text.length());
+			text.append(linkText + linkSpacer);
+			localLinks.add(l);
+			//TODO add type?
+		}
+		sm.removeManagedList(specialSpans);
 
 		int len = text.length();
 		if (len != 0)
@@ -552,8 +747,13 @@ public class ModularParser implements MediaWikiParser,
 		}
 	}
 
+	/**
+	 * Parses the lines in sections or, if the handler is not null, reports
+	 * the elements of the lines to the handler and returns null.
+	 */
 	private SectionContainer parseSections(SpanManager sm,
-			ContentElementParsingParameters cepp, LinkedList<Span> lineSpans)
+			ContentElementParsingParameters cepp, LinkedList<Span> lineSpans,
+			WikitextHandler handler)
 	{
 
 		List<SectionContent> contentSections = new ArrayList<SectionContent>();
@@ -582,12 +782,17 @@ public class ModularParser implements MediaWikiParser,
 			switch (t)
 			{
 			case SECTION:
-				contentSections.add(sc);
 				int level = getSectionLevel(sm, s);
-				sc = new SectionContent(parseContentElement(sm, cepp, new Span(
-						s.getStart() + level, s.getEnd() - level).trim(sm)),
-						level);
+				ContentElement title = parseContentElement(sm, cepp, new Span(
+						s.getStart() + level, s.getEnd() - level).trim(sm));
 				lineSpans.removeFirst();
+				if (handler != null)
+				{
+					handler.onSectionStart(title.getText(), level);
+					break;
+				}
+				contentSections.add(sc);
+				sc = new SectionContent(title, level);
 
 				if (calculateSrcSpans)
 				{
@@ -603,20 +808,52 @@ public class ModularParser implements MediaWikiParser,
 			case PARAGRAPH:
 			case PARAGRAPH_BOXED:
 			case PARAGRAPH_INDENTED:
-				sc.addParagraph(buildParagraph(sm, cepp, lineSpans, t));
+				Paragraph p = buildParagraph(sm, cepp, lineSpans, t);
+				if (handler == null)
+				{
+					sc.addParagraph(p);
+				}
+				else
+				{
+					report(p, handler);
+				}
 				break;
 
 			case NESTEDLIST:
 			case NESTEDLIST_NR:
-				sc.addNestedList(buildNestedList(sm, cepp, lineSpans, t));
+				NestedListContainer nl = buildNestedList(sm, cepp, lineSpans, t);
+				if (handler == null)
+				{
+					sc.addNestedList(nl);
+				}
+				else
+				{
+					report(nl, handler);
+				}
 				break;
 
 			case DEFINITIONLIST:
-				sc.addDefinitionList(buildDefinitionList(sm, cepp, lineSpans));
+				DefinitionList dl = buildDefinitionList(sm, cepp, lineSpans);
+				if (handler == null)
+				{
+					sc.addDefinitionList(dl);
+				}
+				else
+				{
+					report(dl, handler);
+				}
 				break;
 
 			case TABLE:
-				sc.addTable(buildTable(sm, cepp, lineSpans));
+				Table table = buildTable(sm, cepp, lineSpans);
+				if (handler == null)
+				{
+					sc.addTable(table);
+				}
+				else
+				{
+					report(table, handler);
+				}
 				break;
 
 			case EMPTYLINE:
@@ -629,12 +866,87 @@ public class ModularParser implements MediaWikiParser,
 			}
 		}
 
+		if (handler != null)
+		{
+			return null;
+		}
+
 		// add the remaining Section to the list.
 		contentSections.add(sc);
 
 		return buildSectionStructure(contentSections);
 	}
 
+	/*
+	 * The elements are reported to the handler if the EmptyStructureRemover
+	 * would keep them in the ParsedPage.
+	 */
+
+	private void report(Paragraph p, WikitextHandler handler)
+	{
+		if (p.empty())
+		{
+			return;
+		}
+		handler.onParagraph(p.getText());
+		for (Link l : p.getLinks())
+		{
+			if (l.getType() == Link.type.INTERNAL)
+			{
+				handler.onInternalLink(l.getTarget(), l.getText(), l.getPos()
+						.getStart(), l.getPos().getEnd());
+			}
+		}
+	}
+
+	private void report(NestedListContainer nl, WikitextHandler handler)
+	{
+		EmptyStructureRemover.eliminateEmptyStructures(nl);
+		if (nl.empty())
+		{
+			return;
+		}
+		List<String> items = new ArrayList<String>(nl.size());
+		for (NestedList item : nl.getNestedLists())
+		{
+			items.add(item.getText());
+		}
+		handler.onNestedList(items);
+	}
+
+	private void report(DefinitionList dl, WikitextHandler handler)
+	{
+		EmptyStructureRemover.eliminateEmptyStructures(dl);
+		if (dl.empty())
+		{
+			return;
+		}
+		List<String> definitions = new ArrayList<String>(dl.nrOfDefinitions());
+		for (ContentElement definition : dl.getDefinitions())
+		{
+			definitions.add(definition.getText());
+		}
+		ContentElement term = dl.getDefinedTerm();
+		handler.onDefinitionList(term == null ? null : term.getText(),
+				definitions);
+	}
+
+	private void report(Table table, WikitextHandler handler)
+	{
+		EmptyStructureRemover.eliminateEmptyStructures(table);
+		if (table.empty())
+		{
+			return;
+		}
+		ContentElement title = table.getTitleElement();
+		handler.onTableStart(title == null ? null : title.getText());
+		for (int i = 0; i < table.nrOfTableElements(); i++)
+		{
+			TableElement te = table.getTableElement(i);
+			handler.onTableCell(te.getRow(), te.getCol(), te.getText());
+		}
+	}
+
 	private Span removeHr(SpanManager sm, Span s)
 	{
 		int start = s.getStart();
@@ -846,18 +1158,26 @@ public class ModularParser implements MediaWikiParser,
 		return s1.substring(0, s2len).equalsIgnoreCase(s2);
 	}
 
-	private Span getTag(SpanManager sm, int offset)
+	/**
+	 * @param shift
+	 *            - how much the source after <tt>offset</tt> moved since it
+	 *            was tokenized
+	 */
+	private Span getTag(SpanManager sm, WikitextLexer lexer, int offset,
+			int shift)
 	{
-		int start = sm.indexOf("<", offset);
+		int start = lexer.indexOf(Token.TAG_OPEN, offset - shift);
 		if (start == -1)
 		{
 			return null;
 		}
-		int end = sm.indexOf(">", start);
+		int end = lexer.indexOf(Token.TAG_CLOSE, start);
 		if (end == -1)
 		{
 			return null;
 		}
+		start += shift;
+		end += shift;
 
 		Span s = new Span(start, end + 1);
 		if (calculateSrcSpans)
@@ -875,19 +1195,23 @@ public class ModularParser implements MediaWikiParser,
 				.trim(sm));
 	}
 
-	private void parseSpecifiedTag(SpanManager sm, List<Span> spans,
-			List<String> strings, String specifier)
+	private void parseSpecifiedTag(SpanManager sm, WikitextLexer lexer,
+			List<Span> spans, List<String> strings, String specifier)
 	{
-		parseSpecifiedTag(sm, spans, strings, specifier, "");
+		parseSpecifiedTag(sm, lexer, spans, strings, specifier, "");
 	}
 
-	private void parseSpecifiedTag(SpanManager sm, List<Span> spans,
-			List<String> strings, String specifier, String prefix)
+	private void parseSpecifiedTag(SpanManager sm, WikitextLexer lexer,
+			List<Span> spans, List<String> strings, String specifier,
+			String prefix)
 	{
 		int offset = 0;
+		// the tags are replaced from left to right
+		Edits replaced = new Edits();
+		int shift = 0;
 
 		Span s;
-		while ((s = getTag(sm, offset)) != null)
+		while ((s = getTag(sm, lexer, offset, shift)) != null)
 		{
 			offset = s.getEnd();
 			String tagText = getTagText(sm, s);
@@ -895,7 +1219,7 @@ public class ModularParser implements MediaWikiParser,
 			{
 
 				Span e;
-				while ((e = getTag(sm, offset)) != null)
+				while ((e = getTag(sm, lexer, offset, shift)) != null)
 				{
 					offset = e.getEnd();
 					tagText = getTagText(sm, e);
@@ -924,22 +1248,28 @@ public class ModularParser implements MediaWikiParser,
 				}
 
 				spans.add(tSpan);
-				sm.replace(tSpan, prefix + "(" + specifier + ")");
+				String replacement = prefix + "(" + specifier + ")";
+				replaced.add(tSpan.getStart() - shift, tSpan.getEnd() - shift,
+						replacement.length());
+				shift += replacement.length() - tSpan.length();
+				sm.replace(tSpan, replacement);
 				tSpan.adjustStart(prefix.length());
 
 				offset = tSpan.getEnd();
 			}
 		}
+		lexer.remap(replaced);
 	}
 
-	private void parseTags(SpanManager sm, List<Span> spans)
+	private void parseTags(SpanManager sm, WikitextLexer lexer,
+			List<Span> spans)
 	{
 		sm.manageList(spans);
 
 		Span s = new Span(0, 0);
 		Stack<Span> tagSpans = new Stack<Span>();
 		
-		while ((s = getTag(sm, s.getEnd())) != null)
+		while ((s = getTag(sm, lexer, s.getEnd(), 0)) != null)
 		{
 			//spans.add(s);
 		    //Logic to remove ref tags such as <ref> </ref> from the Article text
@@ -961,12 +1291,14 @@ public class ModularParser implements MediaWikiParser,
 			sm.removeManagedList(spans);
 		}
 		
+		Edits deleted = Edits.deletionOf(spans);
 		for (Span span : spans)
 		    sm.delete(span);
+		lexer.remap(deleted);
 		
 	}
 
-	private void parseTemplates(SpanManager sm,
+	private void parseTemplates(SpanManager sm, WikitextLexer lexer,
 			List<Span> resolvedTemplateSpans,
 			List<ResolvedTemplate> resolvedTemplates, ParsedPage pp)
 	{
@@ -974,26 +1306,69 @@ public class ModularParser implements MediaWikiParser,
 		sm.manageList(resolvedTemplateSpans);
 
 		int pos = -2;
-		Stack<Integer> templateOpenTags = new Stack<Integer>();
-		while ((pos = sm.indexOf("{{", pos + 2)) != -1)
+		int[] templateOpenTags = new int[16];
+		int templates = 0;
+		while ((pos = lexer.indexOfDouble(Token.BRACE_OPEN, pos + 2)) != -1)
 		{
 			if (sm.length() > pos + 3 && sm.charAt(pos + 2) == '{'
 					&& sm.charAt(pos + 3) != '{')
 			{
 				pos++;
 			}
-			templateOpenTags.push(pos);
+			if (templates == templateOpenTags.length)
+			{
+				templateOpenTags = Arrays.copyOf(templateOpenTags,
+						templates * 2);
+			}
+			templateOpenTags[templates++] = pos;
 		}
-		
+
+		// pairs each }} with the last unpaired {{ before it, in a single pass
+		int[] templateCloseTags = new int[templates];
+		Arrays.fill(templateCloseTags, -1);
+		int[] unpaired = new int[templates];
+		int depth = 0;
+		int next = 0;
+		pos = lexer.indexOfDouble(Token.BRACE_CLOSE, 0);
+		while (pos != -1 && (depth > 0 || next < templates))
+		{
+			while (next < templates && templateOpenTags[next] < pos)
+			{
+				unpaired[depth++] = next++;
+			}
+			if (depth > 0)
+			{
+				templateCloseTags[unpaired[--depth]] = pos;
+				pos = lexer.indexOfDouble(Token.BRACE_CLOSE, pos + 2);
+			}
+			else
+			{
+				pos = lexer.indexOfDouble(Token.BRACE_CLOSE, pos + 1);
+			}
+		}
+
+		// the templates are replaced from right to left, so the close of a
+		// template is moved only by the replacements of the templates it
+		// contains, which are the last replaced ones
+		int[] replacedOpenTags = new int[templates];
+		int[] replacedShifts = new int[templates];
+		int replaced = 0;
+
 		boolean isLastTemplate = true;
-		while (!templateOpenTags.empty())
+		for (int i = templates - 1; i >= 0; i--)
 		{
-			int templateOpenTag = templateOpenTags.pop();
-			int templateCloseTag = sm.indexOf("}}", templateOpenTag);
-			if (templateCloseTag == -1)
+			int templateOpenTag = templateOpenTags[i];
+			if (templateCloseTags[i] == -1)
 			{
 				continue;
 			}
+			int shift = 0;
+			while (replaced > 0
+					&& replacedOpenTags[replaced - 1] < templateCloseTags[i])
+			{
+				shift += replacedShifts[--replaced];
+			}
+			int templateCloseTag = templateCloseTags[i] + shift;
 
 			int templateOptionTag = sm.indexOf("|", templateOpenTag,
 					templateCloseTag);
@@ -1035,7 +1410,11 @@ public class ModularParser implements MediaWikiParser,
 			resolvedTemplateSpans.add(ts);
 			resolvedTemplates.add(rt);
 
-			sm.replace(ts, rt.getPreParseReplacement());
+			String replacement = rt.getPreParseReplacement();
+			sm.replace(ts, replacement);
+			replacedOpenTags[replaced] = templateOpenTag;
+			replacedShifts[replaced++] = replacement.length()
+					- (templateCloseTags[i] + 2 - templateOpenTag);
 		}
 
 		if (resolvedTemplateSpans.isEmpty())
@@ -1044,10 +1423,15 @@ public class ModularParser implements MediaWikiParser,
 		}
 	}
 
-	private void convertGalleriesToImages(SpanManager sm, List<Span> tagSpans)
+	/**
+	 * @return true if a gallery was converted
+	 */
+	private boolean convertGalleriesToImages(SpanManager sm,
+			List<Span> tagSpans)
 	{
 		// Quick Hack, not very efficent, should be improved, wont work with
 		// calculateSrcSpans == true !
+		boolean converted = false;
 
 		for (int i = 0; i < tagSpans.size() - 1; i++)
 		{
@@ -1099,6 +1483,7 @@ public class ModularParser implements MediaWikiParser,
 					// replace the source and remove the tags
 					sm.replace(startSpan.getStart(), endSpan.getEnd(), sb
 							.toString());
+					converted = true;
 				}
 				else
 				{
@@ -1106,6 +1491,7 @@ public class ModularParser implements MediaWikiParser,
 				}
 			}
 		}
+		return converted;
 	}
 
 	private Table buildTable(SpanManager sm,
@@ -1149,7 +1535,7 @@ public class ModularParser implements MediaWikiParser,
 					}
 
 					TableElement te = new TableElement(parseSections(sm, cepp,
-							tableDataSpans), row, col);
+							tableDataSpans, null), row, col);
 					te.setSrcSpan(ei);
 					result.addTableElement(te);
 					lineSpans.removeFirst();
@@ -1227,7 +1613,7 @@ public class ModularParser implements MediaWikiParser,
 			}
 
 			TableElement te = new TableElement(parseSections(sm, cepp,
-					tableDataSpans), row, col);
+					tableDataSpans, null), row, col);
 			te.setSrcSpan(ei);
 
 			result.addTableElement(te);
@@ -1545,25 +1931,45 @@ public class ModularParser implements MediaWikiParser,
 	 * in a single step
 	 */
 	private void parseImagesAndInternalLinks(SpanManager sm,
-			List<Span> linkSpans, List<Link> links)
+			WikitextLexer lexer, List<Span> linkSpans, List<Link> links)
 	{
 
 		sm.manageList(linkSpans);
 
 		int pos = -1;
-		Stack<Integer> linkOpenTags = new Stack<Integer>();
-		while ((pos = sm.indexOf("[[", pos + 1)) != -1)
+		int[] linkOpenTags = new int[16];
+		int openTags = 0;
+		while ((pos = lexer.indexOfDouble(Token.BRACKET_OPEN, pos + 1)) != -1)
 		{
-			linkOpenTags.push(pos);
+			if (openTags == linkOpenTags.length)
+			{
+				linkOpenTags = Arrays.copyOf(linkOpenTags, openTags * 2);
+			}
+			linkOpenTags[openTags++] = pos;
 		}
 
 		Span lastLinkSpan = new Span(sm.length() + 1, sm.length() + 1);
 		Link.type linkType = Link.type.INTERNAL;
 
-		while (!linkOpenTags.empty())
+		// the links are parsed from right to left: the source before the
+		// last parsed link is not edited yet, so its ]] are the ones of the
+		// lexer, while after it they are searched once after each link
+		int edited = sm.length();
+		int editedEndTag = -2;
+
+		for (int i = openTags - 1; i >= 0; i--)
 		{
-			int linkStartTag = linkOpenTags.pop();
-			int linkEndTag = sm.indexOf("]]", linkStartTag);
+			int linkStartTag = linkOpenTags[i];
+			int linkEndTag = lexer.indexOfDouble(Token.BRACKET_CLOSE,
+					linkStartTag);
+			if (linkEndTag == -1 || linkEndTag + 1 >= edited)
+			{
+				if (editedEndTag == -2)
+				{
+					editedEndTag = sm.indexOf("]]", edited - 1);
+				}
+				linkEndTag = editedEndTag;
+			}
 			if (linkEndTag == -1)
 			{
 				continue;
@@ -1601,7 +2007,7 @@ public class ModularParser implements MediaWikiParser,
 			String namespace = getLinkNameSpace(linkTarget);
 			if (namespace != null)
 			{
-				if (imageIdentifers.indexOf(namespace) != -1)
+				if (imageIdentiferSet.contains(namespace))
 				{
 					if (linkOptionTag != -1)
 					{
@@ -1676,6 +2082,8 @@ public class ModularParser implements MediaWikiParser,
 			{
 				sm.replace(lsinlink, lsinlink + lineSeparator.length(), " ");
 			}
+			edited = linkStartTag;
+			editedEndTag = -2;
 
 			lastLinkSpan = posSpan;
 		}
@@ -1796,7 +2204,9 @@ public class ModularParser implements MediaWikiParser,
 		SpanManager sm = new SpanManager(src);
 		ContentElementParsingParameters cepp = new ContentElementParsingParameters();
 
-		parseImagesAndInternalLinks(sm, cepp.linkSpans, cepp.links);
+		parseImagesAndInternalLinks(sm, new WikitextLexer(src, EnumSet
+				.of(Token.BRACKET_OPEN, Token.BRACKET_CLOSE)), cepp.linkSpans,
+				cepp.links);
 
 		LinkedList<Span> lineSpans = new LinkedList<Span>();
 		getLineSpans(sm, lineSpans);
@@ -1881,16 +2291,19 @@ public class ModularParser implements MediaWikiParser,
 		}
 		sm.removeManagedList(lineSpans);
 
-		// Links
+		// Links, moved out of the lists after a single pass: until then the
+		// spans of the element links are adjusted as part of cepp.linkSpans
 		int i;
-		i = 0;
-		while (i < cepp.linkSpans.size())
+		List<Span> localLinkSpans = new ArrayList<Span>();
+		List<Span> otherLinkSpans = new ArrayList<Span>();
+		List<Link> otherLinks = new ArrayList<Link>();
+		for (i = 0; i < cepp.linkSpans.size(); i++)
 		{
-			if (contentElementRange.hits(cepp.linkSpans.get(i)))
+			Span linkSpan = cepp.linkSpans.get(i);
+			if (contentElementRange.hits(linkSpan))
 			{
-				Span linkSpan = cepp.linkSpans.remove(i);
-				managedSpans.add(linkSpan);
-				Link l = cepp.links.remove(i).setHomeElement(result);
+				localLinkSpans.add(linkSpan);
+				Link l = cepp.links.get(i).setHomeElement(result);
 				localLinks.add(l);
 				if (!showImageText && l.getType() == Link.type.IMAGE)
 				{
@@ -1900,9 +2313,18 @@ public class ModularParser implements MediaWikiParser,
 			}
 			else
 			{
-				i++;
+				otherLinkSpans.add(linkSpan);
+				otherLinks.add(cepp.links.get(i));
 			}
 		}
+		if (!localLinkSpans.isEmpty())
+		{
+			cepp.linkSpans.clear();
+			cepp.linkSpans.addAll(otherLinkSpans);
+			cepp.links.clear();
+			cepp.links.addAll(otherLinks);
+			managedSpans.addAll(localLinkSpans);
+		}
 
 		// Templates
 		//DBPedia - Spotlight. Removing the boiler plate logic from the wikitext
@@ -0,0 +1,440 @@
+/**
+ *  Copyright 2015 DBpedia Spotlight
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.dbpedia.spotlight.mediawiki;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import de.tudarmstadt.ukp.wikipedia.parser.Span;
+
+/**
+ * The source edited by the {@link ModularParser}, a replacement of the JWPL
+ * <code>SpanManager</code> with the same behaviour (also on the errors).
+ * <p>
+ * The JWPL class keeps the text in a <code>StringBuilder</code> and the
+ * source positions in a <code>List&lt;Integer&gt;</code> that is edited one
+ * element at a time, so each delete or replace costs the length of the page
+ * times the length of the edited text. Here the text and the source
+ * positions are kept in a gap buffer: an edit moves the gap to the edited
+ * position and then costs only the inserted text. The parser edits the page
+ * mostly from left to right (comments, tags) or from right to left
+ * (templates), so the gap moves over the page about once for each stage.
+ * <p>
+ * The spans of the managed lists are still adjusted after each edit, as
+ * they are read by the parser between the edits.
+ */
+class SpanManager implements CharSequence
+{
+
+	/** the text, with the gap between gapStart and gapEnd **/
+	private char[] text;
+	/** the source positions of the chars of the text, -1 if inserted **/
+	private int[] srcPos;
+	private int gapStart;
+	private int gapEnd;
+
+	private final List<List<Span>> managedLists = new ArrayList<List<Span>>();
+	private boolean calculateSrcPositions = false;
+
+	public SpanManager(String src)
+	{
+		text = new char[src.length() + gapSize(src.length())];
+		src.getChars(0, src.length(), text, 0);
+		gapStart = src.length();
+		gapEnd = text.length;
+	}
+
+	private static int gapSize(int length)
+	{
+		return 16 + length / 8;
+	}
+
+	/**
+	 * Keeps track of the position in the source of each char of the text,
+	 * from now on.
+	 */
+	public void enableSrcPosCalculation()
+	{
+		calculateSrcPositions = true;
+		srcPos = new int[text.length];
+		for (int i = 0; i < gapStart; i++)
+		{
+			srcPos[i] = i;
+		}
+		for (int i = gapEnd; i < text.length; i++)
+		{
+			srcPos[i] = i - gapEnd + gapStart;
+		}
+	}
+
+	/**
+	 * @return the position in the source of the char at <tt>pos</tt>, -1 if
+	 *         the char was inserted
+	 */
+	public int getSrcPos(int pos)
+	{
+		if (!calculateSrcPositions)
+		{
+			System.err.println("SrcSpanCalculation not enabled!");
+			return -1;
+		}
+		if (pos < 0 || pos >= length())
+		{
+			throw new IndexOutOfBoundsException("Index: " + pos + ", Size: "
+					+ length());
+		}
+		return srcPos[pos < gapStart ? pos : pos + gapEnd - gapStart];
+	}
+
+	/**
+	 * Adjusts the spans of the list after each edit of the text.
+	 */
+	public void manageList(List<Span> spans)
+	{
+		managedLists.add(spans);
+	}
+
+	public void removeManagedList(List<Span> spans)
+	{
+		for (int i = 0; i < managedLists.size(); i++)
+		{
+			if (managedLists.get(i) == spans)
+			{
+				managedLists.remove(i);
+				return;
+			}
+		}
+	}
+
+	private void adjustLists(int offset, int n)
+	{
+		for (List<Span> spans : managedLists)
+		{
+			// some of the lists are linked lists
+			for (Span s : spans)
+			{
+				s.adjust(offset, n);
+			}
+		}
+	}
+
+	/**
+	 * Moves the gap to <tt>pos</tt>, making it at least <tt>size</tt> chars
+	 * long.
+	 */
+	private void moveGap(int pos, int size)
+	{
+		if (gapEnd - gapStart < size)
+		{
+			int length = length();
+			int capacity = Math.max(text.length * 2, length + size
+					+ gapSize(length));
+			char[] newText = Arrays.copyOf(text, capacity);
+			int tail = text.length - gapEnd;
+			System.arraycopy(text, gapEnd, newText, capacity - tail, tail);
+			if (srcPos != null)
+			{
+				int[] newSrcPos = Arrays.copyOf(srcPos, capacity);
+				System.arraycopy(srcPos, gapEnd, newSrcPos, capacity - tail,
+						tail);
+				srcPos = newSrcPos;
+			}
+			text = newText;
+			gapEnd = capacity - tail;
+		}
+		if (pos < gapStart)
+		{
+			int n = gapStart - pos;
+			System.arraycopy(text, pos, text, gapEnd - n, n);
+			if (srcPos != null)
+			{
+				System.arraycopy(srcPos, pos, srcPos, gapEnd - n, n);
+			}
+			gapStart -= n;
+			gapEnd -= n;
+		}
+		else if (pos > gapStart)
+		{
+			int n = pos - gapStart;
+			System.arraycopy(text, gapEnd, text, gapStart, n);
+			if (srcPos != null)
+			{
+				System.arraycopy(srcPos, gapEnd, srcPos, gapStart, n);
+			}
+			gapStart += n;
+			gapEnd += n;
+		}
+	}
+
+	/**
+	 * Replaces the text between <tt>start</tt> and <tt>end</tt> (at most the
+	 * end of the text) with <tt>s</tt>, without adjusting the spans.
+	 */
+	private void edit(int start, int end, String s)
+	{
+		int length = length();
+		if (end > length)
+		{
+			end = length;
+		}
+		if (start < 0 || start > end)
+		{
+			throw new StringIndexOutOfBoundsException("start " + start
+					+ ", end " + end + ", length " + length);
+		}
+		moveGap(start, s.length() - (end - start));
+		gapEnd += end - start;
+		s.getChars(0, s.length(), text, gapStart);
+		if (srcPos != null)
+		{
+			Arrays.fill(srcPos, gapStart, gapStart + s.length(), -1);
+		}
+		gapStart += s.length();
+	}
+
+	/**
+	 * Like the JWPL class, fails after the edit if the source positions are
+	 * calculated and the edited range ends after the text.
+	 */
+	private void checkSrcPositions(int end, int length)
+	{
+		if (calculateSrcPositions && end > length)
+		{
+			throw new IndexOutOfBoundsException("Index: " + length
+					+ ", Size: " + length);
+		}
+	}
+
+	public SpanManager delete(Span s)
+	{
+		return delete(s.getStart(), s.getEnd());
+	}
+
+	public SpanManager delete(int start, int end)
+	{
+		int length = length();
+		edit(start, end, "");
+		adjustLists(start, start - end);
+		checkSrcPositions(end, length);
+		return this;
+	}
+
+	public SpanManager insert(int pos, String s)
+	{
+		if (pos < 0 || pos > length())
+		{
+			throw new StringIndexOutOfBoundsException("offset " + pos
+					+ ", length " + length());
+		}
+		edit(pos, pos, s);
+		adjustLists(pos, s.length());
+		return this;
+	}
+
+	public SpanManager replace(Span s, String replacement)
+	{
+		return replace(s.getStart(), s.getEnd(), replacement);
+	}
+
+	public SpanManager replace(int start, int end, String s)
+	{
+		int length = length();
+		edit(start, end, s);
+		checkSrcPositions(end, length);
+		adjustLists(start, s.length() - (end - start));
+		return this;
+	}
+
+	public int indexOf(String s)
+	{
+		return indexOf(s, 0);
+	}
+
+	public int indexOf(String s, int start)
+	{
+		int length = length();
+		if (start >= length)
+		{
+			return s.length() == 0 ? length : -1;
+		}
+		if (start < 0)
+		{
+			start = 0;
+		}
+		return find(s, start, length - s.length());
+	}
+
+	public int indexOf(String s, Span span)
+	{
+		return indexOf(s, span.getStart(), span.getEnd());
+	}
+
+	/**
+	 * @return the first occurrence of <tt>s</tt> starting between
+	 *         <tt>start</tt> and <tt>end</tt>, -1 if there is none
+	 */
+	public int indexOf(String s, int start, int end)
+	{
+		if (s.length() == 0 || start >= length())
+		{
+			int result = indexOf(s, start);
+			return result >= end ? -1 : result;
+		}
+		// does not search after the end
+		return find(s, Math.max(start, 0), Math.min(length() - s.length(),
+				end - 1));
+	}
+
+	/**
+	 * @return the first occurrence of <tt>s</tt> starting between
+	 *         <tt>start</tt> and <tt>last</tt> (included), -1 if there is none
+	 */
+	private int find(String s, int start, int last)
+	{
+		if (s.length() == 0)
+		{
+			return start <= last ? start : -1;
+		}
+		char first = s.charAt(0);
+		for (int i = start; i <= last; i++)
+		{
+			if (at(i) != first)
+			{
+				continue;
+			}
+			int j = 1;
+			while (j < s.length() && at(i + j) == s.charAt(j))
+			{
+				j++;
+			}
+			if (j == s.length())
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	public String substring(int start)
+	{
+		if (start < 0)
+		{
+			start = 0;
+		}
+		checkRange(start, length());
+		return substring(start, length());
+	}
+
+	/**
+	 * @return the text between <tt>start</tt> (0 if negative) and
+	 *         <tt>end</tt>, the empty string if <tt>start</tt> is after
+	 *         <tt>end</tt>
+	 */
+	public String substring(int start, int end)
+	{
+		if (start < 0)
+		{
+			start = 0;
+		}
+		if (start > end)
+		{
+			return "";
+		}
+		checkRange(start, end);
+		if (end <= gapStart)
+		{
+			return new String(text, start, end - start);
+		}
+		if (start >= gapStart)
+		{
+			return new String(text, start + gapEnd - gapStart, end - start);
+		}
+		StringBuilder sb = new StringBuilder(end - start);
+		sb.append(text, start, gapStart - start);
+		sb.append(text, gapEnd, end - gapStart);
+		return sb.toString();
+	}
+
+	public String substring(Span s)
+	{
+		if (s.getStart() >= s.getEnd())
+		{
+			return "";
+		}
+		checkRange(s.getStart(), s.getEnd());
+		return substring(s.getStart(), s.getEnd());
+	}
+
+	private void checkRange(int start, int end)
+	{
+		if (start < 0 || end > length())
+		{
+			throw new StringIndexOutOfBoundsException("start " + start
+					+ ", end " + end + ", length " + length());
+		}
+	}
+
+	public CharSequence subSequence(int start, int end)
+	{
+		checkRange(start, end);
+		return substring(start, end);
+	}
+
+	public int length()
+	{
+		return text.length - (gapEnd - gapStart);
+	}
+
+	public SpanManager setCharAt(int pos, char c)
+	{
+		checkIndex(pos);
+		int i = pos < gapStart ? pos : pos + gapEnd - gapStart;
+		text[i] = c;
+		if (srcPos != null)
+		{
+			srcPos[i] = -1;
+		}
+		return this;
+	}
+
+	public char charAt(int pos)
+	{
+		checkIndex(pos);
+		return at(pos);
+	}
+
+	private char at(int pos)
+	{
+		return text[pos < gapStart ? pos : pos + gapEnd - gapStart];
+	}
+
+	private void checkIndex(int pos)
+	{
+		if (pos < 0 || pos >= length())
+		{
+			throw new StringIndexOutOfBoundsException("index " + pos
+					+ ", length " + length());
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		return substring(0, length());
+	}
+}
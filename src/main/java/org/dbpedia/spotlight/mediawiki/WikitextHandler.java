@@ -0,0 +1,94 @@
+/**
+ *  Copyright 2015 DBpedia Spotlight
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.dbpedia.spotlight.mediawiki;
+
+import java.util.List;
+
+/**
+ * Receives the content of a page while it is parsed by
+ * {@link WikitextParser#parse(String, WikitextHandler)}, in place of the
+ * <tt>ParsedPage</tt> returned by {@link MediaWikiParser#parse(String)}:
+ * the handler keeps only what it needs, and the tree of sections is never
+ * built.
+ * <p>
+ * The templates, the categories and the language links of the page are
+ * reported first, then the sections, paragraphs, lists and tables in the
+ * order of the page. The elements the parser would remove from the
+ * <tt>ParsedPage</tt> because they are empty are not reported. Extend
+ * {@link DefaultWikitextHandler} to receive only some of the events.
+ */
+public interface WikitextHandler {
+
+	/**
+	 * A template of the page, with the parameters as they are in the source.
+	 */
+	public void onTemplate(String name, List<String> parameters);
+
+	/**
+	 * A category of the page (e.g., <tt>[[Category:Planets]]</tt>).
+	 */
+	public void onCategory(String target, String text);
+
+	/**
+	 * A link to the same page in another language (e.g., <tt>[[it:Mercurio
+	 * (astronomia)]]</tt>).
+	 */
+	public void onLanguageLink(String target, String text);
+
+	/**
+	 * The title of a section, the content that follows belongs to it. The
+	 * content before the first title has no section start.
+	 */
+	public void onSectionStart(String title, int level);
+
+	/**
+	 * The text of a paragraph, followed by its internal links.
+	 */
+	public void onParagraph(String text);
+
+	/**
+	 * An internal link of the last paragraph.
+	 *
+	 * @param start
+	 *            - the start of the anchor in the text of the paragraph
+	 * @param end
+	 *            - the end of the anchor in the text of the paragraph
+	 */
+	public void onInternalLink(String target, String text, int start, int end);
+
+	/**
+	 * A definition list, with its term (null if it has none) and the text of
+	 * its definitions.
+	 */
+	public void onDefinitionList(String term, List<String> definitions);
+
+	/**
+	 * A nested list, with the text of its items (the text of an item
+	 * includes the items nested in it).
+	 */
+	public void onNestedList(List<String> items);
+
+	/**
+	 * The start of a table, with its caption (null if it has none), followed
+	 * by its cells.
+	 */
+	public void onTableStart(String title);
+
+	/**
+	 * A cell of the last table.
+	 */
+	public void onTableCell(int row, int col, String text);
+}
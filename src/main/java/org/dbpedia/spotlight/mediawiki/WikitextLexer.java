@@ -0,0 +1,340 @@
+/**
+ *  Copyright 2015 DBpedia Spotlight
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.dbpedia.spotlight.mediawiki;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+
+import de.tudarmstadt.ukp.wikipedia.parser.Span;
+
+/**
+ * Tokenizes MediaWiki source in a single pass, recording the offsets of the
+ * markup the {@link ModularParser} looks for (comments, TOC magic words, tag
+ * brackets, braces and square brackets), so that its stages look the tokens
+ * up instead of searching the whole page again with
+ * <code>SpanManager.indexOf</code>.
+ * <p>
+ * The stages edit the source while they parse it: after a batch of
+ * {@link Edits} the offsets are moved with {@link #remap(Edits)}, in a
+ * single pass over the tokens. Tokens overlapping an edited range are dropped, so
+ * the tokens are those of the edited source as long as the text inserted by
+ * the edits contains no tokens (e.g., the <tt>(NOWIKI)</tt> placeholders);
+ * otherwise the source has to be tokenized again.
+ */
+class WikitextLexer
+{
+
+	enum Token
+	{
+		COMMENT_OPEN("<!--"), COMMENT_CLOSE("-->"), TOC("__TOC__"), NOTOC(
+				"__NOTOC__"), TAG_OPEN("<"), TAG_CLOSE(">"), BRACE_OPEN("{"), BRACE_CLOSE(
+				"}"), BRACKET_OPEN("["), BRACKET_CLOSE("]");
+
+		private final String text;
+
+		private Token(String text)
+		{
+			this.text = text;
+		}
+
+		/**
+		 * @return the markup of the token
+		 */
+		String getText()
+		{
+			return text;
+		}
+	}
+
+	/** the offsets of each kind of token, in increasing order **/
+	private final int[][] offsets = new int[Token.values().length][];
+	private final int[] sizes = new int[Token.values().length];
+
+	/**
+	 * @param src
+	 *            - the source to tokenize
+	 * @param tokens
+	 *            - the kinds of tokens to record
+	 */
+	WikitextLexer(CharSequence src, EnumSet<Token> tokens)
+	{
+		for (Token t : tokens)
+		{
+			offsets[t.ordinal()] = new int[16];
+		}
+		boolean comments = tokens.contains(Token.COMMENT_OPEN);
+		boolean commentEnds = tokens.contains(Token.COMMENT_CLOSE);
+		boolean toc = tokens.contains(Token.TOC)
+				|| tokens.contains(Token.NOTOC);
+		final int length = src.length();
+		for (int i = 0; i < length; i++)
+		{
+			switch (src.charAt(i))
+			{
+			case '<':
+				add(Token.TAG_OPEN, i);
+				if (comments && startsWith(src, i, Token.COMMENT_OPEN))
+				{
+					add(Token.COMMENT_OPEN, i);
+				}
+				break;
+			case '>':
+				add(Token.TAG_CLOSE, i);
+				break;
+			case '-':
+				if (commentEnds && startsWith(src, i, Token.COMMENT_CLOSE))
+				{
+					add(Token.COMMENT_CLOSE, i);
+				}
+				break;
+			case '_':
+				if (toc)
+				{
+					if (startsWith(src, i, Token.TOC))
+					{
+						add(Token.TOC, i);
+					}
+					else if (startsWith(src, i, Token.NOTOC))
+					{
+						add(Token.NOTOC, i);
+					}
+				}
+				break;
+			case '{':
+				add(Token.BRACE_OPEN, i);
+				break;
+			case '}':
+				add(Token.BRACE_CLOSE, i);
+				break;
+			case '[':
+				add(Token.BRACKET_OPEN, i);
+				break;
+			case ']':
+				add(Token.BRACKET_CLOSE, i);
+				break;
+			default:
+				break;
+			}
+		}
+	}
+
+	/**
+	 * @return true if the text has the token at the offset
+	 */
+	static boolean isAt(CharSequence src, int offset, Token t)
+	{
+		return offset >= 0 && offset < src.length()
+				&& src.charAt(offset) == t.getText().charAt(0)
+				&& startsWith(src, offset, t);
+	}
+
+	private static boolean startsWith(CharSequence src, int offset, Token t)
+	{
+		String text = t.getText();
+		if (offset + text.length() > src.length())
+		{
+			return false;
+		}
+		for (int i = 1; i < text.length(); i++)
+		{
+			if (src.charAt(offset + i) != text.charAt(i))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void add(Token t, int offset)
+	{
+		int k = t.ordinal();
+		int[] o = offsets[k];
+		if (o == null)
+		{
+			return;
+		}
+		if (sizes[k] == o.length)
+		{
+			o = offsets[k] = Arrays.copyOf(o, o.length * 2);
+		}
+		o[sizes[k]++] = offset;
+	}
+
+	/**
+	 * @return the offset of the first token of the given kind starting at or
+	 *         after <tt>from</tt>, -1 if there is none
+	 */
+	int indexOf(Token t, int from)
+	{
+		int k = t.ordinal();
+		int[] o = offsets[k];
+		int i = Arrays.binarySearch(o, 0, sizes[k], from);
+		if (i < 0)
+		{
+			i = -i - 1;
+		}
+		return i < sizes[k] ? o[i] : -1;
+	}
+
+	/**
+	 * @return the offset of the first occurrence of the token twice in a row
+	 *         (e.g., <tt>{{</tt> for {@link Token#BRACE_OPEN}) starting at or after
+	 *         <tt>from</tt>, -1 if there is none
+	 */
+	int indexOfDouble(Token t, int from)
+	{
+		int k = t.ordinal();
+		int[] o = offsets[k];
+		int i = Arrays.binarySearch(o, 0, sizes[k], from);
+		if (i < 0)
+		{
+			i = -i - 1;
+		}
+		for (; i + 1 < sizes[k]; i++)
+		{
+			if (o[i + 1] == o[i] + 1)
+			{
+				return o[i];
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Moves the offsets of the tokens after a batch of edits of the source.
+	 */
+	void remap(Edits edits)
+	{
+		if (edits.size == 0)
+		{
+			return;
+		}
+		for (int k = 0; k < offsets.length; k++)
+		{
+			int[] o = offsets[k];
+			if (o == null)
+			{
+				continue;
+			}
+			int length = Token.values()[k].getText().length();
+			int e = 0;
+			int shift = 0;
+			int n = 0;
+			for (int i = 0; i < sizes[k]; i++)
+			{
+				int offset = o[i];
+				while (e < edits.size && edits.ends[e] <= offset)
+				{
+					shift += edits.lengths[e] - (edits.ends[e] - edits.starts[e]);
+					e++;
+				}
+				if (e < edits.size && edits.starts[e] < offset + length)
+				{
+					// edited
+					continue;
+				}
+				o[n++] = offset + shift;
+			}
+			sizes[k] = n;
+		}
+	}
+
+	/**
+	 * A batch of edits of the source, not overlapping and in increasing
+	 * order; the offsets are the ones before the batch.
+	 */
+	static class Edits
+	{
+		private int[] starts = new int[8];
+		private int[] ends = new int[8];
+		private int[] lengths = new int[8];
+		private int size = 0;
+
+		/**
+		 * @param start
+		 *            - the start of the edited range
+		 * @param end
+		 *            - the end of the edited range
+		 * @param length
+		 *            - the length of the text replacing the range
+		 */
+		void add(int start, int end, int length)
+		{
+			if (size > 0 && start < ends[size - 1])
+			{
+				throw new IllegalArgumentException("edit " + start + "-"
+						+ end + " before the previous one");
+			}
+			if (size == starts.length)
+			{
+				starts = Arrays.copyOf(starts, size * 2);
+				ends = Arrays.copyOf(ends, size * 2);
+				lengths = Arrays.copyOf(lengths, size * 2);
+			}
+			starts[size] = start;
+			ends[size] = end;
+			lengths[size] = length;
+			size++;
+		}
+
+		int size()
+		{
+			return size;
+		}
+
+		/**
+		 * @return the deletion of the spans, in any order and nested or
+		 *         disjoint
+		 */
+		static Edits deletionOf(List<Span> spans)
+		{
+			List<Span> sorted = new ArrayList<Span>(spans);
+			Collections.sort(sorted, new Comparator<Span>()
+			{
+				public int compare(Span a, Span b)
+				{
+					return a.getStart() < b.getStart() ? -1
+							: a.getStart() > b.getStart() ? 1 : 0;
+				}
+			});
+			Edits edits = new Edits();
+			int start = -1;
+			int end = -1;
+			for (Span s : sorted)
+			{
+				if (s.getStart() > end)
+				{
+					if (end > start)
+					{
+						edits.add(start, end, 0);
+					}
+					start = s.getStart();
+				}
+				end = Math.max(end, s.getEnd());
+			}
+			if (end > start)
+			{
+				edits.add(start, end, 0);
+			}
+			return edits;
+		}
+	}
+}
@@ -0,0 +1,30 @@
+/**
+ *  Copyright 2015 DBpedia Spotlight
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.dbpedia.spotlight.mediawiki;
+
+/**
+ * A {@link MediaWikiParser} that can also report the content of a page to a
+ * {@link WikitextHandler}, without building its <tt>ParsedPage</tt>.
+ */
+public interface WikitextParser extends MediaWikiParser {
+
+	/**
+	 * Parses MediaWiki Source, given as parameter src, reporting its content
+	 * to the handler instead of building a ParsedPage.
+	 * @return false if there was nothing to parse (parse(src) would return null)
+	 */
+	public boolean parse(String src, WikitextHandler handler);
+}
@@ -0,0 +1,121 @@
+/**
+ *  Copyright 2015 DBpedia Spotlight
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.dbpedia.spotlight.parser;
+
+import java.util.Arrays;
+
+/**
+ * A growable sequence of bits (most significant bit first), used to cut the
+ * bzip2 blocks, that are not aligned to bytes.
+ */
+class BitBuffer {
+
+	private byte[] data;
+	private long length = 0;
+
+	BitBuffer() {
+		this(64 * 1024);
+	}
+
+	BitBuffer(int capacity) {
+		data = new byte[capacity];
+	}
+
+	/**
+	 * @return the number of bits in the buffer
+	 */
+	long length() {
+		return length;
+	}
+
+	void appendBit(int bit) {
+		int i = (int) (length >>> 3);
+		if (i == data.length)
+			data = Arrays.copyOf(data, data.length * 2);
+		if (bit != 0)
+			data[i] |= 0x80 >>> (length & 7);
+		length++;
+	}
+
+	/**
+	 * Appends the lowest <code>n</code> bits of value.
+	 */
+	void appendBits(long value, int n) {
+		while (n > 0) {
+			int i = (int) (length >>> 3);
+			if (i == data.length)
+				data = Arrays.copyOf(data, data.length * 2);
+			int free = 8 - (int) (length & 7);
+			int k = Math.min(free, n);
+			int bits = (int) (value >>> (n - k)) & ((1 << k) - 1);
+			data[i] |= bits << (free - k);
+			length += k;
+			n -= k;
+		}
+	}
+
+	void append(BitBuffer bits) {
+		if ((length & 7) == 0) {
+			int start = (int) (length >>> 3);
+			int n = (int) ((bits.length + 7) >>> 3);
+			if (start + n > data.length)
+				data = Arrays.copyOf(data, Math.max(data.length * 2, start + n));
+			System.arraycopy(bits.data, 0, data, start, n);
+			length += bits.length;
+			return;
+		}
+		for (long i = 0; i < bits.length; i++) {
+			appendBit(bits.getBit(i));
+		}
+	}
+
+	int getBit(long i) {
+		return (data[(int) (i >>> 3)] >>> (7 - (i & 7))) & 1;
+	}
+
+	/**
+	 * @return the <code>n</code> bits starting at position <code>from</code>
+	 */
+	long getBits(long from, int n) {
+		long value = 0;
+		for (long i = from; i < from + n; i++) {
+			value = (value << 1) | getBit(i);
+		}
+		return value;
+	}
+
+	/**
+	 * Removes the bits after the first <code>newLength</code>.
+	 */
+	void truncate(long newLength) {
+		int last = (int) ((length + 7) >>> 3);
+		int first = (int) (newLength >>> 3);
+		if ((newLength & 7) != 0) {
+			data[first] &= 0xff << (8 - (newLength & 7));
+			first++;
+		}
+		Arrays.fill(data, first, last, (byte) 0);
+		length = newLength;
+	}
+
+	/**
+	 * @return the bits, the last byte is padded with zeros
+	 */
+	byte[] toByteArray() {
+		return Arrays.copyOf(data, (int) ((length + 7) >>> 3));
+	}
+}
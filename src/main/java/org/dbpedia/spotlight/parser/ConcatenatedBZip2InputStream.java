@@ -0,0 +1,78 @@
+/**
+ *  Copyright 2015 DBpedia Spotlight
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.dbpedia.spotlight.parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+
+/**
+ * Decompresses a sequence of concatenated bzip2 streams (as the multistream
+ * dumps, or the files compressed by pbzip2).
+ * {@link BZip2CompressorInputStream} stops at the end of the first stream,
+ * leaving the following ones unread, so a new decoder is created for each
+ * stream.
+ */
+public class ConcatenatedBZip2InputStream extends InputStream {
+
+	private final PushbackInputStream in;
+	private InputStream stream;
+
+	public ConcatenatedBZip2InputStream(InputStream in) throws IOException {
+		this.in = new PushbackInputStream(in);
+		stream = new BZip2CompressorInputStream(this.in);
+	}
+
+	@Override
+	public int read() throws IOException {
+		int b;
+		while ((b = stream.read()) == -1) {
+			if (!nextStream())
+				return -1;
+		}
+		return b;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0)
+			return 0;
+		int n;
+		while ((n = stream.read(b, off, len)) == -1) {
+			if (!nextStream())
+				return -1;
+		}
+		return n;
+	}
+
+	private boolean nextStream() throws IOException {
+		int b = in.read();
+		if (b == -1)
+			return false;
+		in.unread(b);
+		stream = new BZip2CompressorInputStream(in);
+		return true;
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+}
@@ -0,0 +1,45 @@
+/**
+ *  Copyright 2015 DBpedia Spotlight
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.dbpedia.spotlight.parser;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the daemon threads decompressing a dump (or compressing an
+ * output), a stream that is not closed does not prevent the JVM from
+ * exiting.
+ */
+public class DecoderThreadFactory implements ThreadFactory {
+	private final String name;
+	private final AtomicInteger count = new AtomicInteger();
+
+	/**
+	 * @param name
+	 *            - the prefix of the names of the threads, followed by their
+	 *            number
+	 */
+	public DecoderThreadFactory(String name) {
+		this.name = name;
+	}
+
+	public Thread newThread(Runnable r) {
+		Thread t = new Thread(r, name + "-" + count.getAndIncrement());
+		t.setDaemon(true);
+		return t;
+	}
+}
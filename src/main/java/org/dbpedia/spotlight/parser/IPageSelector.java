@@ -0,0 +1,41 @@
+/**
+ *  Copyright 2015 DBpedia Spotlight
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.dbpedia.spotlight.parser;
+
+import info.bliki.wiki.dump.Siteinfo;
+import info.bliki.wiki.dump.WikiArticle;
+
+/**
+ * Decides if a page of the dump is wanted before its text is read. An
+ * {@link info.bliki.wiki.dump.IArticleFilter} implementing this interface
+ * receives only the selected pages, the text of the other pages is skipped
+ * by the parser without being buffered.
+ */
+public interface IPageSelector {
+
+	/**
+	 * @param page
+	 *            - the page, with its title, id and namespace but without the
+	 *            text
+	 * @param siteinfo
+	 *            - the siteinfo of the dump
+	 * @return true if the text of the page must be read and the page given to
+	 *         the filter
+	 */
+	boolean select(WikiArticle page, Siteinfo siteinfo);
+
+}
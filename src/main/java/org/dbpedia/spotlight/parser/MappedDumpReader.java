@@ -0,0 +1,196 @@
+/**
+ *  Copyright 2015 DBpedia Spotlight
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.dbpedia.spotlight.parser;
+
+import info.bliki.wiki.dump.IArticleFilter;
+import info.bliki.wiki.dump.Siteinfo;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.xml.sax.SAXException;
+
+/**
+ * Cuts an uncompressed XML dump in regions starting at a
+ * <tt>&lt;page&gt;</tt> tag, so that several threads can parse their own
+ * region of the same file with a {@link WikiXMLScanner}. The regions are read
+ * through memory mapped segments ({@link MappedInputStream}), the siteinfo in
+ * the header of the dump is given to the scanners of all the regions.
+ */
+public class MappedDumpReader {
+
+	private static final byte[] PAGE_OPEN = "<page>".getBytes();
+	/** bytes searched at once for the beginning of a page **/
+	private static final int WINDOW = 1 << 20;
+
+	private final File dump;
+	/** the offsets of the regions, followed by the length of the file **/
+	private final long[] offsets;
+	private final Siteinfo siteinfo;
+
+	/**
+	 * @param dump
+	 *            - the uncompressed xml dump
+	 * @param regions
+	 *            - the number of regions (fewer regions are created if the
+	 *            dump contains fewer pages)
+	 */
+	public MappedDumpReader(File dump, int regions) throws IOException {
+		if (regions < 1)
+			throw new IllegalArgumentException("regions must be positive");
+		this.dump = dump;
+		offsets = split(regions);
+		long header = findPage(0);
+		siteinfo = WikiXMLScanner.readSiteinfo(new MappedInputStream(dump, 0,
+				header < 0 ? dump.length() : header));
+	}
+
+	private long[] split(int regions) throws IOException {
+		long length = dump.length();
+		long[] b = new long[regions + 1];
+		int size = 0;
+		b[size++] = 0;
+		for (int i = 1; i < regions; i++) {
+			long page = findPage(length / regions * i);
+			if (page < 0)
+				break;
+			if (page > b[size - 1])
+				b[size++] = page;
+		}
+		b[size++] = length;
+		return Arrays.copyOf(b, size);
+	}
+
+	/**
+	 * @return the offset of the first page starting after the given
+	 *         position, -1 if there are no more pages
+	 */
+	private long findPage(long from) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(dump, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			long length = channel.size();
+			while (from < length) {
+				long size = Math.min(WINDOW + PAGE_OPEN.length, length - from);
+				MappedByteBuffer bb = channel.map(
+						FileChannel.MapMode.READ_ONLY, from, size);
+				int found = indexOf(bb, (int) size);
+				if (found >= 0)
+					return from + found;
+				from += WINDOW;
+			}
+			return -1;
+		} finally {
+			raf.close();
+		}
+	}
+
+	private static int indexOf(MappedByteBuffer bb, int size) {
+		for (int i = 0; i <= size - PAGE_OPEN.length; i++) {
+			int j = 0;
+			while (j < PAGE_OPEN.length && bb.get(i + j) == PAGE_OPEN[j])
+				j++;
+			if (j == PAGE_OPEN.length)
+				return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the number of regions
+	 */
+	public int getRegions() {
+		return offsets.length - 1;
+	}
+
+	public Siteinfo getSiteinfo() {
+		return siteinfo;
+	}
+
+	/**
+	 * @return a parser reading only the given region
+	 */
+	public IDumpParser getParser(int region, IArticleFilter filter)
+			throws IOException {
+		WikiXMLScanner scanner = new WikiXMLScanner(new MappedInputStream(
+				dump, offsets[region], offsets[region + 1]), filter, siteinfo);
+		scanner.setBaseOffset(offsets[region]);
+		return scanner;
+	}
+
+	/**
+	 * Parses the regions in parallel, one thread for each region.
+	 *
+	 * @param filters
+	 *            - the filters of the regions, a filter receives the pages of
+	 *            its region in the order of the dump
+	 */
+	public void parse(List<? extends IArticleFilter> filters)
+			throws IOException, SAXException {
+		if (filters.size() != getRegions())
+			throw new IllegalArgumentException("one filter for each region");
+		List<RegionParser> parsers = new ArrayList<RegionParser>();
+		for (int i = 0; i < getRegions(); i++) {
+			RegionParser p = new RegionParser(getParser(i, filters.get(i)), i);
+			parsers.add(p);
+			p.start();
+		}
+		try {
+			for (RegionParser p : parsers) {
+				p.join();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted waiting for the regions", e);
+		}
+		for (RegionParser p : parsers) {
+			if (p.error instanceof IOException)
+				throw (IOException) p.error;
+			if (p.error instanceof SAXException)
+				throw (SAXException) p.error;
+			if (p.error != null)
+				throw new IOException("parsing region " + p.region, p.error);
+		}
+	}
+
+	private static class RegionParser extends Thread {
+		final IDumpParser parser;
+		final int region;
+		Throwable error;
+
+		RegionParser(IDumpParser parser, int region) {
+			super("region-parser-" + region);
+			this.parser = parser;
+			this.region = region;
+		}
+
+		@Override
+		public void run() {
+			try {
+				parser.parse();
+			} catch (Throwable t) {
+				error = t;
+			}
+		}
+	}
+}
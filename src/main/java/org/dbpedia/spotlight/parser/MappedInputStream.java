@@ -0,0 +1,101 @@
+/**
+ *  Copyright 2015 DBpedia Spotlight
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.dbpedia.spotlight.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads a region of a file through memory mapped segments, avoiding the
+ * copies and the system calls of a FileInputStream on large uncompressed
+ * dumps.
+ */
+public class MappedInputStream extends InputStream {
+
+	/** size of the mapped segments **/
+	static final long SEGMENT_SIZE = 1L << 30;
+
+	private final FileChannel channel;
+	private final long to;
+	/** start of the next segment to map **/
+	private long next;
+	private MappedByteBuffer segment;
+
+	/**
+	 * @param file
+	 *            - the file to read
+	 */
+	public MappedInputStream(File file) throws IOException {
+		this(file, 0, file.length());
+	}
+
+	/**
+	 * @param file
+	 *            - the file to read
+	 * @param from
+	 *            - the first byte of the region
+	 * @param to
+	 *            - the end of the region (excluded)
+	 */
+	public MappedInputStream(File file, long from, long to) throws IOException {
+		channel = new RandomAccessFile(file, "r").getChannel();
+		this.to = Math.min(to, channel.size());
+		next = from;
+	}
+
+	private boolean nextSegment() throws IOException {
+		if (next >= to)
+			return false;
+		long size = Math.min(SEGMENT_SIZE, to - next);
+		segment = channel.map(FileChannel.MapMode.READ_ONLY, next, size);
+		next += size;
+		return true;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if ((segment == null || !segment.hasRemaining()) && !nextSegment())
+			return -1;
+		return segment.get() & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0)
+			return 0;
+		if ((segment == null || !segment.hasRemaining()) && !nextSegment())
+			return -1;
+		int n = Math.min(len, segment.remaining());
+		segment.get(b, off, n);
+		return n;
+	}
+
+	@Override
+	public int available() {
+		return segment == null ? 0 : segment.remaining();
+	}
+
+	@Override
+	public void close() throws IOException {
+		segment = null;
+		channel.close();
+	}
+}
@@ -0,0 +1,300 @@
+/**
+ *  Copyright 2015 DBpedia Spotlight
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.dbpedia.spotlight.parser;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Reads a <tt>pages-articles-multistream.xml.bz2</tt> dump decompressing its
+ * bzip2 streams on many threads. Wikimedia compresses the pages of the
+ * multistream dumps in independent bzip2 streams (100 pages per stream), and
+ * publishes an index (<tt>pages-articles-multistream-index.txt.bz2</tt>) with
+ * a line <tt>offset:page-id:title</tt> for each page, where offset is the
+ * position in the dump of the stream containing the page.
+ * <p>
+ * The first stream (containing the siteinfo) is always returned first, and the
+ * last stream (closing the document) last. If the order of the pages is not
+ * required, the other streams are returned as soon as they are decompressed,
+ * since every stream contains only complete pages the XML is still valid.
+ */
+public class MultistreamInputStream extends InputStream {
+
+	/** streams decompressed in advance for each thread **/
+	private static final int STREAMS_PER_THREAD = 4;
+
+	private final FileChannel channel;
+	/** the offsets of the streams, followed by the length of the file **/
+	private final long[] offsets;
+	private final boolean ordered;
+	private final int window;
+
+	private final ExecutorService decoders;
+	private final CompletionService<byte[]> completed;
+	private final Deque<Future<byte[]>> pending = new ArrayDeque<Future<byte[]>>();
+
+	/** streams skipped after the first one **/
+	private int skipped = 0;
+	/** next stream to decompress **/
+	private int next = 0;
+	/** streams returned to the reader **/
+	private int returned = 0;
+
+	private byte[] chunk = new byte[0];
+	private int pos = 0;
+
+	/**
+	 * @param dump
+	 *            - the multistream dump
+	 * @param index
+	 *            - the index of the dump (plain or bzip2 compressed)
+	 * @param threads
+	 *            - the number of decompressing threads
+	 * @param ordered
+	 *            - true if the pages must be returned in the order of the dump
+	 */
+	public MultistreamInputStream(File dump, File index, int threads,
+			boolean ordered) throws IOException {
+		this(dump, readOffsets(index), threads, ordered);
+	}
+
+	/**
+	 * @param dump
+	 *            - the multistream dump
+	 * @param streamOffsets
+	 *            - the sorted offsets of the streams in the dump
+	 * @param threads
+	 *            - the number of decompressing threads
+	 * @param ordered
+	 *            - true if the pages must be returned in the order of the dump
+	 */
+	public MultistreamInputStream(File dump, long[] streamOffsets,
+			int threads, boolean ordered) throws IOException {
+		if (threads < 1)
+			throw new IllegalArgumentException("threads must be positive");
+		channel = new RandomAccessFile(dump, "r").getChannel();
+		offsets = boundaries(streamOffsets, channel.size());
+		this.ordered = ordered;
+		window = threads * STREAMS_PER_THREAD;
+		decoders = Executors.newFixedThreadPool(threads, new DecoderThreadFactory("bzip2-decoder"));
+		completed = new ExecutorCompletionService<byte[]>(decoders);
+	}
+
+	/**
+	 * Reads the offsets of the streams from the index of a multistream dump.
+	 *
+	 * @param index
+	 *            - the index (plain or bzip2 compressed)
+	 * @return the sorted offsets of the streams (without duplicates)
+	 */
+	public static long[] readOffsets(File index) throws IOException {
+		InputStream is = new FileInputStream(index);
+		if (index.getName().endsWith(".bz2"))
+			is = new ConcatenatedBZip2InputStream(is);
+		BufferedReader br = new BufferedReader(new InputStreamReader(is,
+				"UTF-8"));
+		long[] offsets = new long[1024];
+		int size = 0;
+		try {
+			String line;
+			while ((line = br.readLine()) != null) {
+				int sep = line.indexOf(':');
+				if (sep <= 0)
+					continue;
+				long offset = Long.parseLong(line.substring(0, sep));
+				if (size > 0 && offsets[size - 1] == offset)
+					continue;
+				if (size == offsets.length)
+					offsets = Arrays.copyOf(offsets, size * 2);
+				offsets[size++] = offset;
+			}
+		} finally {
+			br.close();
+		}
+		offsets = Arrays.copyOf(offsets, size);
+		Arrays.sort(offsets);
+		return offsets;
+	}
+
+	/**
+	 * Adds the beginning of the file (where the stream with the siteinfo
+	 * starts) and the end of the file to the offsets, removing duplicates.
+	 */
+	private static long[] boundaries(long[] streamOffsets, long length) {
+		long[] b = new long[streamOffsets.length + 2];
+		int size = 0;
+		b[size++] = 0;
+		for (long offset : streamOffsets) {
+			if (offset > b[size - 1] && offset < length)
+				b[size++] = offset;
+		}
+		b[size++] = length;
+		return Arrays.copyOf(b, size);
+	}
+
+	/**
+	 * @return the number of bzip2 streams in the dump
+	 */
+	public int getStreams() {
+		return offsets.length - 1;
+	}
+
+	/**
+	 * Skips the streams before the one starting at the given offset, to read
+	 * the dump from one of its pages. The first stream (with the siteinfo) is
+	 * still returned. Must be called before reading.
+	 * 
+	 * @param offset
+	 *            - the offset of a stream, as found in the index
+	 */
+	public void skipTo(long offset) {
+		if (next > 0)
+			throw new IllegalStateException("the dump is already being read");
+		int stream = Arrays.binarySearch(offsets, 0, offsets.length - 1,
+				offset);
+		if (stream < 0)
+			throw new IllegalArgumentException("no stream starts at " + offset);
+		skipped = Math.max(stream - 1, 0);
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (pos == chunk.length && !nextChunk())
+			return -1;
+		return chunk[pos++] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0)
+			return 0;
+		if (pos == chunk.length && !nextChunk())
+			return -1;
+		int n = Math.min(len, chunk.length - pos);
+		System.arraycopy(chunk, pos, b, off, n);
+		pos += n;
+		return n;
+	}
+
+	@Override
+	public int available() {
+		return chunk.length - pos;
+	}
+
+	@Override
+	public void close() throws IOException {
+		decoders.shutdownNow();
+		channel.close();
+	}
+
+	private boolean nextChunk() throws IOException {
+		int streams = getStreams() - skipped;
+		do {
+			if (returned == streams)
+				return false;
+			chunk = take(streams);
+			pos = 0;
+			returned++;
+		} while (chunk.length == 0);
+		return true;
+	}
+
+	private byte[] take(int streams) throws IOException {
+		// the first and the last stream keep their position
+		boolean inOrder = ordered || returned == 0 || returned == streams - 1;
+		int last = streams;
+		if (!ordered && returned == 0)
+			last = 1;
+		else if (!ordered && returned < streams - 1)
+			last = streams - 1;
+		while (next < last && next - returned < window) {
+			Decoder decoder = new Decoder(next++);
+			if (inOrder)
+				pending.add(decoders.submit(decoder));
+			else
+				completed.submit(decoder);
+		}
+		try {
+			Future<byte[]> f = inOrder ? pending.poll() : completed.take();
+			return f.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted decompressing the dump", e);
+		} catch (ExecutionException e) {
+			throw new IOException("decompressing the dump", e.getCause());
+		}
+	}
+
+	/**
+	 * Reads a stream from the dump and decompresses it.
+	 */
+	private class Decoder implements Callable<byte[]> {
+		private final int stream;
+
+		Decoder(int stream) {
+			this.stream = (stream == 0) ? 0 : stream + skipped;
+		}
+
+		public byte[] call() throws IOException {
+			long start = offsets[stream];
+			int length = (int) (offsets[stream + 1] - start);
+			ByteBuffer bb = ByteBuffer.allocate(length);
+			while (bb.hasRemaining()) {
+				if (channel.read(bb, start + bb.position()) < 0)
+					throw new IOException("unexpected end of the dump");
+			}
+			return decompress(bb.array());
+		}
+	}
+
+	/**
+	 * Decompresses a sequence of bzip2 streams.
+	 */
+	static byte[] decompress(byte[] compressed) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(
+				compressed.length * 5);
+		InputStream in = new ConcatenatedBZip2InputStream(
+				new ByteArrayInputStream(compressed));
+		byte[] buffer = new byte[64 * 1024];
+		int n;
+		while ((n = in.read(buffer)) != -1) {
+			out.write(buffer, 0, n);
+		}
+		in.close();
+		return out.toByteArray();
+	}
+
+}
@@ -0,0 +1,449 @@
+/**
+ *  Copyright 2015 DBpedia Spotlight
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.dbpedia.spotlight.parser;
+
+import it.cnr.isti.hpc.wikipedia.article.Article;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An index of the offsets of the pages in a dump, stored in the format of the
+ * index of the multistream dumps: a line <tt>offset:page-id:title</tt> for
+ * each page. For an uncompressed dump the offset is the position of the
+ * <tt>&lt;page&gt;</tt> tag, for a multistream dump the position of the bzip2
+ * stream containing the page (the index published by Wikimedia can be used
+ * as it is).
+ * <p>
+ * The first lookup reads the whole index once and writes next to it (or in
+ * the temporary directory, if that is not possible) a lookup file,
+ * <tt>&lt;index&gt;.lookup</tt>, with the lines of the index (the titles
+ * normalized) and the tables of the ids and of the hashes of the titles,
+ * sorted: a lookup is then a binary search in the tables. The lookup file is
+ * written again if the index is modified.
+ *
+ * @see WikiPage#getOffset()
+ */
+public class PageOffsetIndex {
+
+	private static final Logger logger = LoggerFactory
+			.getLogger(PageOffsetIndex.class);
+
+	/** id or title hash, and number of the line **/
+	private static final int KEY_SIZE = 12;
+	/** number of lines, number of ids, start of the lines **/
+	private static final int HEADER_SIZE = 24;
+
+	private final File index;
+	private File lookup;
+
+	/**
+	 * @param index
+	 *            - the index file (plain or bzip2 compressed)
+	 */
+	public PageOffsetIndex(File index) {
+		this.index = index;
+	}
+
+	/**
+	 * A line of the index.
+	 */
+	public static class Entry {
+		private final long offset;
+		private final String id;
+		private final String title;
+
+		Entry(long offset, String id, String title) {
+			this.offset = offset;
+			this.id = id;
+			this.title = title;
+		}
+
+		public long getOffset() {
+			return offset;
+		}
+
+		public String getId() {
+			return id;
+		}
+
+		/**
+		 * @return the title, normalized
+		 */
+		public String getTitle() {
+			return title;
+		}
+	}
+
+	/**
+	 * @return the title as a key of the index (spaces and underscores are
+	 *         the same, the first letter is capitalized)
+	 */
+	public static String normalize(String title) {
+		return Article.getTitleInWikistyle(title.trim());
+	}
+
+	/**
+	 * Looks up the given pages.
+	 *
+	 * @param ids
+	 *            - the ids of the pages
+	 * @param titles
+	 *            - the titles of the pages
+	 * @return the entries of the pages found, in the order of the index
+	 */
+	public List<Entry> lookup(Collection<String> ids, Collection<String> titles)
+			throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(getLookupFile(), "r");
+		try {
+			long lines = raf.readLong();
+			long nIds = raf.readLong();
+			long linesStart = raf.readLong();
+			// the start of the first line, then the end of each line
+			long idsStart = HEADER_SIZE + 8 * (lines + 1);
+			long titlesStart = idsStart + KEY_SIZE * nIds;
+			// the numbers of the lines found, in the order of the index
+			TreeMap<Integer, Entry> found = new TreeMap<Integer, Entry>();
+			for (String id : ids) {
+				long key;
+				try {
+					key = Long.parseLong(id.trim());
+				} catch (NumberFormatException e) {
+					continue;
+				}
+				for (long i = search(raf, idsStart, nIds, key); i < nIds
+						&& key(raf, idsStart, i) == key; i++) {
+					int line = raf.readInt();
+					if (!found.containsKey(line))
+						found.put(line, readLine(raf, linesStart, line));
+				}
+			}
+			for (String title : titles) {
+				title = normalize(title);
+				long key = hash(title);
+				for (long i = search(raf, titlesStart, lines, key); i < lines
+						&& key(raf, titlesStart, i) == key; i++) {
+					int line = raf.readInt();
+					if (found.containsKey(line))
+						continue;
+					Entry e = readLine(raf, linesStart, line);
+					// different titles can have the same hash
+					if (e.getTitle().equals(title))
+						found.put(line, e);
+				}
+			}
+			return new ArrayList<Entry>(found.values());
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * @return the first position in the table of a key not less than the
+	 *         given one
+	 */
+	private static long search(RandomAccessFile raf, long table, long size,
+			long key) throws IOException {
+		long low = 0;
+		long high = size;
+		while (low < high) {
+			long mid = (low + high) >>> 1;
+			if (key(raf, table, mid) < key)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+	/**
+	 * Reads the key at the given position of a table, leaving the file
+	 * pointer on the number of its line.
+	 */
+	private static long key(RandomAccessFile raf, long table, long i)
+			throws IOException {
+		raf.seek(table + KEY_SIZE * i);
+		return raf.readLong();
+	}
+
+	private static Entry readLine(RandomAccessFile raf, long linesStart,
+			int line) throws IOException {
+		raf.seek(HEADER_SIZE + 8L * line);
+		long start = raf.readLong();
+		long end = raf.readLong();
+		byte[] bytes = new byte[(int) (end - start)];
+		raf.seek(linesStart + start);
+		raf.readFully(bytes);
+		return parse(new String(bytes, "UTF-8"));
+	}
+
+	/**
+	 * @return the entry of a line of the index, null if it is malformed
+	 */
+	private static Entry parse(String line) {
+		int first = line.indexOf(':');
+		int second = line.indexOf(':', first + 1);
+		if (first <= 0 || second < 0)
+			return null;
+		try {
+			return new Entry(Long.parseLong(line.substring(0, first)),
+					line.substring(first + 1, second), line.substring(second + 1));
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * FNV-1a, on the chars of the title.
+	 */
+	private static long hash(String title) {
+		long h = 0xcbf29ce484222325L;
+		for (int i = 0; i < title.length(); i++) {
+			h ^= title.charAt(i);
+			h *= 0x100000001b3L;
+		}
+		return h;
+	}
+
+	private synchronized File getLookupFile() throws IOException {
+		if (lookup != null && lookup.lastModified() >= index.lastModified())
+			return lookup;
+		File file = new File(index.getPath() + ".lookup");
+		if (file.exists() && file.lastModified() >= index.lastModified()) {
+			lookup = file;
+			return lookup;
+		}
+		File dir = index.getAbsoluteFile().getParentFile();
+		if (dir == null || !dir.canWrite()) {
+			file = File.createTempFile(index.getName(), ".lookup");
+			file.deleteOnExit();
+		}
+		logger.info("writing the lookup file {} of the index {}", file, index);
+		// a lookup file is complete once it has its name
+		File tmp = new File(file.getPath() + ".tmp");
+		writeLookupFile(tmp);
+		file.delete();
+		if (!tmp.renameTo(file))
+			throw new IOException("cannot write the lookup file " + file);
+		lookup = file;
+		return lookup;
+	}
+
+	/**
+	 * Reads the index once, writing the lines (with the titles normalized)
+	 * to a temporary file and keeping the keys in memory, then writes the
+	 * lookup file: the header, the end of each line, the sorted tables and
+	 * the lines.
+	 */
+	private void writeLookupFile(File file) throws IOException {
+		File linesFile = File.createTempFile(index.getName(), ".lines");
+		int lines = 0;
+		int nIds = 0;
+		long[] ends = new long[1024];
+		long[] ids = new long[1024];
+		int[] idLines = new int[1024];
+		long[] hashes = new long[1024];
+		try {
+			OutputStream out = new BufferedOutputStream(new FileOutputStream(
+					linesFile));
+			BufferedReader br = open();
+			try {
+				long length = 0;
+				String line;
+				while ((line = br.readLine()) != null) {
+					Entry e = parse(line);
+					if (e == null)
+						continue;
+					String title = normalize(e.getTitle());
+					byte[] bytes = (e.getOffset() + ":" + e.getId() + ":"
+							+ title).getBytes("UTF-8");
+					out.write(bytes);
+					length += bytes.length;
+					if (lines == ends.length) {
+						ends = Arrays.copyOf(ends, lines * 2);
+						hashes = Arrays.copyOf(hashes, lines * 2);
+					}
+					ends[lines] = length;
+					hashes[lines] = hash(title);
+					try {
+						long id = Long.parseLong(e.getId().trim());
+						if (nIds == ids.length) {
+							ids = Arrays.copyOf(ids, nIds * 2);
+							idLines = Arrays.copyOf(idLines, nIds * 2);
+						}
+						ids[nIds] = id;
+						idLines[nIds++] = lines;
+					} catch (NumberFormatException ex) {
+						// found only by title
+					}
+					lines++;
+				}
+			} finally {
+				br.close();
+				out.close();
+			}
+			int[] titleLines = new int[lines];
+			for (int i = 0; i < lines; i++)
+				titleLines[i] = i;
+			sort(ids, idLines, 0, nIds);
+			sort(hashes, titleLines, 0, lines);
+
+			DataOutputStream dos = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(file)));
+			try {
+				long linesStart = HEADER_SIZE + 8L * (lines + 1)
+						+ (long) KEY_SIZE * (nIds + lines);
+				dos.writeLong(lines);
+				dos.writeLong(nIds);
+				dos.writeLong(linesStart);
+				// the start of the first line, then the end of each line
+				dos.writeLong(0);
+				for (int i = 0; i < lines; i++)
+					dos.writeLong(ends[i]);
+				for (int i = 0; i < nIds; i++) {
+					dos.writeLong(ids[i]);
+					dos.writeInt(idLines[i]);
+				}
+				for (int i = 0; i < lines; i++) {
+					dos.writeLong(hashes[i]);
+					dos.writeInt(titleLines[i]);
+				}
+				InputStream in = new FileInputStream(linesFile);
+				try {
+					byte[] buffer = new byte[64 * 1024];
+					int n;
+					while ((n = in.read(buffer)) != -1)
+						dos.write(buffer, 0, n);
+				} finally {
+					in.close();
+				}
+			} finally {
+				dos.close();
+			}
+		} finally {
+			linesFile.delete();
+		}
+	}
+
+	/**
+	 * Sorts the keys between <tt>from</tt> and <tt>to</tt> (and the lines
+	 * with them) by key, and by line for the same key.
+	 */
+	private static void sort(long[] keys, int[] lines, int from, int to) {
+		while (to - from > 16) {
+			int mid = (from + to) >>> 1;
+			long pk = keys[mid];
+			int pl = lines[mid];
+			int i = from;
+			int j = to - 1;
+			while (i <= j) {
+				while (compare(keys[i], lines[i], pk, pl) < 0)
+					i++;
+				while (compare(keys[j], lines[j], pk, pl) > 0)
+					j--;
+				if (i <= j) {
+					swap(keys, lines, i++, j--);
+				}
+			}
+			// recurses on the smaller part
+			if (j + 1 - from < to - i) {
+				sort(keys, lines, from, j + 1);
+				from = i;
+			} else {
+				sort(keys, lines, i, to);
+				to = j + 1;
+			}
+		}
+		for (int i = from + 1; i < to; i++) {
+			for (int j = i; j > from
+					&& compare(keys[j - 1], lines[j - 1], keys[j], lines[j]) > 0; j--)
+				swap(keys, lines, j - 1, j);
+		}
+	}
+
+	private static int compare(long k1, int l1, long k2, int l2) {
+		if (k1 != k2)
+			return k1 < k2 ? -1 : 1;
+		return l1 < l2 ? -1 : (l1 == l2 ? 0 : 1);
+	}
+
+	private static void swap(long[] keys, int[] lines, int i, int j) {
+		long k = keys[i];
+		keys[i] = keys[j];
+		keys[j] = k;
+		int l = lines[i];
+		lines[i] = lines[j];
+		lines[j] = l;
+	}
+
+	private BufferedReader open() throws IOException {
+		InputStream is = new FileInputStream(index);
+		if (index.getName().endsWith(".bz2"))
+			is = new ConcatenatedBZip2InputStream(is);
+		return new BufferedReader(new InputStreamReader(is, "UTF-8"));
+	}
+
+	/**
+	 * Writes the index while the dump is parsed, the titles normalized.
+	 */
+	public static class IndexWriter {
+		private final Writer out;
+
+		/**
+		 * @param index
+		 *            - the index file to create
+		 */
+		public IndexWriter(File index) throws IOException {
+			out = new BufferedWriter(new OutputStreamWriter(
+					new FileOutputStream(index), "UTF-8"));
+		}
+
+		/**
+		 * Adds a page, pages without offset are ignored.
+		 */
+		public synchronized void add(WikiPage page) throws IOException {
+			if (page.getOffset() < 0)
+				return;
+			out.write(page.getOffset() + ":" + page.getId() + ":"
+					+ normalize(page.getTitle()) + "\n");
+		}
+
+		public synchronized void close() throws IOException {
+			out.close();
+		}
+	}
+}
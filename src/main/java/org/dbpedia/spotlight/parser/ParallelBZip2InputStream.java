@@ -0,0 +1,282 @@
+/**
+ *  Copyright 2015 DBpedia Spotlight
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.dbpedia.spotlight.parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Decompresses a bzip2 file (also made of concatenated streams) on many
+ * threads, without an index. The compressed data is scanned for the magic
+ * numbers starting the bzip2 blocks (and ending the streams), each block is
+ * wrapped in a single-block bzip2 stream and decompressed by a pool of
+ * threads, and the decompressed blocks are returned in order.
+ * <p>
+ * Blocks are not aligned to bytes, so the magic numbers are searched bit by
+ * bit. The compressed data of a block can contain the 48 bits of a magic
+ * number by chance: the false block fails to decompress, and it is merged
+ * with the following one. For this reason the bits after the end of a stream
+ * (its CRC, and the header of the next stream) are kept as well, as a block
+ * that is not decompressed: a block ending with a false end of stream is
+ * merged with them, and the end of stream is accepted only if the merge fails.
+ */
+public class ParallelBZip2InputStream extends InputStream {
+
+	private static final long BLOCK_MAGIC = 0x314159265359L;
+	private static final long END_OF_STREAM_MAGIC = 0x177245385090L;
+	private static final long MAGIC_MASK = 0xffffffffffffL;
+	private static final int MAGIC_BITS = 48;
+	private static final int CRC_BITS = 32;
+
+	/** header of the single-block streams (the largest block size) **/
+	private static final long HEADER = ('B' << 24) | ('Z' << 16) | ('h' << 8)
+			| '9';
+
+	/** blocks decompressed in advance for each thread **/
+	private static final int BLOCKS_PER_THREAD = 2;
+	/** blocks merged to a block that fails to decompress **/
+	private static final int MAX_MERGES = 4;
+
+	private final InputStream in;
+	private final ExecutorService decoders;
+	private final int window;
+	private final Deque<Block> pending = new ArrayDeque<Block>();
+
+	/** the compressed data **/
+	private final byte[] buffer = new byte[64 * 1024];
+	private int bufferPos = 0;
+	private int bufferLength = 0;
+	private int currentByte;
+	private int bitsLeft = 0;
+	private boolean endOfInput = false;
+	/** the last 48 bits read **/
+	private long magic = 0;
+	/** the block being scanned, null before the first one **/
+	private BitBuffer current;
+	/** true if the block being scanned starts with an end of stream **/
+	private boolean currentEnd;
+
+	private byte[] chunk = new byte[0];
+	private int pos = 0;
+
+	/**
+	 * @param in
+	 *            - the bzip2 compressed data
+	 * @param threads
+	 *            - the number of decompressing threads
+	 */
+	public ParallelBZip2InputStream(InputStream in, int threads) {
+		if (threads < 1)
+			throw new IllegalArgumentException("threads must be positive");
+		this.in = in;
+		window = threads * BLOCKS_PER_THREAD;
+		decoders = Executors.newFixedThreadPool(threads,
+				new DecoderThreadFactory("bzip2-block-decoder"));
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (pos == chunk.length && !nextChunk())
+			return -1;
+		return chunk[pos++] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0)
+			return 0;
+		if (pos == chunk.length && !nextChunk())
+			return -1;
+		int n = Math.min(len, chunk.length - pos);
+		System.arraycopy(chunk, pos, b, off, n);
+		pos += n;
+		return n;
+	}
+
+	@Override
+	public int available() {
+		return chunk.length - pos;
+	}
+
+	@Override
+	public void close() throws IOException {
+		decoders.shutdownNow();
+		in.close();
+	}
+
+	private boolean nextChunk() throws IOException {
+		do {
+			fill();
+			Block block = pending.poll();
+			if (block == null)
+				return false;
+			chunk = take(block);
+			pos = 0;
+		} while (chunk.length == 0);
+		return true;
+	}
+
+	/**
+	 * Scans the input and submits the blocks, up to the window size.
+	 */
+	private void fill() throws IOException {
+		while (pending.size() < window) {
+			final Block block = scan();
+			if (block == null)
+				return;
+			block.data = decoders.submit(new Callable<byte[]>() {
+				public byte[] call() throws IOException {
+					return block.endOfStream ? new byte[0] : decode(block.bits);
+				}
+			});
+			pending.add(block);
+		}
+	}
+
+	private byte[] take(Block block) throws IOException {
+		try {
+			return block.data.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted decompressing the dump", e);
+		} catch (ExecutionException e) {
+			return merge(block, e.getCause());
+		}
+	}
+
+	/**
+	 * A block that fails to decompress could have been split by a false magic
+	 * number (of a block or of an end of stream), tries to decompress it
+	 * together with the following blocks.
+	 */
+	private byte[] merge(Block block, Throwable error) throws IOException {
+		List<BitBuffer> parts = new ArrayList<BitBuffer>();
+		parts.add(block.bits);
+		for (int i = 0; i < MAX_MERGES; i++) {
+			fill();
+			Block last = pending.poll();
+			if (last == null)
+				break;
+			last.data.cancel(false);
+			parts.add(last.bits);
+			try {
+				return decode(parts.toArray(new BitBuffer[parts.size()]));
+			} catch (IOException e) {
+				// keep merging
+			} catch (RuntimeException e) {
+				// corrupted data can also raise runtime exceptions
+			}
+		}
+		throw new IOException("decompressing a bzip2 block", error);
+	}
+
+	/**
+	 * Reads the input until the next magic number, the bits between an end
+	 * of stream and the next block are returned as a block too.
+	 *
+	 * @return the block, or null at the end of the input
+	 */
+	private Block scan() throws IOException {
+		while (true) {
+			if (bitsLeft == 0) {
+				if (!readByte()) {
+					if (current != null && !currentEnd)
+						throw new IOException("unexpected end of the bzip2 file");
+					// the end of the last stream is never merged
+					current = null;
+					return null;
+				}
+				if (current != null)
+					current.appendBits(currentByte, 8);
+			}
+			int bit = (currentByte >>> --bitsLeft) & 1;
+			magic = ((magic << 1) | bit) & MAGIC_MASK;
+			if (magic != BLOCK_MAGIC && magic != END_OF_STREAM_MAGIC)
+				continue;
+
+			Block block = null;
+			if (current != null) {
+				// the whole byte was appended
+				current.truncate(current.length() - bitsLeft - MAGIC_BITS);
+				block = new Block(current, currentEnd);
+			}
+			current = new BitBuffer();
+			currentEnd = magic == END_OF_STREAM_MAGIC;
+			current.appendBits(magic, MAGIC_BITS);
+			current.appendBits(currentByte, bitsLeft);
+			if (block != null)
+				return block;
+		}
+	}
+
+	private boolean readByte() throws IOException {
+		if (bufferPos == bufferLength) {
+			if (endOfInput)
+				return false;
+			bufferLength = in.read(buffer);
+			bufferPos = 0;
+			if (bufferLength <= 0) {
+				bufferLength = 0;
+				endOfInput = true;
+				return false;
+			}
+		}
+		currentByte = buffer[bufferPos++] & 0xff;
+		bitsLeft = 8;
+		return true;
+	}
+
+	/**
+	 * Decompresses the blocks wrapping them in a bzip2 stream, since the
+	 * stream contains a single block its CRC is the CRC of the block.
+	 */
+	static byte[] decode(BitBuffer... blocks) throws IOException {
+		BitBuffer stream = new BitBuffer(
+				(int) (blocks[0].length() >>> 3) + 32);
+		stream.appendBits(HEADER, 32);
+		for (BitBuffer block : blocks) {
+			stream.append(block);
+		}
+		stream.appendBits(END_OF_STREAM_MAGIC, MAGIC_BITS);
+		stream.appendBits(blocks[0].getBits(MAGIC_BITS, CRC_BITS), CRC_BITS);
+		return MultistreamInputStream.decompress(stream.toByteArray());
+	}
+
+	private static class Block {
+		final BitBuffer bits;
+		/**
+		 * true if the bits are the end of a stream, followed by the header
+		 * of the next one, and are not decompressed
+		 **/
+		final boolean endOfStream;
+		Future<byte[]> data;
+
+		Block(BitBuffer bits, boolean endOfStream) {
+			this.bits = bits;
+			this.endOfStream = endOfStream;
+		}
+	}
+}
@@ -0,0 +1,55 @@
+/**
+ *  Copyright 2015 DBpedia Spotlight
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.dbpedia.spotlight.parser;
+
+import info.bliki.wiki.dump.WikiArticle;
+
+/**
+ * A page of the dump, with the target of the redirect declared in the
+ * <tt>redirect</tt> element (if the page is a redirect) and the offset of the
+ * page in the dump.
+ */
+public class WikiPage extends WikiArticle {
+
+	private String redirect;
+	private long offset = -1;
+
+	/**
+	 * @return the title of the page pointed by the redirect, null if the page
+	 *         is not a redirect (or the dump does not declare redirects)
+	 */
+	public String getRedirect() {
+		return redirect;
+	}
+
+	public void setRedirect(String redirect) {
+		this.redirect = redirect;
+	}
+
+	/**
+	 * @return the offset of the <tt>&lt;page&gt;</tt> tag in the uncompressed
+	 *         dump, -1 if unknown
+	 */
+	public long getOffset() {
+		return offset;
+	}
+
+	public void setOffset(long offset) {
+		this.offset = offset;
+	}
+
+}
@@ -21,8 +21,10 @@ import info.bliki.wiki.dump.IArticleFilter;
 import info.bliki.wiki.dump.Siteinfo;
 import info.bliki.wiki.dump.WikiArticle;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -32,7 +34,6 @@ import java.io.Reader;
 import java.io.UnsupportedEncodingException;
 import java.util.zip.GZIPInputStream;
 
-import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
 import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
@@ -50,7 +51,7 @@ import org.xml.sax.helpers.XMLReaderFactory;
  * @author Marco Schmidt
  * 
  */
-public class WikiXMLParser extends DefaultHandler {
+public class WikiXMLParser extends DefaultHandler implements IDumpParser {
 	private static final String WIKIPEDIA_SITEINFO = "siteinfo";
 
 	private static final String WIKIPEDIA_TITLE = "title";
@@ -67,11 +68,15 @@ public class WikiXMLParser extends DefaultHandler {
 
 	private static final String WIKIPEDIA_ID = "id";
 
+	private static final String WIKIPEDIA_NS = "ns";
+
+	private static final String WIKIPEDIA_REDIRECT = "redirect";
+
 	private Siteinfo fSiteinfo = null;
 
 	private String fNamespaceKey = null;
 
-	private WikiArticle fArticle;
+	private WikiPage fArticle;
 
 	private boolean fRevision;
 
@@ -83,6 +88,11 @@ public class WikiXMLParser extends DefaultHandler {
 
 	private IArticleFilter fArticleFilter;
 
+	private IPageSelector fPageSelector;
+
+	/** true while the text of a page not selected is skipped **/
+	private boolean fSkipText;
+
 	public WikiXMLParser(String filename, IArticleFilter filter) throws UnsupportedEncodingException, IOException, SAXException,
 			FileNotFoundException {
 		this(getBufferedReader(filename), filter);
@@ -96,6 +106,7 @@ public class WikiXMLParser extends DefaultHandler {
 		super();
 		try {
 			fArticleFilter = filter;
+			setPageSelector(filter);
 			fXMLReader = XMLReaderFactory.createXMLReader();
 			fXMLReader.setContentHandler(this);
 			fXMLReader.setErrorHandler(this);
@@ -108,34 +119,63 @@ public class WikiXMLParser extends DefaultHandler {
 	public WikiXMLParser(Reader reader, IArticleFilter filter) throws SAXException {
 		super();
 		fArticleFilter = filter;
+		setPageSelector(filter);
 		fXMLReader = XMLReaderFactory.createXMLReader();
 		fXMLReader.setContentHandler(this);
 		fXMLReader.setErrorHandler(this);
 		fReader = reader;
 	}
 
+	private void setPageSelector(IArticleFilter filter) {
+		if (filter instanceof IPageSelector) {
+			fPageSelector = (IPageSelector) filter;
+		}
+	}
+
 	/**
 	 * 
-	 * @return a BufferedReader created from wikiDumpFilename
+	 * @return a BufferedReader created from wikiDumpFilename (bzip2 dumps are
+	 *         decompressed in parallel, see {@link ParallelBZip2InputStream})
 	 * @throws UnsupportedEncodingException
 	 * 
 	 */
 	public static BufferedReader getBufferedReader(String wikiDumpFilename) throws UnsupportedEncodingException,
 			FileNotFoundException, IOException {
-		BufferedReader br = null;
-
-		if (wikiDumpFilename.endsWith(".gz")) {
+		return new BufferedReader(new InputStreamReader(getInputStream(wikiDumpFilename), "UTF-8"), 1 << 16);
+	}
 
-			br = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(wikiDumpFilename)), "UTF-8"));
+	/**
+	 * 
+	 * @return the decompressed content of wikiDumpFilename (bzip2 dumps are
+	 *         decompressed in parallel, see {@link ParallelBZip2InputStream})
+	 */
+	public static InputStream getInputStream(String wikiDumpFilename) throws FileNotFoundException, IOException {
+		InputStream is = new BufferedInputStream(new FileInputStream(wikiDumpFilename), 1 << 16);
 
+		if (wikiDumpFilename.endsWith(".gz")) {
+			is = new GZIPInputStream(is);
 		} else if (wikiDumpFilename.endsWith(".bz2")) {
-			FileInputStream fis = new FileInputStream(wikiDumpFilename);
-			br = new BufferedReader(new InputStreamReader(new BZip2CompressorInputStream(fis), "UTF-8"));
-		} else {
-			br = new BufferedReader(new InputStreamReader(new FileInputStream(wikiDumpFilename), "UTF-8"));
+			// multistream dumps contain many concatenated bzip2 streams
+			int threads = Runtime.getRuntime().availableProcessors();
+			if (threads > 1) {
+				is = new ParallelBZip2InputStream(is, threads);
+			} else {
+				is = new ConcatenatedBZip2InputStream(is);
+			}
 		}
+		return is;
+	}
 
-		return br;
+	/**
+	 * 
+	 * @return a BufferedReader on a multistream dump, decompressed in parallel
+	 *         using the offsets of the streams in its index
+	 * @see MultistreamInputStream
+	 */
+	public static BufferedReader getMultistreamBufferedReader(String wikiDumpFilename, String indexFilename, int threads,
+			boolean ordered) throws IOException {
+		InputStream is = new MultistreamInputStream(new File(wikiDumpFilename), new File(indexFilename), threads, ordered);
+		return new BufferedReader(new InputStreamReader(is, "UTF-8"), 1 << 16);
 	}
 
 	/**
@@ -194,12 +234,20 @@ public class WikiXMLParser extends DefaultHandler {
 		}
 
 		if (WIKIPEDIA_PAGE.equals(qName)) {
-			fArticle = new WikiArticle();
+			fArticle = new WikiPage();
 			fRevision = false;
+			fSkipText = false;
 		}
 		if (WIKIPEDIA_REVISION.equals(qName)) {
 			fRevision = true;
 		}
+		if (WIKIPEDIA_REDIRECT.equals(qName) && fArticle != null) {
+			fArticle.setRedirect(atts.getValue("title"));
+		}
+		if (WIKIPEDIA_TEXT.equals(qName) && fArticle != null && fPageSelector != null) {
+			// title and namespace are known, decide before buffering the text
+			fSkipText = !fPageSelector.select(fArticle, fSiteinfo);
+		}
 	}
 
 	@Override
@@ -222,11 +270,17 @@ public class WikiXMLParser extends DefaultHandler {
 			} else {
 				if (WIKIPEDIA_PAGE.equals(qName)) {
 				} else if (WIKIPEDIA_TEXT.equals(qName)) {
-					fArticle.setText(getString());
-					fArticleFilter.process(fArticle, fSiteinfo);
+					if (fSkipText) {
+						fSkipText = false;
+					} else {
+						fArticle.setText(getString());
+						fArticleFilter.process(fArticle, fSiteinfo);
+					}
 					// emit(wikiText);
 				} else if (WIKIPEDIA_TITLE.equals(qName)) {
 					fArticle.setTitle(getString(), fSiteinfo);
+				} else if (WIKIPEDIA_NS.equals(qName)) {
+					setNamespace(fArticle, fSiteinfo, getString());
 				} else if (WIKIPEDIA_TIMESTAMP.equals(qName)) {
 					fArticle.setTimeStamp(getString());
 				} else if (!fRevision && WIKIPEDIA_ID.equals(qName)) {
@@ -242,6 +296,25 @@ public class WikiXMLParser extends DefaultHandler {
 		}
 	}
 
+	/**
+	 * Sets the namespace of the page from the <tt>ns</tt> element (more
+	 * reliable than the prefix of the title).
+	 */
+	static void setNamespace(WikiArticle article, Siteinfo siteinfo, String ns) {
+		if (ns == null) {
+			return;
+		}
+		try {
+			Integer key = Integer.valueOf(ns.trim());
+			article.setIntegerNamespace(key);
+			if (siteinfo != null) {
+				article.setNamespace(siteinfo.getNamespace(key));
+			}
+		} catch (NumberFormatException e) {
+			// keep the namespace of the title
+		}
+	}
+
 	/**
 	 * parse an unlimited amount of characters between 2 enclosing XML-Tags
 	 * 
@@ -249,6 +322,9 @@ public class WikiXMLParser extends DefaultHandler {
 	 */
 	@Override
 	public void characters(char[] ch, int start, int length) throws SAXException {
+		if (fSkipText) {
+			return;
+		}
 		if (fData == null) {
 			fData = new StringBuilder(length);
 		}
@@ -0,0 +1,406 @@
+/**
+ *  Copyright 2015 DBpedia Spotlight
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.dbpedia.spotlight.parser;
+
+import info.bliki.wiki.dump.IArticleFilter;
+import info.bliki.wiki.dump.Siteinfo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.SAXException;
+
+/**
+ * A parser for the Wikipedia XML dumps working directly on the UTF-8 bytes,
+ * an alternative to the SAX based {@link WikiXMLParser}. The export format of
+ * MediaWiki is fixed and simple: the scanner looks for the
+ * <tt>&lt;page&gt;</tt> boundaries, and inside each page only for the
+ * elements it needs (title, ns, id, redirect, timestamp and text), decoding
+ * into strings only their content. The content of an element never contains
+ * a <tt>&lt;</tt> (MediaWiki escapes it), so the tags can be searched without
+ * tokenizing the whole document, and only the entities emitted by MediaWiki
+ * (the predefined ones and the numeric references) are decoded.
+ * <p>
+ * The pages are given to the filter exactly as the WikiXMLParser does (once
+ * for each revision), and an {@link IPageSelector} filter is asked before the
+ * text is decoded.
+ */
+public class WikiXMLScanner implements IDumpParser {
+	/**
+	 * Logger for this class
+	 */
+	private static final Logger logger = LoggerFactory
+			.getLogger(WikiXMLScanner.class);
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final byte[] PAGE_OPEN = bytes("<page>");
+	private static final byte[] PAGE_CLOSE = bytes("</page>");
+	private static final byte[] SITEINFO_OPEN = bytes("<siteinfo>");
+	private static final byte[] SITEINFO_CLOSE = bytes("</siteinfo>");
+	private static final byte[] NAMESPACE_OPEN = bytes("<namespace ");
+	private static final byte[] REVISION_OPEN = bytes("<revision>");
+	private static final byte[] REVISION_CLOSE = bytes("</revision>");
+	private static final byte[] REDIRECT_OPEN = bytes("<redirect");
+	private static final byte[] KEY_ATTRIBUTE = bytes("key=\"");
+	private static final byte[] TITLE_ATTRIBUTE = bytes("title=\"");
+
+	private final InputStream in;
+	private final IArticleFilter filter;
+	private IPageSelector selector;
+
+	private byte[] buf = new byte[1 << 20];
+	/** first byte not consumed **/
+	private int start = 0;
+	/** end of the data read **/
+	private int end = 0;
+	private boolean endOfInput = false;
+
+	private Siteinfo siteinfo;
+
+	/** offset in the dump of the beginning of the input **/
+	private long baseOffset = 0;
+	/** bytes discarded from the beginning of the buffer **/
+	private long discarded = 0;
+	/** maximum number of pages to read **/
+	private long maxPages = Long.MAX_VALUE;
+
+	/**
+	 * @param in
+	 *            - the XML dump (decompressed)
+	 * @param filter
+	 *            - the filter receiving the pages
+	 */
+	public WikiXMLScanner(InputStream in, IArticleFilter filter) {
+		this(in, filter, null);
+	}
+
+	/**
+	 * @param in
+	 *            - a part of the XML dump (decompressed), starting with a
+	 *            <tt>&lt;page&gt;</tt>
+	 * @param filter
+	 *            - the filter receiving the pages
+	 * @param siteinfo
+	 *            - the siteinfo in the header of the dump
+	 * @see MappedDumpReader
+	 */
+	public WikiXMLScanner(InputStream in, IArticleFilter filter,
+			Siteinfo siteinfo) {
+		this.in = in;
+		this.filter = filter;
+		this.siteinfo = siteinfo;
+		if (filter instanceof IPageSelector) {
+			selector = (IPageSelector) filter;
+		}
+	}
+
+	/**
+	 * @param header
+	 *            - the header of the dump
+	 * @return the siteinfo in the header, null if missing
+	 */
+	public static Siteinfo readSiteinfo(InputStream header) throws IOException {
+		WikiXMLScanner scanner = new WikiXMLScanner(header, null);
+		try {
+			while (scanner.fill()) {
+				// the header is small, read it all
+			}
+			return scanner.parseSiteinfo(0, scanner.end);
+		} finally {
+			header.close();
+		}
+	}
+
+	/**
+	 * Sets the offset in the dump of the beginning of the input, used to
+	 * compute the offsets of the pages (see {@link WikiPage#getOffset()}).
+	 */
+	public void setBaseOffset(long baseOffset) {
+		this.baseOffset = baseOffset;
+	}
+
+	/**
+	 * Stops the parsing after the given number of pages.
+	 */
+	public void setMaxPages(long maxPages) {
+		this.maxPages = maxPages;
+	}
+
+	public void parse() throws IOException, SAXException {
+		try {
+			int page = find(PAGE_OPEN, start);
+			if (siteinfo == null)
+				siteinfo = parseSiteinfo(start, page < 0 ? end : page);
+			long pages = 0;
+			while (page >= 0 && pages++ < maxPages) {
+				int close = find(PAGE_CLOSE, page);
+				if (close < 0)
+					throw new SAXException("unexpected end of the dump");
+				parsePage(baseOffset + discarded + page,
+						page + PAGE_OPEN.length, close);
+				start = close + PAGE_CLOSE.length;
+				compact();
+				page = find(PAGE_OPEN, start);
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	private Siteinfo parseSiteinfo(int from, int to) {
+		int open = indexOf(SITEINFO_OPEN, from, to);
+		if (open < 0)
+			return null;
+		int close = indexOf(SITEINFO_CLOSE, open, to);
+		if (close < 0)
+			close = to;
+		Siteinfo si = new Siteinfo();
+		si.setSitename(content("sitename", open, close));
+		si.setBase(content("base", open, close));
+		si.setGenerator(content("generator", open, close));
+		si.setCharacterCase(content("case", open, close));
+		int ns = indexOf(NAMESPACE_OPEN, open, close);
+		while (ns >= 0) {
+			int gt = indexOf((byte) '>', ns, close);
+			if (gt < 0)
+				break;
+			String key = attribute(KEY_ATTRIBUTE, ns, gt);
+			String name = content("namespace", ns, close);
+			if (key != null)
+				si.addNamespace(key, name);
+			ns = indexOf(NAMESPACE_OPEN, gt, close);
+		}
+		return si;
+	}
+
+	private void parsePage(long offset, int from, int to) throws SAXException {
+		int revision = indexOf(REVISION_OPEN, from, to);
+		int header = revision < 0 ? to : revision;
+
+		WikiPage page = new WikiPage();
+		page.setOffset(offset);
+		page.setTitle(content("title", from, header), siteinfo);
+		String ns = content("ns", from, header);
+		if (ns != null)
+			WikiXMLParser.setNamespace(page, siteinfo, ns);
+		page.setId(content("id", from, header));
+		int redirect = indexOf(REDIRECT_OPEN, from, header);
+		if (redirect >= 0) {
+			int gt = indexOf((byte) '>', redirect, header);
+			page.setRedirect(attribute(TITLE_ATTRIBUTE, redirect, gt));
+		}
+
+		while (revision >= 0) {
+			int close = indexOf(REVISION_CLOSE, revision, to);
+			if (close < 0)
+				close = to;
+			page.setTimeStamp(content("timestamp", revision, close));
+			if (selector == null || selector.select(page, siteinfo)) {
+				page.setText(content("text", revision, close));
+				try {
+					filter.process(page, siteinfo);
+				} catch (RuntimeException re) {
+					logger.error("processing page {}: {}", page.getTitle(),
+							re.toString());
+				}
+			}
+			revision = indexOf(REVISION_OPEN, close, to);
+		}
+	}
+
+	/**
+	 * @return the decoded content of the first element with the given name
+	 *         in the range, null if the element is missing or empty
+	 */
+	private String content(String name, int from, int to) {
+		byte[] open = bytes("<" + name);
+		int tag = from;
+		while ((tag = indexOf(open, tag, to)) >= 0) {
+			if (tag + open.length == to)
+				return null;
+			// skip the elements whose name starts with name
+			byte next = buf[tag + open.length];
+			if (next == '>' || next == ' ' || next == '/')
+				break;
+			tag += open.length;
+		}
+		if (tag < 0)
+			return null;
+		int gt = indexOf((byte) '>', tag, to);
+		if (gt < 0 || buf[gt - 1] == '/')
+			return null;
+		int close = indexOf(bytes("</" + name + ">"), gt, to);
+		if (close < 0)
+			close = to;
+		return decode(gt + 1, close);
+	}
+
+	/**
+	 * @return the decoded value of the attribute (e.g.,
+	 *         <code>title="</code>) in the range, null if it is missing
+	 */
+	private String attribute(byte[] attribute, int from, int to) {
+		int value = indexOf(attribute, from, to);
+		if (value < 0)
+			return null;
+		value += attribute.length;
+		int quote = indexOf((byte) '"', value, to);
+		if (quote < 0)
+			return null;
+		String s = decode(value, quote);
+		return s == null ? "" : s;
+	}
+
+	private String decode(int from, int to) {
+		if (from >= to)
+			return null;
+		String s = new String(buf, from, to - from, UTF8);
+		if (s.indexOf('\r') >= 0)
+			s = s.replace("\r\n", "\n").replace('\r', '\n');
+		if (s.indexOf('&') >= 0)
+			s = unescape(s);
+		return s;
+	}
+
+	/**
+	 * Decodes the predefined XML entities and the character references.
+	 */
+	static String unescape(String s) {
+		StringBuilder sb = new StringBuilder(s.length());
+		int i = 0;
+		int amp;
+		while ((amp = s.indexOf('&', i)) >= 0) {
+			sb.append(s, i, amp);
+			int semicolon = s.indexOf(';', amp);
+			String entity = semicolon < 0 ? "" : s.substring(amp + 1,
+					semicolon);
+			int c = entity(entity);
+			if (c < 0) {
+				sb.append('&');
+				i = amp + 1;
+			} else {
+				sb.appendCodePoint(c);
+				i = semicolon + 1;
+			}
+		}
+		sb.append(s, i, s.length());
+		return sb.toString();
+	}
+
+	private static int entity(String entity) {
+		if (entity.equals("amp"))
+			return '&';
+		if (entity.equals("lt"))
+			return '<';
+		if (entity.equals("gt"))
+			return '>';
+		if (entity.equals("quot"))
+			return '"';
+		if (entity.equals("apos"))
+			return '\'';
+		if (entity.length() < 2 || entity.charAt(0) != '#')
+			return -1;
+		try {
+			if (entity.charAt(1) == 'x' || entity.charAt(1) == 'X')
+				return Integer.parseInt(entity.substring(2), 16);
+			return Integer.parseInt(entity.substring(1));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Searches the pattern from the given position, reading the input until
+	 * the pattern is found.
+	 *
+	 * @return the position of the pattern, -1 if the input ends before it
+	 */
+	private int find(byte[] pattern, int from) throws IOException {
+		int i = from;
+		while (true) {
+			int found = indexOf(pattern, i, end);
+			if (found >= 0)
+				return found;
+			i = Math.max(from, end - pattern.length + 1);
+			if (!fill())
+				return -1;
+		}
+	}
+
+	private int indexOf(byte[] pattern, int from, int to) {
+		byte first = pattern[0];
+		int last = to - pattern.length;
+		for (int i = from; i <= last; i++) {
+			if (buf[i] != first)
+				continue;
+			int j = 1;
+			while (j < pattern.length && buf[i + j] == pattern[j])
+				j++;
+			if (j == pattern.length)
+				return i;
+		}
+		return -1;
+	}
+
+	private int indexOf(byte b, int from, int to) {
+		for (int i = from; i < to; i++) {
+			if (buf[i] == b)
+				return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Reads more data, growing the buffer if it is full.
+	 *
+	 * @return false at the end of the input
+	 */
+	private boolean fill() throws IOException {
+		if (endOfInput)
+			return false;
+		if (end == buf.length)
+			buf = Arrays.copyOf(buf, buf.length * 2);
+		int n = in.read(buf, end, buf.length - end);
+		if (n < 0) {
+			endOfInput = true;
+			return false;
+		}
+		end += n;
+		return true;
+	}
+
+	/**
+	 * Moves the data not consumed to the beginning of the buffer.
+	 */
+	private void compact() {
+		if (start < buf.length / 2)
+			return;
+		System.arraycopy(buf, start, buf, 0, end - start);
+		end -= start;
+		discarded += start;
+		start = 0;
+	}
+
+	private static byte[] bytes(String s) {
+		return s.getBytes(UTF8);
+	}
+}
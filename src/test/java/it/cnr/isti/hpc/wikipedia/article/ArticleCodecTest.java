@@ -0,0 +1,157 @@
+/**
+ *  Copyright 2011 Diego Ceccarelli
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package it.cnr.isti.hpc.wikipedia.article;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.dbpedia.spotlight.ParagraphLink;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+
+public class ArticleCodecTest {
+
+	private static final Gson gson = new Gson();
+
+	private static final String[] STRINGS = { "", "Leonardo da Vinci",
+			"\"quoted\" <b>bold</b> & 'single' a=b \\ back",
+			"tab\tnew\nline\rcr\bback\fform \u0000\u001f\u007f",
+			"Città, 東京都, 😀", "separators \u2028 \u2029",
+			"lone \ud83d surrogate" };
+
+	private static Article article(String s) {
+		Article a = new Article();
+		a.setTitle(s);
+		a.setWikiTitle(a.getTitleInWikistyle());
+		a.setWikiId(-42);
+		a.setLang("en");
+		a.setWikiText(s);
+		a.enWikiTitle = s;
+		a.redirect = s;
+		// a link without description
+		Link paris = new Link();
+		paris.setId("Paris");
+		a.setLinks(Arrays.asList(new Link(s, s, 3, 9), null, paris));
+		ParagraphLink p = new ParagraphLink();
+		p.setParaText(s);
+		p.setLinks(new ArrayList<Link>(a.getLinks()));
+		a.setParagraphsLink(Arrays.asList(p, null, new ParagraphLink()));
+		// not written
+		a.setCategories(Arrays.asList(new Link("Category:" + s, s, 0, 1)));
+		return a;
+	}
+
+	@Test
+	public void testSameJsonAsGson() {
+		List<Article> articles = new ArrayList<Article>();
+		for (String s : STRINGS) {
+			articles.add(article(s));
+		}
+		Article empty = new Article();
+		empty.setType(null);
+		articles.add(empty);
+		Article redirect = new Article();
+		redirect.setTitle("UK");
+		redirect.setType(Article.Type.REDIRECT);
+		redirect.redirect = "United Kingdom";
+		articles.add(redirect);
+
+		for (Article a : articles) {
+			for (ExtractionProfile p : ExtractionProfile.values()) {
+				if (p == ExtractionProfile.FULL)
+					continue;
+				assertEquals(p.gson.toJson(a), ArticleCodec.toJson(a, p));
+			}
+			assertEquals(gson.toJson(a), new ArticleCodec().encode(a));
+			assertEquals(gson.toJson(a), a.toJson());
+		}
+	}
+
+	@Test
+	public void testRandomStrings() {
+		Random random = new Random(42);
+		for (int n = 0; n < 500; n++) {
+			char[] chars = new char[random.nextInt(50)];
+			for (int i = 0; i < chars.length; i++) {
+				chars[i] = (char) (random.nextBoolean() ? random.nextInt(0x80)
+						: random.nextInt(0x10000));
+			}
+			Article a = article(new String(chars));
+			String json = a.toJson();
+			assertEquals(gson.toJson(a), json);
+			assertEquals(json, ArticleCodec.fromJson(json).toJson());
+		}
+	}
+
+	@Test
+	public void testSameArticleAsGson() {
+		ArticleCodec codec = new ArticleCodec();
+		for (String s : STRINGS) {
+			for (ExtractionProfile p : ExtractionProfile.values()) {
+				String json = article(s).toJson(p);
+				Article expected = gson.fromJson(json, Article.class);
+				Article decoded = codec.decode(json);
+				assertEquals(gson.toJson(expected), gson.toJson(decoded));
+				assertEquals(expected.getType(), decoded.getType());
+			}
+		}
+		String json = "{\"unknown\":{\"a\":[1,2,{}]},\"wid\":7,\"type\":\"NOT_A_TYPE\","
+				+ "\"links\":[{\"id\":\"Rome\",\"start\":1,\"extra\":true}],"
+				+ "\"title\":true,\"redirect\":null}";
+		Article expected = gson.fromJson(json, Article.class);
+		Article decoded = codec.decode(json);
+		assertEquals(gson.toJson(expected), gson.toJson(decoded));
+		assertNull(decoded.getType());
+		assertEquals("true", decoded.getTitle());
+		assertEquals(7, decoded.getWid());
+	}
+
+	@Test
+	public void testEmptyAndInvalid() {
+		assertNull(ArticleCodec.fromJson(""));
+		assertNull(ArticleCodec.fromJson("null"));
+		assertNull(ArticleCodec.fromJson(null));
+		for (String invalid : new String[] { "{\"title\":", "{} {}", "[]",
+				"{\"wid\":\"seven\"}" }) {
+			try {
+				ArticleCodec.fromJson(invalid);
+				throw new AssertionError("no exception for " + invalid);
+			} catch (JsonSyntaxException e) {
+				// expected
+			}
+		}
+	}
+
+	@Test
+	public void testSupports() {
+		Article a = new Article();
+		assertTrue(ArticleCodec.supports(a, ExtractionProfile.SPOTLIGHT));
+		assertTrue(ArticleCodec.supports(a, ExtractionProfile.TITLES_ONLY));
+		assertFalse(ArticleCodec.supports(a, ExtractionProfile.FULL));
+		assertFalse(ArticleCodec.supports(new Article() {
+		}, ExtractionProfile.SPOTLIGHT));
+	}
+
+}
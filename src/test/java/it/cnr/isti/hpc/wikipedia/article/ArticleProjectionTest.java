@@ -0,0 +1,185 @@
+/**
+ *  Copyright 2011 Diego Ceccarelli
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package it.cnr.isti.hpc.wikipedia.article;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import it.cnr.isti.hpc.wikipedia.article.Article.Type;
+import it.cnr.isti.hpc.wikipedia.article.ArticleProjection.Field;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+
+import org.dbpedia.spotlight.ParagraphLink;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+
+public class ArticleProjectionTest {
+
+	private static final Gson gson = new Gson();
+
+	private static final String[] STRINGS = { "", "Leonardo da Vinci",
+			"\"quoted\\\" [{<b>}] ", "ends with backslash \\",
+			"\\\\\" \\u0041 \t\n\u0000", "Città, 東京都, 😀  " };
+
+	private static Article article(String s) {
+		Article a = new Article();
+		a.setTitle("T " + s);
+		a.setWikiTitle(a.getTitleInWikistyle());
+		a.setWikiId(1234);
+		a.setLang("en");
+		a.setType(Type.DISAMBIGUATION);
+		a.setWikiText(s + " {{template}} [[link]]");
+		a.enWikiTitle = "E " + s;
+		a.redirect = "R " + s;
+		a.setLinks(Arrays.asList(new Link("Paris", s + "]", 3, 9)));
+		ParagraphLink p = new ParagraphLink();
+		p.setParaText(s + "}");
+		p.setLinks(a.getLinks());
+		a.setParagraphsLink(Arrays.asList(p));
+		a.setParagraphs(Arrays.asList(s, "second"));
+		a.setCategories(Arrays.asList(new Link("Category:" + s, s, 0, 1)));
+		return a;
+	}
+
+	@Test
+	public void testAllFields() {
+		ArticleProjection all = new ArticleProjection(Field.values());
+		for (String s : STRINGS) {
+			for (ExtractionProfile p : ExtractionProfile.values()) {
+				String json = article(s).toJson(p);
+				Article expected = ArticleCodec.fromJson(json);
+				Article a = all.decode(json);
+				assertEquals(gson.toJson(expected), gson.toJson(a));
+				if (p == ExtractionProfile.FULL) {
+					assertEquals(Arrays.asList(s, "second"), a.getParagraphs());
+					assertEquals("Category:" + s, a.getCategories().get(0)
+							.getId());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testSingleFields() {
+		for (String s : STRINGS) {
+			String json = article(s).toJson(ExtractionProfile.FULL);
+			Article full = new ArticleProjection(Field.values()).decode(json);
+			for (Field f : Field.values()) {
+				Article a = new ArticleProjection(f).decode(json);
+				Article expected = new Article();
+				copy(full, expected, f);
+				assertEquals(f.getName(), gson.toJson(expected), gson.toJson(a));
+				assertEquals(expected.getParagraphs(), a.getParagraphs());
+				assertEquals(expected.getCategories().size(), a
+						.getCategories().size());
+			}
+		}
+	}
+
+	private static void copy(Article from, Article to, Field f) {
+		switch (f) {
+		case TITLE:
+			to.title = from.title;
+			break;
+		case WIKI_TITLE:
+			to.wikiTitle = from.wikiTitle;
+			break;
+		case WID:
+			to.setWid(from.getWid());
+			break;
+		case WIKI_TEXT:
+			to.setWikiText(from.getWikiText());
+			break;
+		case LANG:
+			to.setLang(from.getLang());
+			break;
+		case TYPE:
+			to.setType(from.getType());
+			break;
+		case EN_WIKI_TITLE:
+			to.enWikiTitle = from.enWikiTitle;
+			break;
+		case LINKS:
+			to.links = from.links;
+			break;
+		case REDIRECT:
+			to.redirect = from.redirect;
+			break;
+		case PARAGRAPHS_LINK:
+			to.setParagraphsLink(from.getParagraphsLink());
+			break;
+		case PARAGRAPHS:
+			to.setParagraphs(from.getParagraphs());
+			break;
+		case CATEGORIES:
+			to.setCategories(from.getCategories());
+			break;
+		}
+	}
+
+	@Test
+	public void testSkippedValues() {
+		ArticleProjection projection = new ArticleProjection(Field.TITLE,
+				Field.TYPE, Field.WID);
+		String json = " { \"before\" : {\"a\":[1, \"]}\\\"\", {\"b\":null}]} ,"
+				+ "\"title\":\"Ro\\u006de \\\"caput\\\"\", \"n\":-1.5e3,"
+				+ "\"t\":true, \"type\" :\"REDIRECT\", \"wid\":\"7\","
+				+ "\"after\":[[],{}], \"s\":\"\\\\\"}\n";
+		Article a = projection.decode(json);
+		assertEquals("Rome \"caput\"", a.getTitle());
+		assertEquals(Type.REDIRECT, a.getType());
+		assertEquals(7, a.getWid());
+		assertEquals(gson.toJson(ArticleCodec.fromJson(json)), gson
+				.toJson(new ArticleProjection(Field.values()).decode(json)));
+
+		a = projection.decode("{\"type\":\"NOT_A_TYPE\",\"title\":null,\"wid\":7.0}");
+		assertNull(a.getType());
+		assertNull(a.getTitle());
+		assertEquals(7, a.getWid());
+		assertEquals(EnumSet.of(Field.TITLE, Field.TYPE, Field.WID),
+				projection.getFields());
+	}
+
+	@Test
+	public void testEmptyAndInvalid() {
+		ArticleProjection projection = new ArticleProjection(Field.TITLE);
+		assertNull(projection.decode(""));
+		assertNull(projection.decode(" null "));
+		assertNull(projection.decode(null));
+		assertEquals("", projection.decode("{}").getTitle());
+		for (String invalid : new String[] { "{\"title\":", "{} {}", "[]",
+				"{\"title\":\"unterminated}", "{\"x\":[1,2}",
+				"{\"title\" \"a\"}", "{\"title\":\"a\" \"b\":1}",
+				"{\"wid\":1}x" }) {
+			try {
+				projection.decode(invalid);
+				throw new AssertionError("no exception for " + invalid);
+			} catch (JsonSyntaxException e) {
+				// expected
+			}
+		}
+		try {
+			new ArticleProjection(Field.WID).decode("{\"wid\":\"seven\"}");
+			throw new AssertionError("no exception for a string id");
+		} catch (JsonSyntaxException e) {
+			// expected
+		}
+	}
+
+}
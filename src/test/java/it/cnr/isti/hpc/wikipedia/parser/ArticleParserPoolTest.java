@@ -0,0 +1,67 @@
+/**
+ *  Copyright 2013 Diego Ceccarelli
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package it.cnr.isti.hpc.wikipedia.parser;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import it.cnr.isti.hpc.wikipedia.article.Article;
+import it.cnr.isti.hpc.wikipedia.article.Language;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class ArticleParserPoolTest {
+
+	private static final String DISAMBIGUATION = "'''Mercury''' may refer to:\n"
+			+ "* [[Mercury (planet)]]\n* [[Mercury (element)]]\n{{disambiguation}}";
+
+	private static final String ARTICLE = "'''Venus''' is the second planet from the [[Sun]].";
+
+	@Test
+	public void testOneParserPerThread() throws InterruptedException {
+		final ArticleParser parser = ArticleParserPool.getParser(Language.EN);
+		assertSame(parser, ArticleParserPool.getParser(Language.EN));
+
+		final AtomicReference<ArticleParser> other = new AtomicReference<ArticleParser>();
+		Thread t = new Thread() {
+			@Override
+			public void run() {
+				other.set(ArticleParserPool.getParser(Language.EN));
+			}
+		};
+		t.start();
+		t.join();
+		assertNotSame(parser, other.get());
+	}
+
+	@Test
+	public void testDisambiguationNotCarriedOver() {
+		ArticleParser parser = ArticleParserPool.getParser(Language.EN);
+		Article a = new Article();
+		a.setTitle("Mercury");
+		parser.parse(a, DISAMBIGUATION);
+		assertTrue(a.isDisambiguation());
+
+		Article b = new Article();
+		b.setTitle("Venus");
+		parser.parse(b, ARTICLE);
+		assertFalse(b.isDisambiguation());
+	}
+
+}
@@ -0,0 +1,157 @@
+/**
+ *  Copyright 2013 Diego Ceccarelli
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package it.cnr.isti.hpc.wikipedia.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import it.cnr.isti.hpc.wikipedia.article.Article;
+import it.cnr.isti.hpc.wikipedia.article.Article.Type;
+import it.cnr.isti.hpc.wikipedia.article.ExtractionProfile;
+import it.cnr.isti.hpc.wikipedia.article.Language;
+
+import org.junit.Test;
+
+public class ArticleParserTest {
+
+	private static final String[] SIMPLE_REDIRECTS = {
+			"#REDIRECT [[Computer accessibility]]",
+			"#redirect [[computer accessibility]]\n",
+			"#REDIRECT[[History of Afghanistan]] {{R from CamelCase}}",
+			"#REDIRECT [[Transport in Afghanistan]] {{R from CamelCase}} {{R unprintworthy}}",
+			"#REDIRECT [[Amoeba#Taxonomy]]{{R to section}}",
+			"#REDIRECT [[Mercury]] {{disambiguation}}",
+			"#REDIRECTION [[Paris]]" };
+
+	private static final String[] GERMAN_REDIRECTS = {
+			"#WEITERLEITUNG [[Berlin]]", "#weiterleitung [[Köln]] {{Dieser Artikel}}" };
+
+	private static final String[] OTHER_PAGES = {
+			"#REDIRECT [[Wikipedia:Sandbox]]",
+			"#REDIRECT [[Foo|Bar]]",
+			"#REDIRECT [[Foo]]\n{{R from move}}",
+			"#REDIRECT [[Foo]] [[Category:Redirects]]",
+			"#REDIRECT [[Foo]] {{R|[[Bar]]}}",
+			"#REDIRECT: [[Foo]]",
+			"# a numbered list\n# of items",
+			"REDIRECT [[Foo]]",
+			"'''Venus''' is the second planet from the [[Sun]]." };
+
+	private static final String ARTICLE = "'''Venus''' is the second planet from the [[Sun]], "
+			+ "named after the ''Roman goddess'' [[Venus (mythology)|Venus]].\n\n"
+			+ "== Orbit ==\nVenus orbits the [[Sun]].\n\n[[Category:Planets]]";
+
+	private static Article article(String title) {
+		Article a = new Article();
+		a.setTitle(title);
+		a.setWikiId(42);
+		a.setType(Type.ARTICLE);
+		return a;
+	}
+
+	private static String[] concat(String[] a, String[] b) {
+		String[] c = new String[a.length + b.length];
+		System.arraycopy(a, 0, c, 0, a.length);
+		System.arraycopy(b, 0, c, a.length, b.length);
+		return c;
+	}
+
+	@Test
+	public void testSimpleRedirects() {
+		for (String lang : new String[] { Language.EN, "de" }) {
+			ArticleParser parser = new ArticleParser(lang);
+			for (String title : new String[] { "Redirect page", "List of redirects",
+					"Mercury (disambiguation)" }) {
+				for (String text : lang.equals("de") ? concat(SIMPLE_REDIRECTS,
+						GERMAN_REDIRECTS) : SIMPLE_REDIRECTS) {
+					Article fast = article(title);
+					// the previous page must not affect the redirect
+					parser.parsePage(article("Mercury"),
+							"'''Mercury''' may refer to:\n* [[Mercury (planet)]]\n{{disambiguation}}");
+					assertTrue(text, parser.parseRedirect(fast, text));
+					Article parsed = article(title);
+					parser.parsePage(parsed, text);
+					assertEquals(lang + ": " + text, parsed.toJson(), fast.toJson());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testOtherPages() {
+		ArticleParser parser = new ArticleParser(Language.EN);
+		for (String text : OTHER_PAGES) {
+			assertFalse(text, parser.parseRedirect(article("Page"), text));
+		}
+		assertFalse(parser.parseRedirect(article("Page"), null));
+		Article a = article("AccessibleComputing");
+		parser.parse(a, "#REDIRECT [[Computer accessibility]] {{R from CamelCase}}");
+		assertEquals(Type.REDIRECT, a.getType());
+		assertEquals("Computer_accessibility", a.getRedirect());
+	}
+
+	@Test
+	public void testProfiles() {
+		Article spotlight = article("Venus");
+		new ArticleParser(Language.EN).parse(spotlight, ARTICLE);
+
+		Article titles = article("Venus");
+		new ArticleParser(Language.EN, ExtractionProfile.TITLES_ONLY).parse(
+				titles, ARTICLE);
+		assertEquals(Type.ARTICLE, titles.getType());
+		assertTrue(titles.getLinks().isEmpty());
+		assertNull(titles.getParagraphsLink());
+		assertNull(titles.getWikiText());
+		assertEquals("{\"title\":\"Venus\",\"wikiTitle\":\"Venus\",\"wid\":42,"
+				+ "\"lang\":\"en\",\"type\":\"ARTICLE\",\"redirect\":\"\"}",
+				titles.toJson(ExtractionProfile.TITLES_ONLY));
+
+		Article links = article("Venus");
+		new ArticleParser(Language.EN, ExtractionProfile.LINKS_ONLY).parse(
+				links, ARTICLE);
+		assertEquals(spotlight.getLinks().size(), links.getLinks().size());
+		assertEquals(spotlight.getLinks().get(1).getStart(), links.getLinks()
+				.get(1).getStart());
+		assertNull(links.getParagraphsLink());
+
+		Article full = article("Venus");
+		new ArticleParser(Language.EN, ExtractionProfile.FULL).parse(full,
+				ARTICLE);
+		assertEquals(spotlight.toJson(), full.toJson());
+		assertEquals(1, full.getCategories().size());
+		assertFalse(full.getSections().isEmpty());
+		assertFalse(full.getHighlights().isEmpty());
+		assertTrue(full.toJson(ExtractionProfile.FULL).contains("\"categories\""));
+		assertEquals(spotlight.toJson(),
+				spotlight.toJson(ExtractionProfile.SPOTLIGHT));
+	}
+
+	@Test
+	public void testProfileNames() {
+		for (ExtractionProfile p : ExtractionProfile.values()) {
+			assertEquals(p, ExtractionProfile.forName(p.getName()));
+		}
+		assertEquals(ExtractionProfile.TITLES_ONLY,
+				ExtractionProfile.forName("titles-only"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownProfile() {
+		ExtractionProfile.forName("everything");
+	}
+
+}
@@ -0,0 +1,116 @@
+/**
+ *  Copyright 2013 Diego Ceccarelli
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package it.cnr.isti.hpc.wikipedia.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Test;
+
+public class IdentifierMatcherTest {
+
+	private static final String[] LANGUAGES = { "en", "de", "sv", "si", "ko",
+			"tr", "el", "ja", "sr" };
+
+	@Test
+	public void testMatches() {
+		IdentifierMatcher m = new IdentifierMatcher(Arrays.asList(
+				"Disambig", "disambiguation", "Hndis", "#REDIRECT", "#redirect"));
+		assertTrue(m.isContainedIn("Mercury (DISAMBIGUATION)"));
+		assertTrue(m.isContainedIn("xhndis"));
+		assertFalse(m.isContainedIn("Disambi"));
+		assertTrue(m.startsWith("#Redirect [[Foo]]"));
+		assertFalse(m.startsWith(" #REDIRECT"));
+		boolean[] prefixes = m.getPrefixes("disambiguation page");
+		assertEquals("[true, true, false, false, false]",
+				Arrays.toString(prefixes));
+		assertEquals("[false, false, false, true, true]",
+				Arrays.toString(m.getPrefixes("#REDIRECT")));
+		assertNull(m.getPrefixes("Mercury"));
+		assertNull(m.getPrefixes(null));
+		assertFalse(m.startsWith(null));
+		assertFalse(m.isContainedIn(null));
+	}
+
+	@Test
+	public void testEmpty() {
+		IdentifierMatcher m = new IdentifierMatcher(Arrays.<String> asList());
+		assertEquals(0, m.size());
+		assertFalse(m.isContainedIn("anything"));
+		assertFalse(m.startsWith(""));
+	}
+
+	/**
+	 * The matcher agrees with StringUtils on texts built from the identifiers
+	 * of the languages, with random changes of case and characters.
+	 */
+	@Test
+	public void testSameAsStringUtils() {
+		Random random = new Random(42);
+		String noise = "aAıIİiςσΣßẞ ()#:-_ǅǆ";
+		Locale locale = LocaleRegistry.getLocale("en");
+		for (String lang : LANGUAGES) {
+			for (List<String> ids : Arrays.asList(locale.getRedirects(lang),
+					locale.getDisambigutionIdentifiers(lang))) {
+				IdentifierMatcher m = new IdentifierMatcher(ids);
+				for (int n = 0; n < 2000; n++) {
+					StringBuilder sb = new StringBuilder();
+					int parts = random.nextInt(4);
+					for (int p = 0; p < parts; p++) {
+						String id = ids.get(random.nextInt(ids.size()));
+						int from = random.nextInt(3) == 0 ? random.nextInt(id.length()) : 0;
+						for (char c : id.substring(from).toCharArray()) {
+							int r = random.nextInt(10);
+							if (r == 0)
+								c = Character.toUpperCase(c);
+							else if (r == 1)
+								c = Character.toLowerCase(c);
+							else if (r == 2)
+								c = noise.charAt(random.nextInt(noise.length()));
+							sb.append(c);
+						}
+						if (random.nextBoolean())
+							sb.append(noise.charAt(random.nextInt(noise.length())));
+					}
+					String text = sb.toString();
+					boolean contained = false;
+					boolean startsWith = false;
+					boolean[] prefixes = new boolean[ids.size()];
+					for (int i = 0; i < ids.size(); i++) {
+						contained |= StringUtils.containsIgnoreCase(text, ids.get(i));
+						prefixes[i] = StringUtils.startsWithIgnoreCase(text, ids.get(i));
+						startsWith |= prefixes[i];
+					}
+					assertEquals(text, contained, m.isContainedIn(text));
+					assertEquals(text, startsWith, m.startsWith(text));
+					if (startsWith)
+						assertEquals(text, Arrays.toString(prefixes),
+								Arrays.toString(m.getPrefixes(text)));
+					else
+						assertNull(text, m.getPrefixes(text));
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,70 @@
+/**
+ *  Copyright 2013 Diego Ceccarelli
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package it.cnr.isti.hpc.wikipedia.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import it.cnr.isti.hpc.wikipedia.article.Language;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class LocaleRegistryTest {
+
+	@Test
+	public void testSharedLocale() throws InterruptedException {
+		final Locale locale = LocaleRegistry.getLocale(Language.EN);
+		assertSame(locale, LocaleRegistry.getLocale(Language.EN));
+
+		final AtomicReference<Locale> other = new AtomicReference<Locale>();
+		Thread t = new Thread() {
+			@Override
+			public void run() {
+				other.set(LocaleRegistry.getLocale(Language.EN));
+			}
+		};
+		t.start();
+		t.join();
+		assertSame(locale, other.get());
+	}
+
+	@Test
+	public void testIdentifiers() {
+		Locale en = LocaleRegistry.getLocale(Language.EN);
+		assertEquals(Arrays.asList("#REDIRECT"), en.getRedirects(Language.EN));
+		assertTrue(en.getDisambigutionIdentifiers(Language.EN).contains(
+				"disambiguation"));
+		assertTrue(en.getCategoryIdentifiers().contains("Category"));
+		// the same tables for all the locales
+		Locale de = LocaleRegistry.getLocale("de");
+		assertSame(de.getSharedRedirects("de"), en.getSharedRedirects("de"));
+	}
+
+	@Test
+	public void testCopies() {
+		Locale en = LocaleRegistry.getLocale(Language.EN);
+		// the getters return copies, the shared identifiers are not changed
+		en.getListIdentifiers().add("index");
+		en.getRedirects(Language.EN).clear();
+		assertFalse(en.getListIdentifiers().contains("index"));
+		assertEquals(Arrays.asList("#REDIRECT"), en.getRedirects(Language.EN));
+	}
+
+}
@@ -0,0 +1,55 @@
+/**
+ *  Copyright 2011 Diego Ceccarelli
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package it.cnr.isti.hpc.wikipedia.reader;
+
+import static org.junit.Assert.assertEquals;
+import it.cnr.isti.hpc.io.IOUtils;
+import it.cnr.isti.hpc.wikipedia.article.Article;
+import it.cnr.isti.hpc.wikipedia.article.Language;
+
+import java.io.File;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ArticleExtractorTest {
+
+	@Test
+	public void testExtraction() throws Exception {
+		URL u = this.getClass().getResource("/wikisample.xml");
+		WikipediaArticleReader wap = new WikipediaArticleReader(u.getFile(), "/tmp/wikisample-indexed.json", Language.EN);
+		wap.setPageIndex(new File("/tmp/wikisample-page-index.txt"));
+		wap.start();
+		String[] lines = IOUtils.getFileAsUTF8String("/tmp/wikisample-indexed.json").split("\n");
+
+		ArticleExtractor extractor = new ArticleExtractor(new File(u.getFile()), new File(
+				"/tmp/wikisample-page-index.txt"), Language.EN);
+		Article first = Article.fromJson(lines[0]);
+		Article last = Article.fromJson(lines[lines.length - 1]);
+		assertEquals(lines[0], extractor.getArticleById(String.valueOf(first.getWid())).toJson());
+		assertEquals(lines[lines.length - 1], extractor.getArticleByTitle(last.getTitle().replace(' ', '_'))
+				.toJson());
+
+		List<Article> articles = extractor.getArticles(Arrays.asList(String.valueOf(last.getWid())),
+				Arrays.asList(first.getTitle()));
+		assertEquals(2, articles.size());
+		assertEquals(lines[0], articles.get(0).toJson());
+		assertEquals(lines[lines.length - 1], articles.get(1).toJson());
+	}
+
+}
@@ -0,0 +1,97 @@
+/**
+ *  Copyright 2011 Diego Ceccarelli
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package it.cnr.isti.hpc.wikipedia.reader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import it.cnr.isti.hpc.io.IOUtils;
+import it.cnr.isti.hpc.wikipedia.article.Article;
+import it.cnr.isti.hpc.wikipedia.article.Article.Type;
+import it.cnr.isti.hpc.wikipedia.article.Language;
+import it.cnr.isti.hpc.wikipedia.parser.ArticleParser;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ArticleMetadataReaderTest {
+
+	private static List<Article> read(String resource, boolean byteScanner)
+			throws Exception {
+		ArticleMetadataReader reader = new ArticleMetadataReader(new File(
+				ArticleMetadataReaderTest.class.getResource(resource).getFile()),
+				Language.EN);
+		reader.setByteScanner(byteScanner);
+		final List<Article> articles = new ArrayList<Article>();
+		reader.read(new ArticleMetadataReader.Handler() {
+			public void handle(Article article) {
+				articles.add(article);
+			}
+		});
+		return articles;
+	}
+
+	@Test
+	public void testSameAsConversion() throws Exception {
+		for (String resource : new String[] { "/wikisample.xml",
+				"/wikisample_Redirect.xml", "/enwiki-pages-test-disamb.xml",
+				"/enwiki-pages-test-blank_article.xml" }) {
+			String json = "/tmp/metadata-reader-test.json";
+			new WikipediaArticleReader(this.getClass().getResource(resource)
+					.getFile(), json, Language.EN).start();
+			String[] lines = IOUtils.getFileAsUTF8String(json).split("\n");
+			for (boolean byteScanner : new boolean[] { false, true }) {
+				List<Article> articles = read(resource, byteScanner);
+				assertEquals(resource, lines.length, articles.size());
+				for (int i = 0; i < lines.length; i++) {
+					Article expected = Article.fromJson(lines[i]);
+					Article a = articles.get(i);
+					assertEquals(expected.getWid(), a.getWid());
+					assertEquals(expected.getTitle(), a.getTitle());
+					assertEquals(expected.getWikiTitle(), a.getWikiTitle());
+					assertEquals(expected.getTitle(), expected.getType(),
+							a.getType());
+					assertEquals(expected.getRedirect(), a.getRedirect());
+					assertTrue(a.getParagraphs().isEmpty());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testParseMetadata() {
+		ArticleParser parser = new ArticleParser(Language.EN);
+		Object[][] pages = {
+				{ "Venus", "'''Venus''' is a [[planet]]. {{Planets", Type.ARTICLE },
+				{ "Venus", " \n ", Type.UNKNOWN },
+				{ "Venus", null, Type.UNKNOWN },
+				{ "Venus", "#REDIRECT ]] [[", Type.ARTICLE },
+				{ "Venus", "#REDIRECT [[Venus (planet)]]\n{{R from move}}",
+						Type.REDIRECT },
+				{ "Venus (disambiguation)", "'''Venus''' may be:", Type.DISAMBIGUATION },
+				{ "Venus", "'''Venus''' may be:\n{{disambiguation}}", Type.DISAMBIGUATION },
+				{ "List of planets", "* [[Venus]]", Type.LIST } };
+		for (Object[] page : pages) {
+			Article a = new Article();
+			a.setTitle((String) page[0]);
+			a.setType(Type.ARTICLE);
+			parser.parseMetadata(a, (String) page[1]);
+			assertEquals((String) page[1], page[2], a.getType());
+		}
+	}
+}
@@ -0,0 +1,105 @@
+/**
+ *  Copyright 2011 Diego Ceccarelli
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package it.cnr.isti.hpc.wikipedia.reader;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Test;
+
+public class ParallelGzipOutputStreamTest {
+
+	private static byte[] sample(int size) {
+		// text-like data, partly compressible
+		Random random = new Random(42);
+		byte[] data = new byte[size];
+		for (int i = 0; i < size; i++)
+			data[i] = (byte) ('a' + random.nextInt(i % 7 == 0 ? 26 : 4));
+		return data;
+	}
+
+	private static byte[] gunzip(byte[] compressed) throws IOException {
+		InputStream in = new GZIPInputStream(new ByteArrayInputStream(
+				compressed));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int n;
+		while ((n = in.read(buffer)) != -1)
+			out.write(buffer, 0, n);
+		in.close();
+		return out.toByteArray();
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		byte[] data = sample(1000 * 1000);
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		ParallelGzipOutputStream out = new ParallelGzipOutputStream(
+				compressed, 3);
+		out.write(data, 0, 1234);
+		out.flush();
+		for (int i = 1234; i < 5000; i++)
+			out.write(data[i]);
+		out.write(data, 5000, data.length - 5000);
+		out.close();
+		assertArrayEquals(data, gunzip(compressed.toByteArray()));
+	}
+
+	@Test
+	public void testBlocks() throws IOException {
+		byte[] data = sample(3 * ParallelGzipOutputStream.BLOCK_SIZE + 10);
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		ParallelGzipOutputStream out = new ParallelGzipOutputStream(
+				compressed, 2);
+		out.write(data);
+		out.close();
+		byte[] gz = compressed.toByteArray();
+		// follows the block sizes in the headers
+		int blocks = 0;
+		int pos = 0;
+		int last = 0;
+		while (pos < gz.length) {
+			assertEquals(0x1f, gz[pos] & 0xff);
+			assertEquals(0x8b, gz[pos + 1] & 0xff);
+			assertEquals('B', gz[pos + 12]);
+			assertEquals('C', gz[pos + 13]);
+			last = pos;
+			pos += ((gz[pos + 16] & 0xff) | (gz[pos + 17] & 0xff) << 8) + 1;
+			blocks++;
+		}
+		assertEquals(gz.length, pos);
+		// four blocks and the empty one
+		assertEquals(5, blocks);
+		assertEquals(28, gz.length - last);
+		assertTrue(gunzip(gz).length == data.length);
+	}
+
+	@Test
+	public void testEmpty() throws IOException {
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		new ParallelGzipOutputStream(compressed, 1).close();
+		assertEquals(0, gunzip(compressed.toByteArray()).length);
+	}
+
+}
@@ -0,0 +1,189 @@
+/**
+ *  Copyright 2011 Diego Ceccarelli
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package it.cnr.isti.hpc.wikipedia.reader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import it.cnr.isti.hpc.wikipedia.article.Article;
+import it.cnr.isti.hpc.wikipedia.article.Article.Type;
+import it.cnr.isti.hpc.wikipedia.article.ArticleCodec;
+import it.cnr.isti.hpc.wikipedia.reader.filter.TypeFilter;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Test;
+
+public class ParallelJsonReaderTest {
+
+	private static final int ARTICLES = 300;
+
+	/**
+	 * @return the json lines of the articles, some longer than a block
+	 */
+	private static List<String> lines() {
+		Random random = new Random(42);
+		List<String> lines = new ArrayList<String>();
+		for (int i = 0; i < ARTICLES; i++) {
+			Article a = new Article();
+			a.setTitle("Article " + i + " Città");
+			a.setWikiId(i);
+			a.setType(i % 3 == 0 ? Type.REDIRECT : Type.ARTICLE);
+			StringBuilder text = new StringBuilder();
+			int length = i % 50 == 7 ? 100000 : random.nextInt(3000);
+			for (int j = 0; j < length; j++)
+				text.append((char) ('a' + random.nextInt(26)));
+			a.setWikiText(text.toString());
+			lines.add(a.toJson());
+		}
+		return lines;
+	}
+
+	private static File write(List<String> lines, String suffix, int kind)
+			throws IOException {
+		File file = File.createTempFile("parallel-json-reader", suffix);
+		file.deleteOnExit();
+		OutputStream out = new FileOutputStream(file);
+		if (kind == 1)
+			out = new ParallelGzipOutputStream(out, 2);
+		else if (kind == 2)
+			out = new GZIPOutputStream(out);
+		for (int i = 0; i < lines.size(); i++) {
+			out.write(lines.get(i).getBytes("UTF-8"));
+			// windows newlines and empty lines are skipped
+			out.write(i % 10 == 0 ? "\r\n".getBytes() : "\n".getBytes());
+			if (i % 25 == 0)
+				out.write('\n');
+			if (kind == 1 && i % 40 == 0)
+				out.flush();
+		}
+		out.close();
+		return file;
+	}
+
+	private static List<Integer> ids(Iterable<Article> articles) {
+		List<Integer> ids = new ArrayList<Integer>();
+		for (Article a : articles)
+			ids.add(a.getWikiId());
+		return ids;
+	}
+
+	/**
+	 * @return the ids of the articles, only of the ones that are not
+	 *         redirects if <tt>filtered</tt>
+	 */
+	private static List<Integer> expected(boolean filtered) {
+		List<Integer> ids = new ArrayList<Integer>();
+		for (int i = 0; i < ARTICLES; i++) {
+			if (!filtered || i % 3 != 0)
+				ids.add(i);
+		}
+		return ids;
+	}
+
+	private static void checkSplits(File file, boolean splittable)
+			throws IOException {
+		ParallelJsonReader reader = new ParallelJsonReader(file.getPath(),
+				new ArticleCodec());
+		assertEquals(splittable, reader.isSplittable());
+		for (int n : new int[] { 1, 2, 3, 7, 64, 1000 }) {
+			List<Integer> ids = new ArrayList<Integer>();
+			List<ParallelJsonReader.Split> splits = reader.getSplits(n);
+			assertEquals(splittable ? n : 1, splits.size());
+			for (ParallelJsonReader.Split s : splits) {
+				ids.addAll(ids(s));
+			}
+			assertEquals(file + " in " + n, expected(false), ids);
+		}
+	}
+
+	private static void checkForEach(File file) throws IOException {
+		for (long size : new long[] { 1000, 5000, 100000, 0 }) {
+			ParallelJsonReader reader = new ParallelJsonReader(file.getPath(),
+					new ArticleCodec()).filter(new TypeFilter(Type.ARTICLE));
+			reader.setThreads(3);
+			if (size > 0)
+				reader.setSplitSize(size);
+			final List<Integer> ids = Collections
+					.synchronizedList(new ArrayList<Integer>());
+			reader.forEach(new ParallelJsonReader.Handler() {
+				public void handle(Article article) {
+					ids.add(article.getWikiId());
+				}
+			});
+			Collections.sort(ids);
+			assertEquals(expected(true), ids);
+		}
+	}
+
+	@Test
+	public void testPlain() throws IOException {
+		File file = write(lines(), ".json", 0);
+		checkSplits(file, true);
+		checkForEach(file);
+	}
+
+	@Test
+	public void testBlocks() throws IOException {
+		File file = write(lines(), ".json.gz", 1);
+		checkSplits(file, true);
+		checkForEach(file);
+	}
+
+	@Test
+	public void testGzip() throws IOException {
+		File file = write(lines(), ".json.gz", 2);
+		checkSplits(file, false);
+		checkForEach(file);
+	}
+
+	@Test
+	public void testEmpty() throws IOException {
+		for (int kind = 0; kind < 3; kind++) {
+			File file = write(new ArrayList<String>(), kind == 0 ? ".json"
+					: ".json.gz", kind);
+			ParallelJsonReader reader = new ParallelJsonReader(file.getPath(),
+					new ArticleCodec());
+			for (ParallelJsonReader.Split s : reader.getSplits(3)) {
+				assertFalse(s.iterator().hasNext());
+			}
+		}
+	}
+
+	@Test
+	public void testMissingFile() {
+		try {
+			ParallelJsonReader reader = new ParallelJsonReader(
+					"/tmp/does-not-exist.json", new ArticleCodec());
+			reader.forEach(new ParallelJsonReader.Handler() {
+				public void handle(Article article) {
+				}
+			});
+			throw new AssertionError("no exception for a missing dump");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains("does-not-exist"));
+		}
+	}
+
+}
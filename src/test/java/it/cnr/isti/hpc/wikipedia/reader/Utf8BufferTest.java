@@ -0,0 +1,97 @@
+/**
+ *  Copyright 2011 Diego Ceccarelli
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package it.cnr.isti.hpc.wikipedia.reader;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import it.cnr.isti.hpc.wikipedia.article.Article;
+import it.cnr.isti.hpc.wikipedia.article.ExtractionProfile;
+import it.cnr.isti.hpc.wikipedia.article.Link;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class Utf8BufferTest {
+
+	private static byte[] encode(String s) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		Writer w = new OutputStreamWriter(bytes, "UTF-8");
+		w.write(s);
+		w.close();
+		return bytes.toByteArray();
+	}
+
+	@Test
+	public void testSameAsOutputStreamWriter() throws IOException {
+		String[] samples = { "", "Leonardo da Vinci", "Città, Köln, Ærø",
+				"東京都", "emoji 😀 and 𐀀",
+				"lone \ud83d surrogate", "lone \ude00 low", "ends high \ud83d",
+				"\ud83d😀" };
+		Utf8Buffer buffer = new Utf8Buffer(4);
+		for (String s : samples) {
+			buffer.reset();
+			buffer.write(s);
+			assertArrayEquals(s, encode(s), buffer.toByteArray());
+		}
+		// random chars, surrogates included, written in random chunks
+		Random random = new Random(42);
+		for (int n = 0; n < 1000; n++) {
+			char[] chars = new char[random.nextInt(200)];
+			for (int i = 0; i < chars.length; i++) {
+				int r = random.nextInt(4);
+				chars[i] = (char) (r == 0 ? random.nextInt(0x80)
+						: r == 1 ? 0xd800 + random.nextInt(0x800) : random
+								.nextInt(0x10000));
+			}
+			buffer.reset();
+			int i = 0;
+			while (i < chars.length) {
+				int len = Math.min(random.nextInt(5), chars.length - i);
+				if (len == 0)
+					buffer.write(chars[i++]);
+				else
+					buffer.write(chars, i, len);
+				i += len;
+			}
+			String s = new String(chars);
+			assertArrayEquals(s, encode(s), buffer.toByteArray());
+			assertEquals(encode(s).length, buffer.size());
+		}
+	}
+
+	@Test
+	public void testArticleJson() throws IOException {
+		Article a = new Article();
+		a.setTitle("Ærø 😀");
+		a.setWikiTitle(a.getTitleInWikistyle());
+		a.setWikiId(42);
+		a.setLang("da");
+		a.setWikiText("\"quoted\" <b>text</b> ");
+		a.setLinks(Arrays.asList(new Link("Denmark", "Danish", 3, 9)));
+		for (ExtractionProfile p : ExtractionProfile.values()) {
+			Utf8Buffer buffer = new Utf8Buffer();
+			a.writeJson(buffer, p);
+			assertEquals(a.toJson(p), new String(buffer.toByteArray(), "UTF-8"));
+		}
+	}
+
+}
@@ -16,16 +16,20 @@
 package it.cnr.isti.hpc.wikipedia.reader;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import it.cnr.isti.hpc.io.IOUtils;
 import it.cnr.isti.hpc.wikipedia.article.Article;
 import it.cnr.isti.hpc.wikipedia.article.Language;
 import it.cnr.isti.hpc.wikipedia.reader.WikipediaArticleReader;
 
+import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URL;
+import java.nio.file.Files;
 
 import org.junit.Test;
 import org.xml.sax.SAXException;
@@ -51,4 +55,91 @@ public class WikipediaArticleReaderTest {
 		
 	}
 
+	@Test
+	public void testPipelinedParsing() throws IOException, SAXException {
+		URL u = this.getClass().getResource("/wikisample.xml");
+		WikipediaArticleReader wap = new WikipediaArticleReader(u.getFile(),"/tmp/wikisample-sequential.json", Language.EN);
+		wap.start();
+		wap = new WikipediaArticleReader(u.getFile(),"/tmp/wikisample-pipelined.json", Language.EN);
+		wap.setThreads(4);
+		wap.setQueueSize(2);
+		wap.start();
+		String sequential = IOUtils.getFileAsUTF8String("/tmp/wikisample-sequential.json");
+		String pipelined = IOUtils.getFileAsUTF8String("/tmp/wikisample-pipelined.json");
+		assertTrue(sequential.length() > 0);
+		assertEquals(sequential, pipelined);
+	}
+
+	@Test
+	public void testRegionsParsing() throws IOException, SAXException {
+		URL u = this.getClass().getResource("/wikisample.xml");
+		WikipediaArticleReader wap = new WikipediaArticleReader(u.getFile(),"/tmp/wikisample-sequential.json.gz", Language.EN);
+		wap.start();
+		wap = new WikipediaArticleReader(u.getFile(),"/tmp/wikisample-regions.json.gz", Language.EN);
+		wap.setRegions(3);
+		wap.start();
+		String sequential = IOUtils.getFileAsUTF8String("/tmp/wikisample-sequential.json.gz");
+		String regions = IOUtils.getFileAsUTF8String("/tmp/wikisample-regions.json.gz");
+		assertTrue(sequential.length() > 0);
+		assertEquals(sequential, regions);
+	}
+
+	@Test
+	public void testCheckpoints() throws IOException, SAXException {
+		URL u = this.getClass().getResource("/wikisample.xml");
+		WikipediaArticleReader wap = new WikipediaArticleReader(u.getFile(),"/tmp/wikisample-sequential.json", Language.EN);
+		wap.start();
+		// a gzip member for each article
+		wap = new WikipediaArticleReader(u.getFile(),"/tmp/wikisample-checkpoints.json.gz", Language.EN);
+		wap.setCheckpointInterval(1);
+		wap.start();
+		String sequential = IOUtils.getFileAsUTF8String("/tmp/wikisample-sequential.json");
+		String checkpoints = IOUtils.getFileAsUTF8String("/tmp/wikisample-checkpoints.json.gz");
+		assertEquals(sequential, checkpoints);
+		assertFalse(new File("/tmp/wikisample-checkpoints.json.gz.checkpoint").exists());
+	}
+
+	@Test
+	public void testResume() throws IOException, SAXException {
+		URL u = this.getClass().getResource("/wikisample.xml");
+		WikipediaArticleReader wap = new WikipediaArticleReader(u.getFile(),"/tmp/wikisample-sequential.json", Language.EN);
+		wap.start();
+		String sequential = IOUtils.getFileAsUTF8String("/tmp/wikisample-sequential.json");
+		String[] lines = sequential.split("\n");
+		assertTrue(lines.length > 3);
+		String written = lines[0] + "\n" + lines[1] + "\n" + lines[2] + "\n";
+		String pageId = String.valueOf(Article.fromJson(lines[2]).getWikiId());
+
+		// skipping the pages already converted
+		File output = interrupted("/tmp/wikisample-resumed.json", written, pageId, -1);
+		wap = new WikipediaArticleReader(u.getFile(), output.getPath(), Language.EN);
+		wap.setResume(true);
+		wap.start();
+		assertEquals(sequential, IOUtils.getFileAsUTF8String(output.getPath()));
+		assertFalse(new File(output.getPath() + ".checkpoint").exists());
+
+		// starting from the page of the checkpoint
+		String xml = new String(Files.readAllBytes(new File(u.getFile()).toPath()), "ISO-8859-1");
+		long offset = xml.lastIndexOf("<page>", xml.indexOf("<id>" + pageId + "</id>"));
+		output = interrupted("/tmp/wikisample-resumed-scanner.json", written, pageId, offset);
+		wap = new WikipediaArticleReader(u.getFile(), output.getPath(), Language.EN);
+		wap.setByteScanner(true);
+		wap.setResume(true);
+		wap.start();
+		assertEquals(sequential, IOUtils.getFileAsUTF8String(output.getPath()));
+	}
+
+	/**
+	 * Simulates a conversion interrupted after a checkpoint.
+	 */
+	private File interrupted(String path, String written, String pageId, long offset) throws IOException {
+		File output = new File(path);
+		FileOutputStream os = new FileOutputStream(output);
+		os.write(written.getBytes("UTF-8"));
+		os.write("{\"title\":\"partially writ".getBytes("UTF-8"));
+		os.close();
+		new Checkpoint(pageId, 3, offset, written.getBytes("UTF-8").length).save(Checkpoint.getFile(output));
+		return output;
+	}
+
 }
@@ -0,0 +1,152 @@
+/**
+ *  Copyright 2015 DBpedia Spotlight
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.dbpedia.spotlight.mediawiki;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.tudarmstadt.ukp.wikipedia.parser.Span;
+
+/**
+ * Applies the same random edits to the {@link SpanManager} and to the JWPL
+ * one, checking the text, the managed spans and the source positions.
+ */
+public class SpanManagerTest {
+
+	private static final String[] PIECES = { "", "a", "{{", "}}", "[[x]]",
+			"<ref>", "\n", "long replacement text" };
+
+	@Test
+	public void testSameAsJwpl() {
+		Random random = new Random(42);
+		for (int run = 0; run < 200; run++) {
+			StringBuilder src = new StringBuilder();
+			for (int i = random.nextInt(200); i > 0; i--)
+				src.append(PIECES[random.nextInt(PIECES.length)]);
+			SpanManager sm = new SpanManager(src.toString());
+			de.tudarmstadt.ukp.wikipedia.parser.mediawiki.SpanManager jwpl = new de.tudarmstadt.ukp.wikipedia.parser.mediawiki.SpanManager(
+					src.toString());
+			if (run % 2 == 0) {
+				sm.enableSrcPosCalculation();
+				jwpl.enableSrcPosCalculation();
+			}
+			List<Span> spans = new ArrayList<Span>();
+			List<Span> jwplSpans = new ArrayList<Span>();
+			sm.manageList(spans);
+			jwpl.manageList(jwplSpans);
+
+			for (int op = 0; op < 100; op++) {
+				int length = jwpl.length();
+				int start = random.nextInt(length + 3) - 1;
+				int end = start + random.nextInt(20);
+				String s = PIECES[random.nextInt(PIECES.length)];
+				String expected;
+				String actual;
+				switch (random.nextInt(7)) {
+				case 0:
+					spans.add(new Span(start, end));
+					jwplSpans.add(new Span(start, end));
+					continue;
+				case 1:
+					expected = run(jwpl, "delete", start, end, s);
+					actual = run(sm, "delete", start, end, s);
+					break;
+				case 2:
+					expected = run(jwpl, "replace", start, end, s);
+					actual = run(sm, "replace", start, end, s);
+					break;
+				case 3:
+					expected = run(jwpl, "insert", start, end, s);
+					actual = run(sm, "insert", start, end, s);
+					break;
+				case 4:
+					expected = run(jwpl, "indexOf", start, end, s);
+					actual = run(sm, "indexOf", start, end, s);
+					break;
+				case 5:
+					expected = run(jwpl, "substring", start, end, s);
+					actual = run(sm, "substring", start, end, s);
+					break;
+				default:
+					expected = run(jwpl, "charAt", start, end, s);
+					actual = run(sm, "charAt", start, end, s);
+					break;
+				}
+				assertEquals(expected, actual);
+				assertEquals(jwpl.toString(), sm.toString());
+				assertEquals(jwplSpans.toString(), spans.toString());
+				// the source positions are not consistent after a failed edit
+				if (expected.endsWith("Exception"))
+					break;
+				if (run % 2 == 0) {
+					for (int i = 0; i < jwpl.length(); i++)
+						assertEquals(jwpl.getSrcPos(i), sm.getSrcPos(i));
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the result of the operation, or the type of the exception it
+	 *         throws
+	 */
+	private static String run(Object sm, String op, int start, int end,
+			String s) {
+		try {
+			if (sm instanceof SpanManager) {
+				SpanManager m = (SpanManager) sm;
+				if (op.equals("delete"))
+					m.delete(start, end);
+				else if (op.equals("replace"))
+					m.replace(start, end, s);
+				else if (op.equals("insert"))
+					m.insert(start, s);
+				else if (op.equals("indexOf"))
+					return m.indexOf(s, start, end) + "";
+				else if (op.equals("substring"))
+					return m.substring(start, end) + "|"
+							+ m.substring(new Span(start, end));
+				else
+					return m.charAt(start) + "";
+			} else {
+				de.tudarmstadt.ukp.wikipedia.parser.mediawiki.SpanManager m = (de.tudarmstadt.ukp.wikipedia.parser.mediawiki.SpanManager) sm;
+				if (op.equals("delete"))
+					m.delete(start, end);
+				else if (op.equals("replace"))
+					m.replace(start, end, s);
+				else if (op.equals("insert"))
+					m.insert(start, s);
+				else if (op.equals("indexOf"))
+					return m.indexOf(s, start, end) + "";
+				else if (op.equals("substring"))
+					return m.substring(start, end) + "|"
+							+ m.substring(new Span(start, end));
+				else
+					return m.charAt(start) + "";
+			}
+			return "";
+		} catch (StringIndexOutOfBoundsException e) {
+			return "StringIndexOutOfBoundsException";
+		} catch (IndexOutOfBoundsException e) {
+			return "IndexOutOfBoundsException";
+		}
+	}
+}
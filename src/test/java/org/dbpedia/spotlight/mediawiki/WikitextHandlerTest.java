@@ -0,0 +1,168 @@
+/**
+ *  Copyright 2015 DBpedia Spotlight
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.dbpedia.spotlight.mediawiki;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import it.cnr.isti.hpc.io.IOUtils;
+import it.cnr.isti.hpc.wikipedia.article.Language;
+import it.cnr.isti.hpc.wikipedia.parser.MediaWikiParserFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.tudarmstadt.ukp.wikipedia.parser.ContentElement;
+import de.tudarmstadt.ukp.wikipedia.parser.DefinitionList;
+import de.tudarmstadt.ukp.wikipedia.parser.Link;
+import de.tudarmstadt.ukp.wikipedia.parser.NestedList;
+import de.tudarmstadt.ukp.wikipedia.parser.NestedListContainer;
+import de.tudarmstadt.ukp.wikipedia.parser.Paragraph;
+import de.tudarmstadt.ukp.wikipedia.parser.ParsedPage;
+
+/**
+ * Checks the events of {@link WikitextParser#parse(String, WikitextHandler)}
+ * against the <tt>ParsedPage</tt> of the same source.
+ */
+public class WikitextHandlerTest {
+
+	private static final String[] PAGES = { "article.txt", "mercedes.txt",
+			"liberalism.txt" };
+
+	private final WikitextParser parser = (WikitextParser) new MediaWikiParserFactory()
+			.getParser(Language.EN);
+
+	@Test
+	public void testSameAsParsedPage() throws IOException {
+		for (String page : PAGES) {
+			String mediawiki = IOUtils
+					.getFileAsUTF8String("./src/test/resources/en/" + page);
+			Recorder recorder = new Recorder();
+			parser.parse(mediawiki, recorder);
+			ParsedPage pp = parser.parse(mediawiki);
+
+			assertEquals(page, toString(pp.getParagraphs()),
+					recorder.paragraphs.toString());
+			List<String> lists = new ArrayList<String>();
+			for (DefinitionList dl : pp.getDefinitionLists()) {
+				List<String> definitions = new ArrayList<String>();
+				for (ContentElement c : dl.getDefinitions())
+					definitions.add(c.getText());
+				lists.add(definitions.toString());
+			}
+			for (NestedListContainer nl : pp.getNestedLists()) {
+				List<String> items = new ArrayList<String>();
+				for (NestedList item : nl.getNestedLists())
+					items.add(item.getText());
+				lists.add(items.toString());
+			}
+			assertEquals(page, lists, recorder.lists);
+			assertEquals(page, reversed(pp.getCategories()), recorder.categories);
+			// the page has no languages element without language links
+			List<Link> languages = pp.getLanguagesElement() == null ? new ArrayList<Link>()
+					: pp.getLanguages();
+			assertEquals(page, reversed(languages), recorder.languages);
+			assertEquals(page, pp.getTables().size(), recorder.tables);
+		}
+	}
+
+	@Test
+	public void testEvents() {
+		Recorder recorder = new Recorder();
+		parser.parse("{{Infobox|name=x}}\nA [[b|c]] d.\n\n== E ==\n"
+				+ "{|\n|f||[[g]]\n|}\n[[Category:H]]\n[[it:I]]", recorder);
+		assertEquals("[T Infobox [name=x], P A c d., L b c 2 3, S E 2, "
+				+ "TS null, C 0 0 f, C 0 1 g]", recorder.events.toString());
+		assertEquals("[Category:H Category:H]", recorder.categories.toString());
+		assertEquals("[it:I it:I]", recorder.languages.toString());
+
+		assertFalse(parser.parse("", recorder));
+	}
+
+	private static String toString(List<Paragraph> paragraphs) {
+		List<String> events = new ArrayList<String>();
+		for (Paragraph p : paragraphs) {
+			events.add("P " + p.getText());
+			for (Link l : p.getLinks(Link.type.INTERNAL))
+				events.add("L " + l.getTarget() + " " + l.getText() + " "
+						+ l.getPos().getStart() + " " + l.getPos().getEnd());
+		}
+		return events.toString();
+	}
+
+	private static List<String> reversed(List<Link> links) {
+		List<String> result = new ArrayList<String>();
+		for (int i = links.size() - 1; i >= 0; i--)
+			result.add(links.get(i).getTarget() + " " + links.get(i).getText());
+		return result;
+	}
+
+	private static class Recorder implements WikitextHandler {
+		List<String> events = new ArrayList<String>();
+		List<String> paragraphs = new ArrayList<String>();
+		List<String> lists = new ArrayList<String>();
+		List<String> categories = new ArrayList<String>();
+		List<String> languages = new ArrayList<String>();
+		int tables = 0;
+
+		public void onTemplate(String name, List<String> parameters) {
+			events.add("T " + name + " " + parameters);
+		}
+
+		public void onCategory(String target, String text) {
+			categories.add(target + " " + text);
+		}
+
+		public void onLanguageLink(String target, String text) {
+			languages.add(target + " " + text);
+		}
+
+		public void onSectionStart(String title, int level) {
+			events.add("S " + title + " " + level);
+		}
+
+		public void onParagraph(String text) {
+			events.add("P " + text);
+			paragraphs.add("P " + text);
+		}
+
+		public void onInternalLink(String target, String text, int start,
+				int end) {
+			String event = "L " + target + " " + text + " " + start + " " + end;
+			events.add(event);
+			paragraphs.add(event);
+		}
+
+		public void onDefinitionList(String term, List<String> definitions) {
+			lists.add(definitions.toString());
+		}
+
+		public void onNestedList(List<String> items) {
+			lists.add(items.toString());
+		}
+
+		public void onTableStart(String title) {
+			events.add("TS " + title);
+			tables++;
+		}
+
+		public void onTableCell(int row, int col, String text) {
+			events.add("C " + row + " " + col + " " + text);
+		}
+	}
+}
@@ -0,0 +1,104 @@
+/**
+ *  Copyright 2015 DBpedia Spotlight
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.dbpedia.spotlight.mediawiki;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+
+import org.dbpedia.spotlight.mediawiki.WikitextLexer.Edits;
+import org.dbpedia.spotlight.mediawiki.WikitextLexer.Token;
+import org.junit.Test;
+
+import de.tudarmstadt.ukp.wikipedia.parser.Span;
+
+/**
+ * Checks the tokens found by the {@link WikitextLexer} against
+ * <code>String.indexOf</code>, also after the source is edited.
+ */
+public class WikitextLexerTest {
+
+	private static final String SRC = "a<!-- {{b}} -->c __TOC__ [[d]] {{{e}}} <ref>[[[f]]]</ref> __NOTOC__-->";
+
+	@Test
+	public void testIndexOf() {
+		WikitextLexer lexer = new WikitextLexer(SRC, EnumSet.allOf(Token.class));
+		for (Token t : Token.values()) {
+			for (int from = 0; from <= SRC.length(); from++) {
+				assertEquals(t + " from " + from, SRC.indexOf(t.getText(), from),
+						lexer.indexOf(t, from));
+			}
+		}
+		for (int from = 0; from <= SRC.length(); from++) {
+			assertEquals(SRC.indexOf("{{", from),
+					lexer.indexOfDouble(Token.BRACE_OPEN, from));
+			assertEquals(SRC.indexOf("[[", from),
+					lexer.indexOfDouble(Token.BRACKET_OPEN, from));
+			assertEquals(SRC.indexOf("}}", from),
+					lexer.indexOfDouble(Token.BRACE_CLOSE, from));
+			assertEquals(SRC.indexOf("]]", from),
+					lexer.indexOfDouble(Token.BRACKET_CLOSE, from));
+		}
+	}
+
+	@Test
+	public void testRemap() {
+		WikitextLexer lexer = new WikitextLexer(SRC, EnumSet.allOf(Token.class));
+		// deletes the comment and the TOC, and replaces the ref tag
+		Edits edits = new Edits();
+		int comment = SRC.indexOf("<!--");
+		edits.add(comment, SRC.indexOf("-->") + 3, 0);
+		int toc = SRC.indexOf("__TOC__");
+		edits.add(toc, toc + 7, 0);
+		int ref = SRC.indexOf("<ref>");
+		edits.add(ref, ref + 5, 5);
+		lexer.remap(edits);
+		String edited = SRC.substring(0, comment)
+				+ SRC.substring(SRC.indexOf("-->") + 3, toc)
+				+ SRC.substring(toc + 7, ref) + "(REF)" + SRC.substring(ref + 5);
+		checkTokens(edited, lexer);
+	}
+
+	@Test
+	public void testRemapOverlapping() {
+		String src = "a____NOTOC__TOC__b";
+		WikitextLexer lexer = new WikitextLexer(src, EnumSet.allOf(Token.class));
+		// deleting __TOC__ breaks the __NOTOC__ before it
+		Edits edits = new Edits();
+		edits.add(10, 17, 0);
+		lexer.remap(edits);
+		checkTokens("a____NOTOCb", lexer);
+	}
+
+	@Test
+	public void testDeletionOf() {
+		String src = "a<b>[[c]]<d/></b>e<f>";
+		WikitextLexer lexer = new WikitextLexer(src, EnumSet.allOf(Token.class));
+		lexer.remap(Edits.deletionOf(Arrays.asList(new Span(9, 13), new Span(
+				18, 21), new Span(1, 4), new Span(13, 17))));
+		checkTokens("a[[c]]e", lexer);
+	}
+
+	private static void checkTokens(String src, WikitextLexer lexer) {
+		for (Token t : Token.values()) {
+			for (int from = 0; from <= src.length(); from++) {
+				assertEquals(t + " from " + from, src.indexOf(t.getText(), from),
+						lexer.indexOf(t, from));
+			}
+		}
+	}
+}
@@ -0,0 +1,120 @@
+/**
+ *  Copyright 2015 DBpedia Spotlight
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.dbpedia.spotlight.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import it.cnr.isti.hpc.io.IOUtils;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.net.URL;
+import java.util.Arrays;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Compresses wikisample.xml as a multistream dump (two pages per stream) and
+ * reads it back.
+ */
+public class MultistreamInputStreamTest {
+
+	private static final String DUMP = "/tmp/wikisample-multistream.xml.bz2";
+	private static final String INDEX = "/tmp/wikisample-multistream-index.txt";
+
+	private static String xml;
+
+	@BeforeClass
+	public static void createMultistream() throws IOException {
+		URL u = MultistreamInputStreamTest.class
+				.getResource("/wikisample.xml");
+		xml = IOUtils.getFileAsUTF8String(u.getFile());
+
+		OutputStream dump = new FileOutputStream(DUMP);
+		PrintWriter index = new PrintWriter(INDEX, "UTF-8");
+		int start = xml.indexOf("<page>");
+		long offset = write(dump, xml.substring(0, start), 0);
+		int page = 0;
+		int end;
+		while ((end = xml.indexOf("</page>", start)) >= 0) {
+			end = xml.indexOf("<page>", end);
+			if (end < 0)
+				end = xml.lastIndexOf("</mediawiki>");
+			if (++page % 2 == 0 || xml.indexOf("<page>", start + 1) < 0) {
+				index.println(offset + ":" + page + ":page " + page);
+				offset = write(dump, xml.substring(start, end), offset);
+				start = end;
+			}
+		}
+		write(dump, xml.substring(start), offset);
+		dump.close();
+		index.close();
+	}
+
+	private static long write(OutputStream dump, String text, long offset)
+			throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		OutputStream bz = new BZip2CompressorOutputStream(bytes);
+		bz.write(text.getBytes("UTF-8"));
+		bz.close();
+		bytes.writeTo(dump);
+		return offset + bytes.size();
+	}
+
+	@Test
+	public void testOrdered() throws IOException {
+		assertEquals(xml, read(WikiXMLParser.getMultistreamBufferedReader(
+				DUMP, INDEX, 3, true)));
+	}
+
+	@Test
+	public void testUnordered() throws IOException {
+		String unordered = read(WikiXMLParser.getMultistreamBufferedReader(
+				DUMP, INDEX, 3, false));
+		assertTrue(unordered.startsWith(xml.substring(0, xml.indexOf("<page>"))));
+		assertTrue(unordered.endsWith("</mediawiki>\n")
+				|| unordered.endsWith("</mediawiki>"));
+		char[] expected = xml.toCharArray();
+		char[] actual = unordered.toCharArray();
+		Arrays.sort(expected);
+		Arrays.sort(actual);
+		assertTrue(Arrays.equals(expected, actual));
+	}
+
+	@Test
+	public void testConcatenatedStreams() throws IOException {
+		// without the index the dump is decompressed sequentially
+		assertEquals(xml, read(WikiXMLParser.getBufferedReader(DUMP)));
+	}
+
+	private static String read(BufferedReader br) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		char[] buffer = new char[4096];
+		int n;
+		while ((n = br.read(buffer)) != -1) {
+			sb.append(buffer, 0, n);
+		}
+		br.close();
+		return sb.toString();
+	}
+}
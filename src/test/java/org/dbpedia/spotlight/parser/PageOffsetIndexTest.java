@@ -0,0 +1,65 @@
+/**
+ *  Copyright 2015 DBpedia Spotlight
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.dbpedia.spotlight.parser;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class PageOffsetIndexTest {
+
+	@Test
+	public void testLookup() throws IOException {
+		File file = File.createTempFile("page-index", ".txt");
+		file.deleteOnExit();
+		new File(file.getPath() + ".lookup").deleteOnExit();
+		Writer w = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		// as in the multistream index, the titles are not normalized
+		for (int i = 0; i < 1000; i++)
+			w.write((i / 100) * 1000 + ":" + (5000 - i) + ":Page " + i + "\n");
+		w.write("7000:7001:Talk:Città: a title\n");
+		w.write("malformed line\n");
+		w.close();
+		PageOffsetIndex index = new PageOffsetIndex(file);
+
+		assertEquals("[0:5000:Page_0, 9000:4001:Page_999]", toString(index
+				.lookup(Arrays.asList("4001", "5000", "42", "x"),
+						Collections.<String> emptySet())));
+		assertEquals("[3000:4700:Page_300, 7000:7001:Talk:Città:_a_title]",
+				toString(index.lookup(Collections.singleton("4700"), Arrays
+						.asList("talk:Città: a title", "Page_300", "Page 1000"))));
+		assertEquals("[]", toString(index.lookup(
+				Collections.<String> emptySet(), Collections
+						.<String> emptySet())));
+	}
+
+	private static String toString(List<PageOffsetIndex.Entry> entries) {
+		List<String> lines = new ArrayList<String>();
+		for (PageOffsetIndex.Entry e : entries)
+			lines.add(e.getOffset() + ":" + e.getId() + ":" + e.getTitle());
+		return lines.toString();
+	}
+}
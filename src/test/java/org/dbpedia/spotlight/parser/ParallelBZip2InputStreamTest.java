@@ -0,0 +1,124 @@
+/**
+ *  Copyright 2015 DBpedia Spotlight
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.dbpedia.spotlight.parser;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.junit.Test;
+
+public class ParallelBZip2InputStreamTest {
+
+	@Test
+	public void testManyBlocks() throws IOException {
+		byte[] data = text(1000000);
+		// block size 100k
+		byte[] compressed = compress(data, 1);
+		assertArrayEquals(data, read(new ParallelBZip2InputStream(
+				new ByteArrayInputStream(compressed), 3)));
+	}
+
+	@Test
+	public void testConcatenatedStreams() throws IOException {
+		byte[] data = text(300000);
+		ByteArrayOutputStream streams = new ByteArrayOutputStream();
+		streams.write(compress(data, 1));
+		streams.write(compress(data, 9));
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		expected.write(data);
+		expected.write(data);
+		assertArrayEquals(expected.toByteArray(), read(new ParallelBZip2InputStream(
+				new ByteArrayInputStream(streams.toByteArray()), 2)));
+	}
+
+	@Test
+	public void testFalseEndOfStream() throws IOException {
+		// the symbol map of a block has a bit for each byte value in the
+		// block: with only these bytes it contains the 48 bits of the end of
+		// stream magic (0x1772, 0x4538, 0x5090 for 0x40-0x6f)
+		byte[] symbols = "CEFGIJKNQUWZ[\\achk".getBytes();
+		Random r = new Random(42);
+		byte[] data = new byte[300000];
+		for (int i = 0; i < data.length; i++)
+			data[i] = symbols[r.nextInt(symbols.length)];
+		byte[] compressed = compress(data, 1);
+		assertTrue(countMagic(compressed, 0x177245385090L) > 1);
+		assertArrayEquals(data, read(new ParallelBZip2InputStream(
+				new ByteArrayInputStream(compressed), 2)));
+	}
+
+	@Test
+	public void testDump() throws IOException {
+		String dump = getClass().getResource("/misc/wikipedia-small-test.xml.bz2").getFile();
+		byte[] expected = read(new BZip2CompressorInputStream(
+				ParallelBZip2InputStreamTest.class.getResourceAsStream("/misc/wikipedia-small-test.xml.bz2")));
+		assertArrayEquals(expected, read(new ParallelBZip2InputStream(
+				new FileInputStream(dump), 4)));
+	}
+
+	private static byte[] text(int length) {
+		Random r = new Random(42);
+		String[] words = { "wikipedia ", "[[link]] ", "{{template}} ",
+				"page ", "text ", "\n" };
+		StringBuilder sb = new StringBuilder();
+		while (sb.length() < length) {
+			sb.append(words[r.nextInt(words.length)]);
+			sb.append(r.nextInt(1000));
+		}
+		return sb.toString().getBytes();
+	}
+
+	private static int countMagic(byte[] data, long magic) {
+		int count = 0;
+		long bits = 0;
+		for (int i = 0; i < data.length * 8; i++) {
+			bits = ((bits << 1) | ((data[i >>> 3] >>> (7 - (i & 7))) & 1)) & 0xffffffffffffL;
+			if (bits == magic)
+				count++;
+		}
+		return count;
+	}
+
+	private static byte[] compress(byte[] data, int blockSize)
+			throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		OutputStream bz = new BZip2CompressorOutputStream(out, blockSize);
+		bz.write(data);
+		bz.close();
+		return out.toByteArray();
+	}
+
+	private static byte[] read(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int n;
+		while ((n = in.read(buffer)) != -1) {
+			out.write(buffer, 0, n);
+		}
+		in.close();
+		return out.toByteArray();
+	}
+}
@@ -0,0 +1,105 @@
+/**
+ *  Copyright 2015 DBpedia Spotlight
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.dbpedia.spotlight.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import info.bliki.wiki.dump.IArticleFilter;
+import info.bliki.wiki.dump.Siteinfo;
+import info.bliki.wiki.dump.WikiArticle;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class WikiXMLParserTest {
+
+	static final String DUMP = "<mediawiki><siteinfo><sitename>Wikipedia</sitename>"
+			+ "<namespaces><namespace key=\"0\" /><namespace key=\"10\">Template</namespace></namespaces></siteinfo>"
+			+ "<page><title>Mercury</title><ns>0</ns><id>1</id>"
+			+ "<revision><id>11</id><text xml:space=\"preserve\">'''Mercury''' &amp; [[Venus]]</text></revision></page>"
+			+ "<page><title>Template:Planet</title><ns>10</ns><id>2</id>"
+			+ "<revision><id>12</id><text xml:space=\"preserve\">{{{name}}}</text></revision></page>"
+			+ "<page><title>Venus</title><ns>0</ns><id>3</id>"
+			+ "<revision><id>13</id><text xml:space=\"preserve\">'''Venus'''</text></revision></page>"
+			+ "</mediawiki>";
+
+	/**
+	 * Collects the pages, templates are discarded before reading their text.
+	 */
+	static class Collector implements IArticleFilter, IPageSelector {
+		final List<WikiArticle> pages = new ArrayList<WikiArticle>();
+		final List<String> selected = new ArrayList<String>();
+
+		public boolean select(WikiArticle page, Siteinfo siteinfo) {
+			selected.add(page.getTitle());
+			return !page.isTemplate();
+		}
+
+		public void process(WikiArticle page, Siteinfo siteinfo) {
+			pages.add(page);
+		}
+	}
+
+	@Test
+	public void testSkipBeforeText() throws Exception {
+		Collector c = new Collector();
+		new WikiXMLParser(new StringReader(DUMP), c).parse();
+		assertEquals(3, c.selected.size());
+		assertEquals(2, c.pages.size());
+		assertEquals("Mercury", c.pages.get(0).getTitle());
+		assertEquals("1", c.pages.get(0).getId());
+		assertEquals("'''Mercury''' & [[Venus]]", c.pages.get(0).getText());
+		assertEquals("Venus", c.pages.get(1).getTitle());
+	}
+
+	@Test
+	public void testScannerSkipBeforeText() throws Exception {
+		Collector c = new Collector();
+		new WikiXMLScanner(new ByteArrayInputStream(DUMP.getBytes("UTF-8")), c).parse();
+		assertEquals(3, c.selected.size());
+		assertEquals(2, c.pages.size());
+		assertEquals("'''Mercury''' & [[Venus]]", c.pages.get(0).getText());
+		assertNull(((WikiPage) c.pages.get(0)).getRedirect());
+	}
+
+	@Test
+	public void testScannerSameAsParser() throws Exception {
+		for (String dump : new String[] { "/wikisample.xml", "/enwiki-pages-test-disamb.xml",
+				"/enwiki-pages-test-blank_article.xml", "/misc/wikipedia-small-test.xml.bz2" }) {
+			String file = getClass().getResource(dump).getFile();
+			Collector sax = new Collector();
+			new WikiXMLParser(file, sax).parse();
+			Collector bytes = new Collector();
+			new WikiXMLScanner(WikiXMLParser.getInputStream(file), bytes).parse();
+			assertEquals(dump, sax.pages.size(), bytes.pages.size());
+			for (int i = 0; i < sax.pages.size(); i++) {
+				WikiArticle expected = sax.pages.get(i);
+				WikiArticle actual = bytes.pages.get(i);
+				assertEquals(expected.getTitle(), actual.getTitle());
+				assertEquals(expected.getId(), actual.getId());
+				assertEquals(expected.getNamespace(), actual.getNamespace());
+				assertEquals(expected.getIntegerNamespace(), actual.getIntegerNamespace());
+				assertEquals(expected.getTimeStamp(), actual.getTimeStamp());
+				assertEquals(expected.getText(), actual.getText());
+				assertEquals(((WikiPage) expected).getRedirect(), ((WikiPage) actual).getRedirect());
+			}
+		}
+	}
+}
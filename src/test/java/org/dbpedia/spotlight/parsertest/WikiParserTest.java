@@ -24,6 +24,7 @@ import it.cnr.isti.hpc.wikipedia.article.Article;
 import it.cnr.isti.hpc.wikipedia.article.Article.Type;
 import it.cnr.isti.hpc.wikipedia.article.Language;
 import it.cnr.isti.hpc.wikipedia.article.Link;
+import it.cnr.isti.hpc.wikipedia.parser.MediaWikiParserFactory;
 import it.cnr.isti.hpc.wikipedia.reader.WikipediaArticleReader;
 
 import java.io.FileNotFoundException;
@@ -33,6 +34,7 @@ import java.net.URL;
 import java.util.List;
 
 import org.dbpedia.spotlight.ParagraphLink;
+import org.dbpedia.spotlight.mediawiki.MediaWikiParser;
 import org.junit.Test;
 import org.xml.sax.SAXException;
 
@@ -120,4 +122,19 @@ public class WikiParserTest {
 		assertEquals("History_of_Afghanistan",a.getRedirect());
 		
 	}
+
+	/*
+	 * Test case for the TOC tags joined by the deletion of comments or tags
+	 */
+	@Test
+	public void testJoinedTOC() {
+		MediaWikiParser parser = new MediaWikiParserFactory()
+				.getParser(Language.EN);
+		assertEquals("a  b", parser.parse("a __NO<!-- x -->TOC__ b")
+				.getParagraphs().get(0).getText());
+		assertEquals("a  b", parser.parse("a __NO__TOC__TOC__ b")
+				.getParagraphs().get(0).getText());
+		assertEquals("c  d  e", parser.parse("c __<!-- -->TOC__ d __NOTOC__ e")
+				.getParagraphs().get(0).getText());
+	}
 }